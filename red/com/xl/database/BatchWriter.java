@@ -0,0 +1,182 @@
+/*
+ * RED: RNA Editing Detector Copyright (C) <2014> <Xing Li>
+ *
+ * RED is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * RED is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.xl.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * BatchWriter writes rows through a single prepared statement. Values of a row are appended one by one in the order of
+ * the columns, and {@link #endRow()} adds the row to the batch. The batch is sent to the database once it reaches the
+ * batch size, the driver rewrites a batch of inserts into multi-row insert clauses.
+ * <p/>
+ * A BatchWriter never commits, so the caller is still in charge of the transaction. Call {@link #close()} to send the
+ * remaining rows before committing.
+ */
+public class BatchWriter implements ValueWriter {
+    private final PreparedStatement statement;
+    private final String sql;
+    private final int parameterCount;
+    private final int batchSize;
+    private final DatabaseMetrics metrics;
+    /**
+     * The index of the next parameter in the current row, start from 1.
+     */
+    private int parameterIndex = 1;
+    private int pendingRows = 0;
+    private long writtenRows = 0;
+
+    BatchWriter(Connection connection, String sql, int batchSize, DatabaseMetrics metrics) throws SQLException {
+        this.sql = sql;
+        this.batchSize = Math.max(1, batchSize);
+        this.metrics = metrics;
+        this.statement = connection.prepareStatement(sql);
+        int count = 0;
+        for (int i = 0, len = sql.length(); i < len; i++) {
+            if (sql.charAt(i) == '?') {
+                count++;
+            }
+        }
+        this.parameterCount = count;
+    }
+
+    /**
+     * Build the insert clause for the given table and columns, such as 'insert into table(col1,col2) values(?,?)'.
+     *
+     * @param tableName The table name.
+     * @param columns The columns of each row.
+     * @param ignoreDuplicates True to skip rows which duplicate a unique key, i.e., 'insert ignore into ...'.
+     * @return The insert clause.
+     */
+    static String insertClause(String tableName, String[] columns, boolean ignoreDuplicates) {
+        if (columns == null || columns.length == 0) {
+            throw new IllegalArgumentException("Columns can't not be null or zero-length.");
+        }
+        StringBuilder builder = new StringBuilder(ignoreDuplicates ? "insert ignore into " : "insert into ");
+        builder.append(tableName).append("(").append(columns[0]);
+        for (int i = 1, len = columns.length; i < len; i++) {
+            builder.append(",").append(columns[i]);
+        }
+        builder.append(") values(?");
+        for (int i = 1, len = columns.length; i < len; i++) {
+            builder.append(",?");
+        }
+        builder.append(")");
+        return builder.toString();
+    }
+
+    public BatchWriter append(String value) throws SQLException {
+        checkParameterIndex();
+        if (value == null) {
+            statement.setNull(parameterIndex++, Types.VARCHAR);
+        } else {
+            statement.setString(parameterIndex++, value);
+        }
+        return this;
+    }
+
+    public BatchWriter append(char value) throws SQLException {
+        return append(String.valueOf(value));
+    }
+
+    public BatchWriter append(int value) throws SQLException {
+        checkParameterIndex();
+        statement.setInt(parameterIndex++, value);
+        return this;
+    }
+
+    public BatchWriter append(long value) throws SQLException {
+        checkParameterIndex();
+        statement.setLong(parameterIndex++, value);
+        return this;
+    }
+
+    public BatchWriter append(float value) throws SQLException {
+        checkParameterIndex();
+        statement.setFloat(parameterIndex++, value);
+        return this;
+    }
+
+    public BatchWriter append(double value) throws SQLException {
+        checkParameterIndex();
+        statement.setDouble(parameterIndex++, value);
+        return this;
+    }
+
+    /**
+     * Append a SQL NULL value of the given type.
+     *
+     * @param sqlType The type of the column, which is defined in {@link java.sql.Types}.
+     */
+    public BatchWriter appendNull(int sqlType) throws SQLException {
+        checkParameterIndex();
+        statement.setNull(parameterIndex++, sqlType);
+        return this;
+    }
+
+    /**
+     * Finish the current row and add it to the batch. The batch will be executed if it is full.
+     */
+    public void endRow() throws SQLException {
+        if (parameterIndex != parameterCount + 1) {
+            throw new SQLException("Row has " + (parameterIndex - 1) + " values but " + parameterCount
+                + " are needed for SQL clause: " + sql);
+        }
+        statement.addBatch();
+        parameterIndex = 1;
+        if (++pendingRows >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Send all pending rows to the database.
+     */
+    public void flush() throws SQLException {
+        if (pendingRows == 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        statement.executeBatch();
+        metrics.record(sql, start, pendingRows);
+        writtenRows += pendingRows;
+        pendingRows = 0;
+    }
+
+    /**
+     * Send all pending rows to the database and close the statement.
+     */
+    public void close() throws SQLException {
+        try {
+            flush();
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * @return The number of rows which have been sent to the database.
+     */
+    public long getWrittenRows() {
+        return writtenRows;
+    }
+
+    private void checkParameterIndex() throws SQLException {
+        if (parameterIndex > parameterCount) {
+            throw new SQLException("Too many values for SQL clause: " + sql);
+        }
+    }
+}
@@ -0,0 +1,476 @@
+/*
+ * RED: RNA Editing Detector Copyright (C) <2014> <Xing Li>
+ *
+ * RED is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * RED is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.xl.database;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.xl.utils.Timer;
+
+/**
+ * BulkLoadWriter loads the rows of each table by a single 'load data local infile' clause, which is far faster than
+ * inserting the rows one by one.
+ * <p/>
+ * If a free database connection can be leased for a loader thread per table, the rows are streamed to the loaders
+ * while they are appended, so nothing is written to disk. Otherwise the rows of each table are spilled into a tab-separated
+ * file, and each file is loaded into its table when the writer is closed, and then deleted. In sample-parallel mode,
+ * the files are loaded at the same time by as many free connections as can be leased then.
+ * <p/>
+ * Values are written in the format expected by the clause, i.e., NULL is written as \N and tabs, new lines and
+ * backslashes are escaped by a backslash.
+ */
+public class BulkLoadWriter implements RowWriter {
+    private static final Logger logger = LoggerFactory.getLogger(BulkLoadWriter.class);
+    private static final String NULL = "\\N";
+    private static final int BUFFER_SIZE = 256 * 1024;
+    /**
+     * The number of buffers which can wait in the pipe of a table.
+     */
+    private static final int PIPE_CAPACITY = 4;
+    private final DatabaseManager databaseManager;
+    private final String[] tableNames;
+    private final String[] columns;
+    private final boolean ignoreDuplicates;
+    private final boolean streamed;
+    private final boolean parallelLoad;
+    private final File[] spillFiles;
+    private final Writer[] spillWriters;
+    private final Thread[] loaders;
+    private final StringBuilder row = new StringBuilder();
+    private int valueCount = 0;
+    private boolean closed = false;
+    private volatile SQLException loaderFailure = null;
+
+    BulkLoadWriter(DatabaseManager databaseManager, String[] tableNames, String[] columns, boolean ignoreDuplicates,
+        boolean parallelLoad) throws SQLException {
+        this.databaseManager = databaseManager;
+        this.parallelLoad = parallelLoad;
+        this.tableNames = tableNames;
+        this.columns = columns;
+        this.ignoreDuplicates = ignoreDuplicates;
+        Connection[] loaderConnections = leaseLoaderConnections(tableNames.length);
+        this.streamed = loaderConnections != null;
+        this.spillFiles = new File[tableNames.length];
+        this.spillWriters = new Writer[tableNames.length];
+        this.loaders = new Thread[tableNames.length];
+        try {
+            for (int i = 0, len = tableNames.length; i < len; i++) {
+                OutputStream outputStream;
+                if (streamed) {
+                    Pipe pipe = new Pipe();
+                    loaders[i] = startLoader(tableNames[i], pipe, loaderConnections[i]);
+                    loaderConnections[i] = null;
+                    outputStream = pipe.outputStream;
+                } else {
+                    spillFiles[i] = File.createTempFile("red_" + tableNames[i] + "_", ".tsv");
+                    spillFiles[i].deleteOnExit();
+                    outputStream = new FileOutputStream(spillFiles[i]);
+                }
+                spillWriters[i] = new BufferedWriter(
+                    new OutputStreamWriter(new BufferedOutputStream(outputStream, BUFFER_SIZE), "UTF-8"), BUFFER_SIZE);
+            }
+        } catch (IOException e) {
+            if (loaderConnections != null) {
+                for (Connection connection : loaderConnections) {
+                    if (connection != null) {
+                        databaseManager.releaseConnection(connection);
+                    }
+                }
+            }
+            deleteSpillFiles();
+            throw new SQLException("Unable to create spill files for bulk loading.", e);
+        }
+    }
+
+    /**
+     * Lease a connection for each loader without waiting, since the connections may be held by other imports which
+     * wait for this thread.
+     *
+     * @return The connections, or null if there are not enough free connections.
+     */
+    private Connection[] leaseLoaderConnections(int count) throws SQLException {
+        Connection[] connections = new Connection[count];
+        for (int i = 0; i < count; i++) {
+            connections[i] = databaseManager.tryLeaseConnection();
+            if (connections[i] == null) {
+                for (int j = 0; j < i; j++) {
+                    databaseManager.releaseConnection(connections[j]);
+                }
+                return null;
+            }
+        }
+        return connections;
+    }
+
+    @Override
+    public BulkLoadWriter append(String value) throws SQLException {
+        startValue();
+        if (value == null) {
+            row.append(NULL);
+        } else {
+            escape(value);
+        }
+        return this;
+    }
+
+    @Override
+    public BulkLoadWriter append(char value) throws SQLException {
+        return append(String.valueOf(value));
+    }
+
+    @Override
+    public BulkLoadWriter append(int value) throws SQLException {
+        startValue();
+        row.append(value);
+        return this;
+    }
+
+    @Override
+    public BulkLoadWriter append(float value) throws SQLException {
+        startValue();
+        row.append(value);
+        return this;
+    }
+
+    @Override
+    public BulkLoadWriter append(double value) throws SQLException {
+        startValue();
+        row.append(value);
+        return this;
+    }
+
+    @Override
+    public BulkLoadWriter appendNull(int sqlType) throws SQLException {
+        startValue();
+        row.append(NULL);
+        return this;
+    }
+
+    @Override
+    public void endRow() throws SQLException {
+        endRow(0);
+    }
+
+    @Override
+    public void endRow(int table) throws SQLException {
+        if (valueCount != columns.length) {
+            throw new SQLException("Row has " + valueCount + " values but " + columns.length + " are needed for table "
+                + tableNames[table]);
+        }
+        row.append('\n');
+        try {
+            spillWriters[table].append(row);
+        } catch (IOException e) {
+            checkLoaderFailure();
+            throw new SQLException("Unable to write rows of table " + tableNames[table], e);
+        }
+        row.setLength(0);
+        valueCount = 0;
+    }
+
+    /**
+     * Load all spill files into their tables and delete them, or wait for the loaders to load the streamed rows.
+     */
+    @Override
+    public void close() throws SQLException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            for (int i = 0, len = tableNames.length; i < len; i++) {
+                try {
+                    spillWriters[i].close();
+                } catch (IOException e) {
+                    checkLoaderFailure();
+                    throw new SQLException("Unable to write rows of table " + tableNames[i], e);
+                }
+            }
+            if (!streamed) {
+                loadSpillFiles();
+            }
+            joinLoaders();
+            checkLoaderFailure();
+        } finally {
+            deleteSpillFiles();
+        }
+    }
+
+    /**
+     * Load the spill files, by this thread and by a helper thread for each extra connection leased in parallel mode.
+     */
+    private void loadSpillFiles() throws SQLException {
+        final AtomicInteger nextFile = new AtomicInteger(0);
+        List<Connection> connections = new ArrayList<Connection>();
+        Connection connection;
+        while (parallelLoad && connections.size() < tableNames.length - 1
+            && (connection = databaseManager.tryLeaseConnection()) != null) {
+            connections.add(connection);
+        }
+        for (int i = 0, len = connections.size(); i < len; i++) {
+            final Connection helperConnection = connections.get(i);
+            loaders[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    databaseManager.adoptConnection(helperConnection);
+                    try {
+                        loadSpillFiles(nextFile);
+                    } catch (SQLException e) {
+                        loaderFailure = e;
+                    } finally {
+                        databaseManager.releaseConnection();
+                    }
+                }
+            }, "bulk-load-" + tableNames[0] + "-" + i);
+            loaders[i].setDaemon(true);
+            loaders[i].start();
+        }
+        try {
+            loadSpillFiles(nextFile);
+        } catch (SQLException e) {
+            // Stop the helpers from taking more files.
+            nextFile.set(tableNames.length);
+            joinLoaders();
+            throw e;
+        }
+    }
+
+    /**
+     * Take the spill files one by one and load them, until all files have been taken.
+     */
+    private void loadSpillFiles(AtomicInteger nextFile) throws SQLException {
+        int i;
+        while ((i = nextFile.getAndIncrement()) < tableNames.length && loaderFailure == null) {
+            logger.info("Start bulk loading " + tableNames[i] + "...\t" + Timer.getCurrentTime());
+            databaseManager.executeSQL(loadClause(spillFiles[i].getAbsolutePath(), tableNames[i]));
+            logger.info("End bulk loading " + tableNames[i] + "...\t" + Timer.getCurrentTime());
+        }
+    }
+
+    private Thread startLoader(final String tableName, final Pipe pipe, final Connection connection) {
+        Thread loader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                databaseManager.adoptConnection(connection);
+                try {
+                    logger.info("Start bulk loading " + tableName + "...\t" + Timer.getCurrentTime());
+                    // The file name is not read since the data comes from the stream.
+                    databaseManager.executeLoadFromStream(loadClause(tableName + ".tsv", tableName), pipe.inputStream);
+                    logger.info("End bulk loading " + tableName + "...\t" + Timer.getCurrentTime());
+                } catch (SQLException e) {
+                    loaderFailure = e;
+                } finally {
+                    pipe.closeReader();
+                    databaseManager.releaseConnection();
+                }
+            }
+        }, "bulk-load-" + tableName);
+        loader.setDaemon(true);
+        loader.start();
+        return loader;
+    }
+
+    private void joinLoaders() throws SQLException {
+        for (Thread loader : loaders) {
+            if (loader != null) {
+                try {
+                    loader.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while waiting for rows to be loaded.", e);
+                }
+            }
+        }
+    }
+
+    private void checkLoaderFailure() throws SQLException {
+        SQLException e = loaderFailure;
+        if (e != null) {
+            throw e;
+        }
+    }
+
+    private String loadClause(String fileName, String tableName) {
+        StringBuilder builder = new StringBuilder("load data local infile '");
+        // MySQL accepts '/' as the separator on all platforms, which needs no escaping.
+        builder.append(fileName.replace('\\', '/').replace("'", "\\'")).append("' ");
+        if (ignoreDuplicates) {
+            builder.append("ignore ");
+        }
+        builder.append("into table ").append(tableName)
+            .append(" character set utf8 fields terminated by '\\t' lines terminated by '\\n' (").append(columns[0]);
+        for (int i = 1, len = columns.length; i < len; i++) {
+            builder.append(",").append(columns[i]);
+        }
+        return builder.append(")").toString();
+    }
+
+    private void startValue() throws SQLException {
+        if (valueCount == columns.length) {
+            throw new SQLException("Too many values for table " + tableNames[0]);
+        }
+        if (valueCount++ > 0) {
+            row.append('\t');
+        }
+    }
+
+    private void escape(String value) {
+        for (int i = 0, len = value.length(); i < len; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    row.append("\\\\");
+                    break;
+                case '\t':
+                    row.append("\\t");
+                    break;
+                case '\n':
+                    row.append("\\n");
+                    break;
+                case '\r':
+                    row.append("\\r");
+                    break;
+                default:
+                    row.append(c);
+            }
+        }
+    }
+
+    /**
+     * Close the writers which have not been closed, which also stops the loaders, and delete the spill files.
+     */
+    private void deleteSpillFiles() {
+        for (int i = 0, len = spillWriters.length; i < len; i++) {
+            if (spillWriters[i] != null) {
+                try {
+                    spillWriters[i].close();
+                } catch (IOException e) {
+                    logger.warn("Unable to close the rows of table " + tableNames[i], e);
+                }
+            }
+            if (spillFiles[i] != null && !spillFiles[i].delete()) {
+                logger.warn("Unable to delete spill file " + spillFiles[i]);
+            }
+        }
+    }
+
+    /**
+     * Pipe hands the buffers written by the parser to a loader thread through a bounded queue, so a slow loader holds
+     * the parser back. Unlike {@link java.io.PipedInputStream}, neither side polls.
+     */
+    private static class Pipe {
+        private static final byte[] END = new byte[0];
+        private final BlockingQueue<byte[]> buffers = new ArrayBlockingQueue<byte[]>(PIPE_CAPACITY);
+        private volatile boolean readerClosed = false;
+        private final OutputStream outputStream = new OutputStream() {
+            private boolean closed = false;
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] buffer, int offset, int length) throws IOException {
+                if (length > 0) {
+                    put(Arrays.copyOfRange(buffer, offset, offset + length));
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (!closed) {
+                    closed = true;
+                    put(END);
+                }
+            }
+        };
+        private final InputStream inputStream = new InputStream() {
+            private byte[] current = null;
+            private int position = 0;
+
+            @Override
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+                return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                if (length == 0) {
+                    return 0;
+                }
+                while (current == null || position == current.length) {
+                    if (current == END) {
+                        return -1;
+                    }
+                    try {
+                        current = buffers.take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while waiting for rows.");
+                    }
+                    position = 0;
+                }
+                int count = Math.min(length, current.length - position);
+                System.arraycopy(current, position, buffer, offset, count);
+                position += count;
+                return count;
+            }
+
+            @Override
+            public void close() {
+                closeReader();
+            }
+        };
+
+        private void put(byte[] buffer) throws IOException {
+            try {
+                while (readerClosed || !buffers.offer(buffer, 1, TimeUnit.SECONDS)) {
+                    if (readerClosed) {
+                        throw new IOException("The loader has stopped reading.");
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for rows to be loaded.");
+            }
+        }
+
+        private void closeReader() {
+            readerClosed = true;
+            buffers.clear();
+        }
+    }
+}
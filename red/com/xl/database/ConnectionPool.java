@@ -0,0 +1,363 @@
+/*
+ * RED: RNA Editing Detector Copyright (C) <2014> <Xing Li>
+ *
+ * RED is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * RED is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.xl.database;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * ConnectionPool keeps a bounded set of JDBC connections to the same database server. Connections are created lazily
+ * up to the maximum size, and a caller asking for a connection while all of them are leased waits until one is
+ * released. Connections leased by threads which have died without releasing them are taken back automatically.
+ * <p/>
+ * Cursor connections for streaming reads are bounded separately by the same maximum size, since a thread opens a cursor
+ * while it holds its leased connection, and would wait forever if cursors were taken from the leased connections.
+ */
+public class ConnectionPool {
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionPool.class);
+    /**
+     * The time in seconds to wait for a free connection before looking for connections leased by dead threads.
+     */
+    private static final int WAIT_SECONDS = 1;
+    /**
+     * The time in seconds to wait for a free connection before logging that the pool is exhausted.
+     */
+    private static final int WAIT_WARNING_SECONDS = 30;
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    /**
+     * Connections which have been created and are not leased by anyone.
+     */
+    private final LinkedBlockingQueue<Connection> idleConnections = new LinkedBlockingQueue<Connection>();
+    /**
+     * All connections created by this pool, leased or not.
+     */
+    private final List<Connection> allConnections = new ArrayList<Connection>();
+    /**
+     * The thread which leases each connection.
+     */
+    private final Map<Connection, Thread> owners = new HashMap<Connection, Thread>();
+    /**
+     * The cursor connections which hold a permit, and the thread which opens each.
+     */
+    private final Map<Connection, Thread> cursorOwners = new HashMap<Connection, Thread>();
+    private final Semaphore cursorPermits;
+    private volatile boolean closed = false;
+
+    /**
+     * Create a pool and open the first connection immediately, so that wrong host, port, user name or password are
+     * reported to the caller at once.
+     *
+     * @param url The JDBC url.
+     * @param user The user.
+     * @param password The password.
+     * @param maxSize The maximum number of connections kept by this pool, at least one.
+     */
+    public ConnectionPool(String url, String user, String password, int maxSize) throws SQLException {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = Math.max(1, maxSize);
+        this.cursorPermits = new Semaphore(this.maxSize);
+        idleConnections.offer(createConnection());
+    }
+
+    /**
+     * Lease a connection from the pool. The connection must be given back by {@link #release(Connection)}.
+     *
+     * @return A connection which is only used by the caller until it is released.
+     */
+    public Connection acquire() throws SQLException {
+        int waitedSeconds = 0;
+        while (true) {
+            if (closed) {
+                throw new SQLException("The connection pool has been closed.");
+            }
+            Connection connection = idleConnections.poll();
+            if (connection == null) {
+                synchronized (allConnections) {
+                    if (allConnections.size() < maxSize) {
+                        return lease(createConnection());
+                    }
+                }
+                try {
+                    connection = idleConnections.poll(WAIT_SECONDS, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while waiting for a database connection.");
+                }
+                if (connection == null) {
+                    reclaimAbandonedConnections();
+                    waitedSeconds += WAIT_SECONDS;
+                    if (waitedSeconds % WAIT_WARNING_SECONDS == 0) {
+                        logger.warn("All {} database connections have been leased for {} seconds, still waiting...",
+                            maxSize, waitedSeconds);
+                    }
+                    continue;
+                }
+            }
+            if (connection.isClosed()) {
+                synchronized (allConnections) {
+                    allConnections.remove(connection);
+                }
+                continue;
+            }
+            return lease(connection);
+        }
+    }
+
+    /**
+     * Lease a connection only if one is idle or can be created at once, so the caller never waits for other threads.
+     *
+     * @return A connection which is only used by the caller until it is released, or null if all are leased.
+     */
+    public Connection tryAcquire() throws SQLException {
+        if (closed) {
+            throw new SQLException("The connection pool has been closed.");
+        }
+        Connection connection;
+        while ((connection = idleConnections.poll()) != null) {
+            if (!connection.isClosed()) {
+                return lease(connection);
+            }
+            synchronized (allConnections) {
+                allConnections.remove(connection);
+            }
+        }
+        synchronized (allConnections) {
+            if (allConnections.size() < maxSize) {
+                return lease(createConnection());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Give a leased connection back to the pool. The connection is reset to auto commit mode, so the next user will not
+     * inherit an open transaction.
+     *
+     * @param connection The connection to be released.
+     */
+    public void release(Connection connection) {
+        giveBack(connection, true);
+    }
+
+    /**
+     * Give a leased connection back to the pool and end its open transaction.
+     *
+     * @param commit True to commit the open transaction, or false to roll it back, e.g., for a connection whose thread
+     * has died in the middle of it.
+     */
+    private void giveBack(Connection connection, boolean commit) {
+        if (connection == null) {
+            return;
+        }
+        synchronized (allConnections) {
+            if (owners.remove(connection) == null) {
+                // It has been released or reclaimed before.
+                return;
+            }
+        }
+        try {
+            if (connection.isClosed()) {
+                synchronized (allConnections) {
+                    allConnections.remove(connection);
+                }
+                return;
+            }
+            if (!connection.getAutoCommit()) {
+                if (commit) {
+                    connection.commit();
+                } else {
+                    connection.rollback();
+                }
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            logger.warn("Unable to reset the connection before giving it back to the pool.", e);
+        }
+        if (closed) {
+            closeQuietly(connection);
+        } else {
+            idleConnections.offer(connection);
+        }
+    }
+
+    /**
+     * Open a connection for a long lived streaming read which must not block the connection a thread uses for its
+     * other work. At most the maximum size of cursor connections are open at the same time, and a caller waits until
+     * one is closed, except for a thread which already has a cursor open, so nested cursors never wait for themselves.
+     * The connection must be closed by {@link #closeCursorConnection(Connection)}.
+     *
+     * @return A new connection.
+     */
+    public Connection openCursorConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("The connection pool has been closed.");
+        }
+        Thread thread = Thread.currentThread();
+        boolean nested;
+        synchronized (cursorOwners) {
+            nested = cursorOwners.containsValue(thread);
+        }
+        if (!nested) {
+            acquireCursorPermit();
+        }
+        Connection connection;
+        try {
+            connection = DriverManager.getConnection(url, user, password);
+        } catch (SQLException e) {
+            if (!nested) {
+                cursorPermits.release();
+            }
+            throw e;
+        }
+        if (!nested) {
+            synchronized (cursorOwners) {
+                cursorOwners.put(connection, thread);
+            }
+        }
+        return connection;
+    }
+
+    /**
+     * Close a connection opened by {@link #openCursorConnection()}, so another cursor can be opened.
+     *
+     * @param connection The cursor connection.
+     */
+    public void closeCursorConnection(Connection connection) {
+        boolean permitted;
+        synchronized (cursorOwners) {
+            permitted = cursorOwners.remove(connection) != null;
+        }
+        closeQuietly(connection);
+        if (permitted) {
+            cursorPermits.release();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Close all connections created by this pool, including the leased ones.
+     */
+    public void close() {
+        closed = true;
+        synchronized (allConnections) {
+            for (Connection connection : allConnections) {
+                closeQuietly(connection);
+            }
+            allConnections.clear();
+            owners.clear();
+        }
+        idleConnections.clear();
+    }
+
+    private void acquireCursorPermit() throws SQLException {
+        int waitedSeconds = 0;
+        try {
+            while (!cursorPermits.tryAcquire(WAIT_SECONDS, TimeUnit.SECONDS)) {
+                if (closed) {
+                    throw new SQLException("The connection pool has been closed.");
+                }
+                reclaimAbandonedCursorConnections();
+                waitedSeconds += WAIT_SECONDS;
+                if (waitedSeconds % WAIT_WARNING_SECONDS == 0) {
+                    logger.warn("All {} cursor connections have been open for {} seconds, still waiting...", maxSize,
+                        waitedSeconds);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a cursor connection.");
+        }
+    }
+
+    private Connection lease(Connection connection) {
+        synchronized (allConnections) {
+            owners.put(connection, Thread.currentThread());
+        }
+        return connection;
+    }
+
+    /**
+     * Give back the connections whose owner threads have terminated without releasing them.
+     */
+    private void reclaimAbandonedConnections() {
+        List<Connection> abandonedConnections = new ArrayList<Connection>();
+        synchronized (allConnections) {
+            for (Map.Entry<Connection, Thread> entry : owners.entrySet()) {
+                if (!entry.getValue().isAlive()) {
+                    abandonedConnections.add(entry.getKey());
+                }
+            }
+        }
+        for (Connection connection : abandonedConnections) {
+            logger.info("Take back a database connection leased by a terminated thread, its open transaction is rolled "
+                + "back.");
+            giveBack(connection, false);
+        }
+    }
+
+    /**
+     * Close the cursor connections whose threads have terminated without closing them.
+     */
+    private void reclaimAbandonedCursorConnections() {
+        List<Connection> abandonedConnections = new ArrayList<Connection>();
+        synchronized (cursorOwners) {
+            for (Map.Entry<Connection, Thread> entry : cursorOwners.entrySet()) {
+                if (!entry.getValue().isAlive()) {
+                    abandonedConnections.add(entry.getKey());
+                }
+            }
+        }
+        for (Connection connection : abandonedConnections) {
+            logger.info("Close a cursor connection left open by a terminated thread.");
+            closeCursorConnection(connection);
+        }
+    }
+
+    private Connection createConnection() throws SQLException {
+        Connection connection = DriverManager.getConnection(url, user, password);
+        synchronized (allConnections) {
+            allConnections.add(connection);
+        }
+        return connection;
+    }
+
+    private void closeQuietly(Connection connection) {
+        try {
+            if (!connection.isClosed()) {
+                connection.close();
+            }
+        } catch (SQLException e) {
+            logger.error("Unable to close the connection, please have a check.", e);
+        }
+    }
+}
@@ -14,10 +14,15 @@
 package com.xl.database;
 
 /**
- * DatabaseManager is a class to manage database. We make it as a static private class so everyone can only use it in a
- * single thread, which will influence the efficiency, but in order to synchronize, we would like to make it.
+ * DatabaseManager is a class to manage database. It is a single instance backed by a connection pool, each thread leases
+ * its own connection from the pool the first time it talks to the database, so transactions (i.e., auto commit and
+ * commit) of one thread never interfere with another one.
  */
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.Enumeration;
@@ -29,11 +34,12 @@ import org.slf4j.LoggerFactory;
 
 import com.xl.main.RedApplication;
 import com.xl.preferences.DatabasePreferences;
-import com.xl.utils.RandomStringGenerator;
+import com.xl.utils.FileFingerprint;
 import com.xl.utils.ui.OptionDialogUtils;
 
 public class DatabaseManager {
     public static final int COMMIT_COUNTS_PER_ONCE = 10000;
+    public static final int DEFAULT_BATCH_SIZE = 1000;
     public static final String FILTER = "filter";
     public static final String DNA_RNA_MODE_DATABASE_NAME = "DNA_RNA_MODE";
     public static final String DENOVO_MODE_DATABASE_NAME = "DENOVO_MODE";
@@ -47,6 +53,14 @@ public class DatabaseManager {
     public static final String REPEAT_FILTER_RESULT_TABLE_NAME = "rrfilter";
     public static final String DNA_RNA_FILTER_RESULT_TABLE_NAME = "drfilter";
     public static final String LLR_FILTER_RESULT_TABLE_NAME = "llrfilter";
+    /**
+     * The tables which a filter result table of a sample can be filtered from, i.e., the first name after the sample
+     * name in the filter result table.
+     */
+    private static final String[] FILTER_SOURCE_TABLE_NAMES = {RNA_VCF_RESULT_TABLE_NAME, QC_FILTER_RESULT_TABLE_NAME,
+        EDITING_TYPE_FILTER_RESULT_TABLE_NAME, SPLICE_JUNCTION_FILTER_RESULT_TABLE_NAME, DBSNP_FILTER_RESULT_TABLE_NAME,
+        FET_FILTER_RESULT_TABLE_NAME, REPEAT_FILTER_RESULT_TABLE_NAME, DNA_RNA_FILTER_RESULT_TABLE_NAME,
+        LLR_FILTER_RESULT_TABLE_NAME};
     public static final String SPLICE_JUNCTION_TABLE_NAME = "splice_junction";
     public static final String KNOWN_RNA_EDITING_TABLE_NAME = "known_rna_editing";
     public static final String DARNED_DATABASE_TABLE_NAME = "darned";
@@ -62,17 +76,54 @@ public class DatabaseManager {
     private static final DatabaseManager DATABASE_MANAGER = new DatabaseManager();
     /**
      * A statement to execute SQL clause. We use this statement in insert clause to improve the performance that prevent
-     * creating statement every time executing the insert clause.
+     * creating statement every time executing the insert clause. Each thread keeps its own statement on its own
+     * connection.
+     */
+    private final ThreadLocal<Statement> insertStatement = new ThreadLocal<Statement>();
+    /**
+     * The connection leased from the pool by the current thread.
+     */
+    private final ThreadLocal<Connection> leasedConnection = new ThreadLocal<Connection>();
+    /**
+     * The database which the connection of the current thread uses.
      */
-    private static Statement stmt;
+    private final ThreadLocal<String> connectionDatabase = new ThreadLocal<String>();
     /**
      * The database listener, including database connection and changes.
      */
     Vector<DatabaseListener> listeners = new Vector<DatabaseListener>();
     /**
-     * A connection between Java and MySQL using Java Database Connectivity.
+     * The pool of connections between Java and MySQL using Java Database Connectivity.
+     */
+    private ConnectionPool connectionPool = null;
+    /**
+     * The database engine behind the connection pool.
+     */
+    private volatile StorageBackend backend = null;
+    /**
+     * The maximum number of connections opened at the same time, one per working thread by default.
+     */
+    private int maxConnections = Math.max(2, Runtime.getRuntime().availableProcessors());
+    /**
+     * The database which all leased connections should use.
+     */
+    private volatile String currentDatabase = null;
+    /**
+     * The number of rows sent to the database at once by a {@link BatchWriter}.
+     */
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    /**
+     * Whether sample tables are created with one partition for each standard chromosome.
+     */
+    private boolean partitioned = false;
+    /**
+     * Whether the tables of a multi-table import are written at the same time by several connections.
+     */
+    private boolean sampleParallel = false;
+    /**
+     * The timing of all statements executed by this manager.
      */
-    private Connection con = null;
+    private final DatabaseMetrics metrics = new DatabaseMetrics();
 
     /**
      * Private constructor to make it a single instance.
@@ -146,20 +197,174 @@ public class DatabaseManager {
      * @return Whether database has been connected, true if it is successful.
      */
     public boolean connectDatabase(String host, String port, String user, String password) throws SQLException {
-        try {
-            Class.forName("com.mysql.jdbc.Driver");
-        } catch (ClassNotFoundException e) {
-            logger.warn(
-                "The driver has been integrated into the software and should not be found. If the ClassNotFoundException happens again, "
-                    + "please try to download the latest version of RED to solve the problem.",
-                e);
+        return connectDatabase(new MySqlBackend(host, port, user, password));
+    }
+
+    /**
+     * Connect to the database engine of a storage backend, e.g., an external MySQL server or an embedded engine.
+     *
+     * @param backend The storage backend.
+     * @return Whether database has been connected, true if it is successful.
+     */
+    public boolean connectDatabase(StorageBackend backend) throws SQLException {
+        backend.loadDriver();
+        closeDatabase();
+        connectionPool = new ConnectionPool(backend.getUrl(), backend.getUser(), backend.getPassword(), maxConnections);
+        this.backend = backend;
+        currentDatabase = null;
+        logger.info("Connected to the {} storage backend.", backend.getName());
+
+        return getConnection() != null;
+    }
+
+    /**
+     * @return The storage backend which is connected, or null if the database has not been connected.
+     */
+    public StorageBackend getBackend() {
+        return backend;
+    }
+
+    /**
+     * Set the maximum number of connections opened at the same time. It takes effect at the next time the database is
+     * connected.
+     *
+     * @param maxConnections The maximum number of connections, at least one.
+     */
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = Math.max(1, maxConnections);
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Set the number of rows sent to the database at once by a {@link BatchWriter}.
+     *
+     * @param batchSize The batch size, at least one.
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Create the sample tables with one partition for each standard chromosome, so queries of a chromosome only read
+     * its partition. Filter tables are created like the sample tables, so they are partitioned in the same way. It only
+     * takes effect if the backend supports partitions.
+     *
+     * @param partitioned True to partition the sample tables.
+     */
+    public void setPartitioned(boolean partitioned) {
+        this.partitioned = partitioned;
+    }
+
+    /**
+     * Write the tables of a multi-table import, e.g., the sample tables of a VCF file, at the same time by several
+     * connections instead of one after another by a single connection. See {@link #createBulkInserter}.
+     *
+     * @param sampleParallel True to write the tables at the same time.
+     */
+    public void setSampleParallel(boolean sampleParallel) {
+        this.sampleParallel = sampleParallel;
+    }
+
+    public boolean isSampleParallel() {
+        return sampleParallel;
+    }
+
+    /**
+     * @return True if the sample tables are created with partitions, which only keep the sites of standard chromosomes.
+     */
+    public boolean isPartitioned() {
+        return partitioned && backend != null && backend.isPartitionSupported();
+    }
+
+    /**
+     * @return The timing of all statements executed by this manager.
+     */
+    public DatabaseMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Get the connection of the current thread. The first call in a thread leases a connection from the pool, and the
+     * thread keeps it until {@link #releaseConnection()} is called. The connection always uses the current database.
+     *
+     * @return The connection leased by the current thread.
+     */
+    Connection getConnection() throws SQLException {
+        if (connectionPool == null) {
+            throw new SQLException("Database has not been connected.");
         }
+        Connection connection = leasedConnection.get();
+        if (connection == null || connection.isClosed()) {
+            connection = connectionPool.acquire();
+            leasedConnection.set(connection);
+            connectionDatabase.remove();
+        }
+        String database = currentDatabase;
+        if (database != null && !database.equals(connectionDatabase.get())) {
+            backend.useDatabase(connection, database);
+            connectionDatabase.set(database);
+        }
+        return connection;
+    }
 
-        String connectionURL = "jdbc:mysql://" + host + ":" + port;
+    /**
+     * Give the connection leased by the current thread back to the pool. Worker threads should call this method when
+     * they finish their database work; the pending transaction will be committed.
+     */
+    public void releaseConnection() {
+        Statement statement = insertStatement.get();
+        insertStatement.remove();
+        if (statement != null) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                logger.warn("Unable to close the insert statement.", e);
+            }
+        }
+        Connection connection = leasedConnection.get();
+        leasedConnection.remove();
+        connectionDatabase.remove();
+        if (connection != null && connectionPool != null) {
+            connectionPool.release(connection);
+        }
+    }
 
-        con = DriverManager.getConnection(connectionURL, user, password);
+    /**
+     * Lease a connection for a helper thread without waiting, so a thread which holds its own connection can not wait
+     * for connections held by threads which wait for it. The helper thread takes it by {@link #adoptConnection}.
+     *
+     * @return The connection, or null if all connections are leased.
+     */
+    public Connection tryLeaseConnection() throws SQLException {
+        if (connectionPool == null) {
+            throw new SQLException("Database has not been connected.");
+        }
+        return connectionPool.tryAcquire();
+    }
 
-        return con != null;
+    /**
+     * Let the current thread use a connection leased by {@link #tryLeaseConnection()}, until it calls
+     * {@link #releaseConnection()}.
+     */
+    public void adoptConnection(Connection connection) {
+        leasedConnection.set(connection);
+        connectionDatabase.remove();
+    }
+
+    /**
+     * Give back a connection leased by {@link #tryLeaseConnection()} which has not been adopted by any thread.
+     */
+    public void releaseConnection(Connection connection) {
+        if (connectionPool != null) {
+            connectionPool.release(connection);
+        }
     }
 
     /**
@@ -169,7 +374,7 @@ public class DatabaseManager {
      */
     public void setAutoCommit(boolean autoCommit) {
         try {
-            con.setAutoCommit(autoCommit);
+            getConnection().setAutoCommit(autoCommit);
         } catch (SQLException e) {
             logger.warn("Unable to set database auto commit.", e);
         }
@@ -180,12 +385,26 @@ public class DatabaseManager {
      */
     public void commit() {
         try {
-            con.commit();
+            Connection connection = getConnection();
+            long start = System.nanoTime();
+            connection.commit();
+            metrics.recordCommit(start);
         } catch (SQLException e) {
             logger.warn("Unable to commit to the database, roll back to the previous status.", e);
         }
     }
 
+    /**
+     * Roll back the pending transaction of the current thread.
+     */
+    public void rollback() {
+        try {
+            getConnection().rollback();
+        } catch (SQLException e) {
+            logger.warn("Unable to roll back the transaction.", e);
+        }
+    }
+
     /**
      * Calculate the row count accurately of a given database table. We used 'select count(*) from tableName' before,
      * but it seems that 'select count(1) from tableName' is faster and get the same result.
@@ -196,9 +415,9 @@ public class DatabaseManager {
     public int calRowCount(String tableName) {
         Statement stmt;
         try {
-            stmt = con.createStatement();
+            stmt = getConnection().createStatement();
             ResultSet rs;
-            rs = stmt.executeQuery("select count(1) from " + tableName);
+            rs = executeQuery(stmt, "select count(1) from " + tableName);
             if (rs != null && rs.next()) {
                 return rs.getInt(1);
             } else {
@@ -230,8 +449,8 @@ public class DatabaseManager {
      */
     public void createDatabase(String databaseName) {
         try {
-            Statement stmt = con.createStatement();
-            stmt.executeUpdate("create database if not exists " + databaseName);
+            Statement stmt = getConnection().createStatement();
+            executeUpdate(stmt, backend.createDatabaseClause(databaseName));
             stmt.close();
         } catch (SQLException e) {
             logger.error("Unable to create database: create database if not exists {}", databaseName);
@@ -260,20 +479,15 @@ public class DatabaseManager {
         useDatabase(database);
         DatabaseMetaData databaseMetaData;
         try {
-            databaseMetaData = con.getMetaData();
+            databaseMetaData = getConnection().getMetaData();
         } catch (SQLException e) {
             OptionDialogUtils.showErrorDialog(RedApplication.getInstance(),
                 "Statement has not been created. Could not get meta data from database.");
             logger.error("Statement has not been created. Could not get meta data from database.", e);
             return new ArrayList<String>();
         }
-        ResultSet rs;
         try {
-            rs = databaseMetaData.getTables(database, null, null, new String[] { "TABLE" });
-            while (rs.next()) {
-                // get table name
-                tableLists.add(rs.getString(3));
-            }
+            tableLists.addAll(backend.getTables(databaseMetaData, database));
             return tableLists;
         } catch (SQLException e) {
             OptionDialogUtils.showErrorDialog(RedApplication.getInstance(),
@@ -283,16 +497,29 @@ public class DatabaseManager {
         }
     }
 
+    /**
+     * Get the column names of a table in lower case. They are read from the meta data of an empty query on the table
+     * rather than from information_schema, which holds the names in the case of each backend and the tables of all
+     * databases.
+     *
+     * @param database The database name.
+     * @param tableName The table name.
+     * @return The column names in the order of the table, or an empty list if the table does not exist.
+     */
     public List<String> getColumnNames(String database, String tableName) throws SQLException {
         List<String> columnNames = new ArrayList<String>();
         useDatabase(database);
-        Statement stmt = con.createStatement();
-        ResultSet rs = stmt
-            .executeQuery("select COLUMN_NAME from information_schema.columns where table_name='" + tableName + "'");
-        while (rs.next()) {
-            if (!columnNames.contains(rs.getString(1))) {
-                columnNames.add(rs.getString(1));
+        if (!existTable(tableName)) {
+            return columnNames;
+        }
+        Statement stmt = getConnection().createStatement();
+        try {
+            ResultSetMetaData metaData = executeQuery(stmt, "select * from " + tableName + " where 1=0").getMetaData();
+            for (int i = 1, len = metaData.getColumnCount(); i <= len; i++) {
+                columnNames.add(metaData.getColumnLabel(i).toLowerCase());
             }
+        } finally {
+            stmt.close();
         }
         return columnNames;
     }
@@ -304,8 +531,8 @@ public class DatabaseManager {
      */
     public void deleteTable(String tableName) {
         try {
-            Statement stmt = con.createStatement();
-            stmt.executeUpdate("drop table if exists " + tableName);
+            Statement stmt = getConnection().createStatement();
+            executeUpdate(stmt, "drop table if exists " + tableName);
             stmt.close();
         } catch (SQLException e) {
             logger.error("Error drop table: " + tableName, e);
@@ -316,8 +543,9 @@ public class DatabaseManager {
      * We provide this method to delete a sample and its relative filtration result from database.
      * <p>
      * Here is an example: If the sample name is 'BJ22', then we will check all table from this database and find out
-     * the table names which starts with 'BJ22_', we add an '_' to prevent from deleting the replicate sample like
-     * 'BJ22N', 'BJ22T', 'BJ22P', etc.
+     * the table names which starts with 'BJ22_' followed by the name of a filter result, e.g., 'BJ22_rnavcf_qcfilter'
+     * or 'BJ22_qcfilter_etfilter', so neither the replicate sample like 'BJ22N', 'BJ22T', 'BJ22P' nor the sample like
+     * 'BJ22_2' is deleted.
      *
      * @param database Database which is currently used.
      * @param sampleName The sample to be deleted.
@@ -327,15 +555,15 @@ public class DatabaseManager {
         try {
             List<String> tableLists = getCurrentTables(database);
             // Prevent from deleting BJ22N sample, but actually we want to delete BJ22 sample.
-            Statement stmt = con.createStatement();
+            Statement stmt = getConnection().createStatement();
             for (String table : tableLists) {
                 // We won't drop your own data set in the database.
                 if (table.equals(sampleName + "_" + DatabaseManager.DNA_VCF_RESULT_TABLE_NAME)
                     || table.equals(sampleName + "_" + DatabaseManager.RNA_VCF_RESULT_TABLE_NAME)) {
                     continue;
                 }
-                if (table.startsWith(sampleName + "_")) {
-                    stmt.executeUpdate("drop table if exists " + table);
+                if (isFilterTableOf(table, sampleName)) {
+                    executeUpdate(stmt, "drop table if exists " + table);
                 }
             }
             stmt.close();
@@ -344,6 +572,28 @@ public class DatabaseManager {
         }
     }
 
+    /**
+     * @return True if the table is a filter result table of the sample, i.e., the sample name, a table which the
+     * filter was performed over, and the name of the filter, which are joined by '_'.
+     */
+    private boolean isFilterTableOf(String table, String sampleName) {
+        String prefix = sampleName + "_";
+        if (!table.startsWith(prefix)) {
+            return false;
+        }
+        int sourceEnd = table.indexOf('_', prefix.length());
+        if (sourceEnd < 0) {
+            return false;
+        }
+        String source = table.substring(prefix.length(), sourceEnd);
+        for (String name : FILTER_SOURCE_TABLE_NAMES) {
+            if (name.equals(source)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * We get the name of a table like "BJ22" from "BJ22_qcfilter_etfilter"
      *
@@ -376,20 +626,15 @@ public class DatabaseManager {
         List<String> tableLists = new ArrayList<String>();
         DatabaseMetaData databaseMetaData;
         try {
-            databaseMetaData = con.getMetaData();
+            databaseMetaData = getConnection().getMetaData();
         } catch (SQLException e) {
             OptionDialogUtils.showErrorDialog(RedApplication.getInstance(),
                 "Statement has not been created. Could not get meta data from database.");
             logger.error("Statement has not been created. Could not get meta data from database.", e);
             return new ArrayList<String>();
         }
-        ResultSet rs;
         try {
-            rs = databaseMetaData.getCatalogs();
-            while (rs.next()) {
-                // get table name
-                tableLists.add(rs.getString("TABLE_CAT"));
-            }
+            tableLists.addAll(backend.getDatabases(databaseMetaData));
             return tableLists;
         } catch (SQLException e) {
             OptionDialogUtils.showErrorDialog(RedApplication.getInstance(),
@@ -427,10 +672,12 @@ public class DatabaseManager {
      */
     public void useDatabase(String databaseName) {
         try {
-            Statement stmt = con.createStatement();
-            stmt.executeUpdate("use " + databaseName);
+            long start = System.nanoTime();
+            backend.useDatabase(getConnection(), databaseName);
+            metrics.record("use " + databaseName, start, -1);
+            connectionDatabase.set(databaseName);
+            currentDatabase = databaseName;
             DatabasePreferences.getInstance().setCurrentDatabase(databaseName);
-            stmt.close();
         } catch (SQLException e) {
             logger.error("Unable to use database " + databaseName, e);
         }
@@ -442,10 +689,91 @@ public class DatabaseManager {
      * @param sql The SQL clause.
      */
     public void insertClause(String sql) throws SQLException {
+        Statement stmt = insertStatement.get();
         if (stmt == null || stmt.isClosed()) {
-            stmt = con.createStatement();
+            stmt = getConnection().createStatement();
+            insertStatement.set(stmt);
         }
-        stmt.executeUpdate(sql);
+        executeUpdate(stmt, sql);
+    }
+
+    /**
+     * Create a batch writer to insert rows into a table on the connection of the current thread.
+     *
+     * @param tableName The table name.
+     * @param columns The columns of each row, values must be appended in the same order.
+     * @return A batch writer, which must be closed after all rows are appended.
+     */
+    public BatchWriter createBatchInserter(String tableName, String[] columns) throws SQLException {
+        return createBatchInserter(tableName, columns, false);
+    }
+
+    /**
+     * Create a batch writer to insert rows into a table on the connection of the current thread.
+     *
+     * @param tableName The table name.
+     * @param columns The columns of each row, values must be appended in the same order.
+     * @param ignoreDuplicates True to skip rows which duplicate a unique key of the table, e.g., sites tables.
+     * @return A batch writer, which must be closed after all rows are appended.
+     */
+    public BatchWriter createBatchInserter(String tableName, String[] columns, boolean ignoreDuplicates)
+        throws SQLException {
+        return new BatchWriter(getConnection(), BatchWriter.insertClause(tableName, columns, ignoreDuplicates),
+            batchSize, metrics);
+    }
+
+    /**
+     * Create a batch writer for a parameterized SQL clause, such as 'update table set fdr=? where chrom=? and pos=?'.
+     *
+     * @param sql The SQL clause with '?' as the placeholder of each value.
+     * @return A batch writer, which must be closed after all rows are appended.
+     */
+    public BatchWriter createBatchWriter(String sql) throws SQLException {
+        return new BatchWriter(getConnection(), sql, batchSize, metrics);
+    }
+
+    /**
+     * Create a writer which inserts rows into one or more tables with the same columns on a writer thread, so the caller
+     * can go on parsing while rows are written. Rows are committed by the writer thread.
+     * <p/>
+     * The connection of the writer thread is leased without waiting, since the caller may hold the last one. If no
+     * connection is free, rows are written by a {@link DirectWriter} on the caller's connection instead.
+     *
+     * @param tableNames The tables, a row is written to the table whose index is given when the row ends.
+     * @param columns The columns of each row, values must be appended in the same order.
+     * @param ignoreDuplicates True to skip rows which duplicate a unique key of the table, e.g., sites tables.
+     * @return A writer, which must be closed after all rows are appended.
+     */
+    public RowWriter createWriteBehindInserter(String[] tableNames, String[] columns, boolean ignoreDuplicates)
+        throws SQLException {
+        Connection connection = tryLeaseConnection();
+        if (connection == null) {
+            logger.info("No free connection for a writer thread, write " + tableNames[0] + " directly.");
+            return new DirectWriter(this, tableNames, columns, ignoreDuplicates);
+        }
+        return new WriteBehindWriter(tableNames, columns, ignoreDuplicates, batchSize, connection);
+    }
+
+    /**
+     * Create a writer for importing large files. Rows are spilled into files and loaded by 'load data local infile' if
+     * the backend supports it, otherwise they are written by {@link #createWriteBehindInserter}. In sample-parallel mode,
+     * the spill files are loaded at the same time, or the tables are written by a {@link SampleParallelWriter}. No
+     * writer waits for the pool, connections of helper threads are leased only if they are free.
+     *
+     * @param tableNames The tables, a row is written to the table whose index is given when the row ends.
+     * @param columns The columns of each row, values must be appended in the same order.
+     * @param ignoreDuplicates True to skip rows which duplicate a unique key of the table, e.g., sites tables.
+     * @return A writer, which must be closed after all rows are appended.
+     */
+    public RowWriter createBulkInserter(String[] tableNames, String[] columns, boolean ignoreDuplicates)
+        throws SQLException {
+        if (backend.isBulkLoadSupported()) {
+            return new BulkLoadWriter(this, tableNames, columns, ignoreDuplicates, sampleParallel);
+        }
+        if (sampleParallel && tableNames.length > 1) {
+            return new SampleParallelWriter(this, tableNames, columns, ignoreDuplicates, batchSize);
+        }
+        return createWriteBehindInserter(tableNames, columns, ignoreDuplicates);
     }
 
     /**
@@ -456,8 +784,8 @@ public class DatabaseManager {
      */
     public void executeSQL(String sql) throws SQLException {
         try {
-            Statement stmt = con.createStatement();
-            stmt.executeUpdate(sql);
+            Statement stmt = getConnection().createStatement();
+            executeUpdate(stmt, sql);
             stmt.close();
         } catch (SQLException e) {
             logger.error("Error execute the SQL clause: " + sql, e);
@@ -465,6 +793,145 @@ public class DatabaseManager {
         }
     }
 
+    /**
+     * Load tab-separated lines into a table, each of which holds the values of the given columns. The lines are read
+     * from the stream, so a compressed file can be loaded through a decompressing stream. They are loaded by 'load data
+     * local infile' if the backend supports it, otherwise they are inserted by batches.
+     *
+     * @param tableName The table name.
+     * @param columns The columns of each line, in the order of the fields.
+     * @param inputStream The lines to load, which is closed at the end.
+     */
+    public void loadTabSeparated(String tableName, String[] columns, InputStream inputStream) throws SQLException {
+        if (!backend.isBulkLoadSupported()) {
+            insertTabSeparated(tableName, columns, inputStream);
+            return;
+        }
+        try {
+            StringBuilder builder = new StringBuilder("load data local infile '").append(tableName)
+                .append(".tsv' into table ").append(tableName)
+                .append(" fields terminated by '\\t' lines terminated by '\\n' (").append(columns[0]);
+            for (int i = 1, len = columns.length; i < len; i++) {
+                builder.append(',').append(columns[i]);
+            }
+            // The file name is not read since the data comes from the stream.
+            executeLoadFromStream(builder.append(')').toString(), inputStream);
+        } finally {
+            try {
+                inputStream.close();
+            } catch (IOException e) {
+                logger.warn("Unable to close the stream of " + tableName, e);
+            }
+        }
+    }
+
+    /**
+     * Insert tab-separated lines by batches for backends which can not bulk load them. Values are converted as
+     * 'load data' does: '\N' is NULL, missing fields are NULL, and a field which is not a number is NULL in a numeric
+     * column.
+     */
+    private void insertTabSeparated(String tableName, String[] columns, InputStream inputStream)
+        throws SQLException {
+        StringBuilder columnList = new StringBuilder(columns[0]);
+        for (int i = 1, len = columns.length; i < len; i++) {
+            columnList.append(',').append(columns[i]);
+        }
+        int[] types = new int[columns.length];
+        Statement stmt = getConnection().createStatement();
+        try {
+            ResultSetMetaData metaData =
+                executeQuery(stmt, "select " + columnList + " from " + tableName + " where 1=0").getMetaData();
+            for (int i = 0, len = columns.length; i < len; i++) {
+                types[i] = metaData.getColumnType(i + 1);
+            }
+        } finally {
+            stmt.close();
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
+        setAutoCommit(false);
+        try {
+            BatchWriter writer = createBatchInserter(tableName, columns);
+            String line;
+            int count = 0;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", -1);
+                for (int i = 0, len = columns.length; i < len; i++) {
+                    appendField(writer, i < fields.length ? fields[i] : null, types[i]);
+                }
+                writer.endRow();
+                if (++count % COMMIT_COUNTS_PER_ONCE == 0) {
+                    commit();
+                }
+            }
+            writer.close();
+            commit();
+        } catch (IOException e) {
+            rollback();
+            throw new SQLException("Error read the lines of " + tableName, e);
+        } catch (SQLException e) {
+            rollback();
+            throw e;
+        } finally {
+            setAutoCommit(true);
+            try {
+                reader.close();
+            } catch (IOException e) {
+                logger.warn("Unable to close the stream of " + tableName, e);
+            }
+        }
+    }
+
+    private static void appendField(BatchWriter writer, String field, int sqlType) throws SQLException {
+        if (field == null || field.equals("\\N")) {
+            writer.appendNull(sqlType);
+            return;
+        }
+        try {
+            switch (sqlType) {
+                case Types.TINYINT:
+                case Types.SMALLINT:
+                case Types.INTEGER:
+                    writer.append(Integer.parseInt(field.trim()));
+                    return;
+                case Types.BIGINT:
+                    writer.append(Long.parseLong(field.trim()));
+                    return;
+                case Types.REAL:
+                case Types.FLOAT:
+                case Types.DOUBLE:
+                case Types.DECIMAL:
+                case Types.NUMERIC:
+                    writer.append(Double.parseDouble(field.trim()));
+                    return;
+                default:
+                    writer.append(field);
+            }
+        } catch (NumberFormatException e) {
+            writer.appendNull(sqlType);
+        }
+    }
+
+    /**
+     * Execute a 'load data local infile' clause which reads its data from a stream instead of the file named in it.
+     *
+     * @param sql The load clause.
+     * @param inputStream The data to load.
+     */
+    void executeLoadFromStream(String sql, InputStream inputStream) throws SQLException {
+        try {
+            Statement stmt = getConnection().createStatement();
+            try {
+                backend.setLocalInfileStream(stmt, inputStream);
+                executeUpdate(stmt, sql);
+            } finally {
+                stmt.close();
+            }
+        } catch (SQLException e) {
+            logger.error("Error execute the SQL clause: " + sql, e);
+            throw e;
+        }
+    }
+
     /**
      * Provide a method to execute multi-table queries. You should not use this method to do a single table query, and
      * use 'query(String table, String[] columns, String selection, String[] selectionArgs)' instead.
@@ -475,8 +942,8 @@ public class DatabaseManager {
     public ResultSet query(String queryClause) {
         ResultSet rs = null;
         try {
-            Statement stmt = con.createStatement();
-            rs = stmt.executeQuery(queryClause);
+            Statement stmt = getConnection().createStatement();
+            rs = executeQuery(stmt, queryClause);
         } catch (SQLException e) {
             logger.error("Error execute the SQL clause: " + queryClause, e);
         }
@@ -497,28 +964,20 @@ public class DatabaseManager {
      */
     public ResultSet query(String table, String[] columns, String selection, String[] selectionArgs) {
         ResultSet rs = null;
-        StringBuilder stringBuilder = new StringBuilder();
-        stringBuilder.append("select ");
-        if (columns == null || columns.length == 0 || columns[0].equals("*")) {
-            stringBuilder.append(" * ");
-        } else {
-            stringBuilder.append(columns[0]);
-            for (int i = 1, len = columns.length; i < len; i++) {
-                stringBuilder.append(",").append(columns[i]);
-            }
-        }
-        stringBuilder.append(" from ").append(table);
+        StringBuilder stringBuilder = selectClause(table, columns);
         try {
             if (selection == null || selectionArgs == null || selectionArgs.length == 0) {
-                Statement stmt = con.createStatement();
-                rs = stmt.executeQuery(stringBuilder.toString());
+                Statement stmt = getConnection().createStatement();
+                rs = executeQuery(stmt, stringBuilder.toString());
             } else {
                 stringBuilder.append(" WHERE ").append(selection);
-                PreparedStatement statement = con.prepareStatement(stringBuilder.toString());
+                PreparedStatement statement = getConnection().prepareStatement(stringBuilder.toString());
                 for (int i = 1, len = selectionArgs.length; i <= len; i++) {
                     statement.setString(i, selectionArgs[i - 1]);
                 }
+                long start = System.nanoTime();
                 rs = statement.executeQuery();
+                metrics.record(stringBuilder.toString(), start, -1);
             }
         } catch (SQLException e) {
             logger.error("There is a syntax error: " + stringBuilder.toString(), e);
@@ -526,97 +985,251 @@ public class DatabaseManager {
         return rs;
     }
 
-    public void insertOrUpdateInfo(String tableName) {
-        if (!existTable(INFORMATION_TABLE_NAME)) {
-            TableCreator.createInfoTable();
-        }
-        int counts = calRowCount(tableName);
-        // INSERT table (auto_id, auto_name) values (1, yourname') ON DUPLICATE KEY UPDATE auto_name='yourname'
-        try {
-            insertClause("insert into " + INFORMATION_TABLE_NAME + "(tableName,counts) values('" + tableName + "','"
-                + counts + "') ON DUPLICATE KEY UPDATE counts='" + counts + "'");
-        } catch (SQLException e) {
-            e.printStackTrace();
+    /**
+     * Open a streaming cursor for a query clause. The cursor reads on its own connection, so the current thread can keep
+     * using the database while iterating it.
+     *
+     * @param queryClause The query clause.
+     * @return A forward-only cursor, which must be closed after use.
+     */
+    public QueryCursor openCursor(String queryClause) throws SQLException {
+        return new QueryCursor(connectionPool, openCursorConnection(), queryClause, null,
+            backend.getStreamingFetchSize(), metrics);
+    }
+
+    /**
+     * Open a streaming cursor over the given table. The arguments have the same meaning as
+     * {@link #query(String, String[], String, String[])}.
+     *
+     * @param table The table name to compile the query against.
+     * @param columns A list of which columns to return. Passing null will return all columns.
+     * @param selection A filter declaring which rows to return, formatted as an SQL WHERE clause.
+     * @param selectionArgs The values of the ?s in selection.
+     * @return A forward-only cursor, which must be closed after use.
+     */
+    public QueryCursor openCursor(String table, String[] columns, String selection, String[] selectionArgs)
+        throws SQLException {
+        StringBuilder stringBuilder = selectClause(table, columns);
+        if (selection == null || selectionArgs == null || selectionArgs.length == 0) {
+            selectionArgs = null;
+        } else {
+            stringBuilder.append(" WHERE ").append(selection);
         }
+        return new QueryCursor(connectionPool, openCursorConnection(), stringBuilder.toString(), selectionArgs,
+            backend.getStreamingFetchSize(), metrics);
     }
 
-    public boolean isTableExistAndValid(String tableName) {
-        if (!existTable(INFORMATION_TABLE_NAME)) {
-            TableCreator.createInfoTable();
+    private Connection openCursorConnection() throws SQLException {
+        if (connectionPool == null) {
+            throw new SQLException("Database has not been connected.");
         }
-        try {
-            ResultSet rs =
-                query(INFORMATION_TABLE_NAME, new String[] { "counts" }, " tableName=?", new String[] { tableName });
-            int infoCounts = rs != null && rs.next() ? rs.getInt(1) : 0;
-            int currentCount = calRowCount(tableName);
-            logger.info(tableName + "\tcurrentCounts: " + currentCount + "\tinfoCounts: " + infoCounts);
-            return infoCounts == currentCount && infoCounts > 0;
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return false;
+        Connection connection = connectionPool.openCursorConnection();
+        String database = currentDatabase;
+        if (database != null) {
+            try {
+                backend.useDatabase(connection, database);
+            } catch (SQLException e) {
+                connectionPool.closeCursorConnection(connection);
+                throw e;
+            }
+        }
+        return connection;
+    }
+
+    /**
+     * Execute an update clause and record its timing.
+     */
+    private int executeUpdate(Statement stmt, String sql) throws SQLException {
+        sql = backend.adaptSql(sql);
+        long start = System.nanoTime();
+        int rows = stmt.executeUpdate(sql);
+        metrics.record(sql, start, rows);
+        return rows;
+    }
+
+    /**
+     * Execute a query clause and record its timing.
+     */
+    private ResultSet executeQuery(Statement stmt, String sql) throws SQLException {
+        sql = backend.adaptSql(sql);
+        long start = System.nanoTime();
+        ResultSet rs = stmt.executeQuery(sql);
+        metrics.record(sql, start, -1);
+        return rs;
+    }
+
+    private StringBuilder selectClause(String table, String[] columns) {
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append("select ");
+        if (columns == null || columns.length == 0 || columns[0].equals("*")) {
+            stringBuilder.append(" * ");
+        } else {
+            stringBuilder.append(columns[0]);
+            for (int i = 1, len = columns.length; i < len; i++) {
+                stringBuilder.append(",").append(columns[i]);
+            }
         }
+        stringBuilder.append(" from ").append(table);
+        return stringBuilder;
+    }
+
+    /**
+     * Record the row count of a table and the fingerprint of the file it is imported from, unless the same file has
+     * already been recorded.
+     *
+     * @param tableName The imported table.
+     * @param fingerprint The fingerprint of the source file.
+     */
+    public void insertOrUpdateInfo(String tableName, FileFingerprint fingerprint) {
+        recordInfo(tableName, tableName, null, null, fingerprint);
     }
 
-    public void insertOrUpdateKnownREInfo(String origin) {
-        if (!existTable(INFORMATION_TABLE_NAME)) {
-            TableCreator.createInfoTable();
+    /**
+     * Record the number of records and the source file of data which is kept outside the table, e.g., the dbSNP
+     * positions which are kept in an index file.
+     *
+     * @param tableName The key of the data, which is also the name of its table.
+     * @param counts The number of records.
+     * @param fingerprint The fingerprint of the source file.
+     */
+    public void insertOrUpdateInfo(String tableName, int counts, FileFingerprint fingerprint) {
+        if (isImported(tableName, tableName, fingerprint)) {
+            return;
         }
-        // INSERT table (auto_id, auto_name) values (1, yourname') ON DUPLICATE KEY UPDATE auto_name='yourname'
-        int counts = calRowCount(KNOWN_RNA_EDITING_TABLE_NAME, "origin=?", new String[] { origin });
         try {
-            insertClause("insert into " + DatabaseManager.INFORMATION_TABLE_NAME + "(tableName,counts) values('"
-                + origin + "','" + counts + "') ON DUPLICATE KEY UPDATE counts='" + counts + "'");
+            updateInfo(tableName, counts, fingerprint);
         } catch (SQLException e) {
-            e.printStackTrace();
+            logger.error("Error record the information of " + tableName, e);
+        } catch (IOException e) {
+            logger.error("Error read file " + fingerprint.getPath(), e);
         }
     }
 
-    public boolean isKnownRnaEditingTableValid(String tableName, String origin) {
-        if (!existTable(INFORMATION_TABLE_NAME)) {
-            TableCreator.createInfoTable();
-        }
+    /**
+     * @param key The key of the information, i.e., the table name or the origin of sites in a shared table.
+     * @return The path of the file which the data was imported from, or null if it has not been imported.
+     */
+    public String getImportedFilePath(String key) {
+        TableCreator.createInfoTable();
         try {
-            ResultSet rs =
-                query(INFORMATION_TABLE_NAME, new String[] { "counts" }, "tableName=?", new String[] { origin });
-            int infoCounts = rs != null && rs.next() ? rs.getInt(1) : 0;
-            int currentCounts = calRowCount(tableName, "origin=?", new String[] { origin });
-            logger.info(tableName + "\t" + origin + ": " + currentCounts + " \tinfoCounts: " + infoCounts);
-            return infoCounts == currentCounts && infoCounts > 0;
+            ResultSet rs = query(INFORMATION_TABLE_NAME, new String[] { "file_path" }, "tableName=?",
+                new String[] { key });
+            return rs != null && rs.next() ? rs.getString(1) : null;
         } catch (SQLException e) {
-            e.printStackTrace();
-            return false;
+            logger.error("Error query the information of " + key, e);
+            return null;
         }
+    }
 
+    /**
+     * Tell whether a table has been imported from the same file, by comparing the fingerprint of the file with the one
+     * recorded by {@link #insertOrUpdateInfo(String, FileFingerprint)}. The table itself is not scanned.
+     *
+     * @param tableName The table name.
+     * @param fingerprint The fingerprint of the source file.
+     * @return True if the table exists and the file has not been changed since it was imported.
+     */
+    public boolean isTableExistAndValid(String tableName, FileFingerprint fingerprint) {
+        return isImported(tableName, tableName, fingerprint);
     }
 
     /**
-     * Close database.
+     * Record the row count and the source file of sites from a known RNA editing database, which share the known RNA
+     * editing table.
+     *
+     * @param origin The origin of the sites, e.g., DARNED or RADAR.
+     * @param fingerprint The fingerprint of the source file.
      */
-    public void closeDatabase() {
+    public void insertOrUpdateKnownREInfo(String origin, FileFingerprint fingerprint) {
+        recordInfo(KNOWN_RNA_EDITING_TABLE_NAME, origin, "origin=?", new String[] { origin }, fingerprint);
+    }
+
+    public boolean isKnownRnaEditingTableValid(String tableName, String origin, FileFingerprint fingerprint) {
+        return isImported(tableName, origin, fingerprint);
+    }
+
+    /**
+     * @param tableName The table which holds the imported data.
+     * @param key The key of the information, i.e., the table name or the origin of sites in a shared table.
+     */
+    private boolean isImported(String tableName, String key, FileFingerprint fingerprint) {
+        if (!existTable(tableName)) {
+            return false;
+        }
+        TableCreator.createInfoTable();
         try {
-            if (con != null && !con.isClosed()) {
-                con.close();
+            ResultSet rs = query(INFORMATION_TABLE_NAME,
+                new String[] { "counts", "file_path", "file_size", "file_modified", "file_hash" }, "tableName=?",
+                new String[] { key });
+            if (rs == null || !rs.next() || rs.getInt(1) <= 0) {
+                logger.info(key + " has not been imported.");
+                return false;
+            }
+            String path = rs.getString(2);
+            long size = rs.getLong(3);
+            long modified = rs.getLong(4);
+            String hash = rs.getString(5);
+            if (fingerprint.matches(path, size, modified)) {
+                logger.info(key + " has been imported from " + path + ", skip it.");
+                return true;
             }
+            // The file may have been touched or moved without being changed, which is told by its content.
+            if (hash != null && size == fingerprint.getSize() && hash.equals(fingerprint.getHash())) {
+                logger.info(key + " has been imported from the same content as " + fingerprint.getPath() + ", skip it.");
+                updateInfo(key, rs.getInt(1), fingerprint);
+                return true;
+            }
+            logger.info(key + " has been imported from a different file, import it again.");
+            return false;
         } catch (SQLException e) {
-            logger.error("Unable to close the connection, please have a check.", e);
+            logger.error("Error query the information of " + key, e);
+            return false;
+        } catch (IOException e) {
+            logger.error("Error read file " + fingerprint.getPath(), e);
+            return false;
         }
     }
 
-    /**
-     * After filtration, this method will be called to distinct data from all columns.
-     *
-     * @param resultTable The table to distinct.
-     */
-    public void distinctTable(String resultTable) {
+    private void recordInfo(String tableName, String key, String selection, String[] selectionArgs,
+        FileFingerprint fingerprint) {
+        if (isImported(tableName, key, fingerprint)) {
+            return;
+        }
+        int counts = selection == null ? calRowCount(tableName) : calRowCount(tableName, selection, selectionArgs);
         try {
-            String tempTable = RandomStringGenerator.createRandomString(10);
-            executeSQL("create temporary table " + tempTable + " select distinct * from " + resultTable);
-            executeSQL("truncate table " + resultTable);
-            executeSQL("insert into " + resultTable + " select * from " + tempTable);
-            deleteTable(tempTable);
+            updateInfo(key, counts, fingerprint);
         } catch (SQLException e) {
-            logger.error("Error execute sql clause in " + DatabaseManager.class.getName() + ":distinctTable()", e);
+            logger.error("Error record the information of " + key, e);
+        } catch (IOException e) {
+            logger.error("Error read file " + fingerprint.getPath(), e);
+        }
+    }
+
+    private void updateInfo(String key, int counts, FileFingerprint fingerprint) throws SQLException, IOException {
+        // INSERT table (auto_id, auto_name) values (1, yourname') ON DUPLICATE KEY UPDATE auto_name='yourname'
+        BatchWriter writer = createBatchWriter("insert into " + INFORMATION_TABLE_NAME
+            + "(tableName,counts,file_path,file_size,file_modified,file_hash) values(?,?,?,?,?,?) ON DUPLICATE KEY "
+            + "UPDATE counts=values(counts),file_path=values(file_path),file_size=values(file_size),"
+            + "file_modified=values(file_modified),file_hash=values(file_hash)");
+        try {
+            writer.append(key).append(counts).append(fingerprint.getPath()).append(fingerprint.getSize())
+                .append(fingerprint.getModified()).append(fingerprint.getHash()).endRow();
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Close database.
+     */
+    public void closeDatabase() {
+        if (connectionPool != null) {
+            connectionPool.close();
+            connectionPool = null;
         }
+        leasedConnection.remove();
+        connectionDatabase.remove();
+        insertStatement.remove();
     }
 
     @Override
@@ -0,0 +1,240 @@
+/*
+ * RED: RNA Editing Detector Copyright (C) <2014> <Xing Li>
+ *
+ * RED is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * RED is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.xl.database;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * DatabaseMetrics records how long the statements executed by {@link DatabaseManager} take. Statements are grouped by
+ * their template, i.e., the SQL clause whose literals are replaced by '?', and each template keeps a latency histogram
+ * and the number of rows it affected or returned. Statements slower than a threshold are logged at once.
+ */
+public class DatabaseMetrics {
+    public static final String COMMIT_TEMPLATE = "commit";
+    public static final long DEFAULT_SLOW_QUERY_MILLIS = 1000;
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseMetrics.class);
+    /**
+     * The number of templates printed in the summary.
+     */
+    private static final int SUMMARY_TEMPLATES = 20;
+    private static final int MAX_TEMPLATE_LENGTH = 160;
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^'\\\\]|\\\\.)*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b-?\\d+(?:\\.\\d+)?(?:[eE][-+]?\\d+)?\\b");
+    private static final Pattern VALUE_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern REPEATED_VALUE_LISTS = Pattern.compile("\\(\\?\\)(?:\\s*,\\s*\\(\\?\\))+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private final ConcurrentHashMap<String, StatementStats> statistics =
+        new ConcurrentHashMap<String, StatementStats>();
+    private volatile long slowQueryMillis = DEFAULT_SLOW_QUERY_MILLIS;
+
+    /**
+     * Set the threshold of the slow query log. A statement which takes longer than the threshold is logged with its
+     * full SQL clause.
+     *
+     * @param slowQueryMillis The threshold in milliseconds, zero or negative to turn the slow query log off.
+     */
+    public void setSlowQueryMillis(long slowQueryMillis) {
+        this.slowQueryMillis = slowQueryMillis;
+    }
+
+    public long getSlowQueryMillis() {
+        return slowQueryMillis;
+    }
+
+    /**
+     * Record an executed statement.
+     *
+     * @param sql The SQL clause.
+     * @param startNanos The value of {@link System#nanoTime()} before the statement was executed.
+     * @param rows The number of rows affected or returned, negative if unknown.
+     */
+    public void record(String sql, long startNanos, long rows) {
+        long elapsedNanos = System.nanoTime() - startNanos;
+        getStats(toTemplate(sql)).add(elapsedNanos, rows);
+        long slow = slowQueryMillis;
+        if (slow > 0 && elapsedNanos >= slow * 1000000L) {
+            logger.warn("Slow SQL clause ({} ms, {} rows): {}", elapsedNanos / 1000000L, rows, sql);
+        }
+    }
+
+    /**
+     * Add rows to a template without counting a new execution, such as the rows read from a streaming cursor after the
+     * query has been recorded.
+     *
+     * @param sql The SQL clause.
+     * @param rows The number of rows.
+     */
+    public void recordRows(String sql, long rows) {
+        getStats(toTemplate(sql)).addRows(rows);
+    }
+
+    /**
+     * Record a commit of a transaction.
+     *
+     * @param startNanos The value of {@link System#nanoTime()} before the transaction was committed.
+     */
+    public void recordCommit(long startNanos) {
+        record(COMMIT_TEMPLATE, startNanos, -1);
+    }
+
+    /**
+     * Forget all recorded statements.
+     */
+    public void reset() {
+        statistics.clear();
+    }
+
+    /**
+     * Build a summary of the recorded statements, the most time consuming templates first.
+     *
+     * @return The summary, one line for each template.
+     */
+    public String summary() {
+        List<StatementStats> list = new ArrayList<StatementStats>(statistics.values());
+        if (list.isEmpty()) {
+            return "No SQL clause has been executed.";
+        }
+        List<StatementStats> snapshots = new ArrayList<StatementStats>(list.size());
+        for (StatementStats stats : list) {
+            snapshots.add(stats.snapshot());
+        }
+        Collections.sort(snapshots, new Comparator<StatementStats>() {
+            @Override
+            public int compare(StatementStats o1, StatementStats o2) {
+                return o1.totalNanos < o2.totalNanos ? 1 : (o1.totalNanos == o2.totalNanos ? 0 : -1);
+            }
+        });
+        StringBuilder builder = new StringBuilder("Database statement summary (time in ms):\n");
+        builder.append(String.format("%10s %12s %10s %10s %10s %10s %12s  %s%n", "count", "total", "mean", "p50",
+            "p95", "max", "rows", "template"));
+        long totalNanos = 0;
+        long totalCount = 0;
+        for (StatementStats stats : snapshots) {
+            totalNanos += stats.totalNanos;
+            totalCount += stats.count;
+        }
+        for (int i = 0, len = Math.min(SUMMARY_TEMPLATES, snapshots.size()); i < len; i++) {
+            StatementStats stats = snapshots.get(i);
+            builder.append(String.format("%10d %12.1f %10.2f %10.2f %10.2f %10.2f %12s  %s%n", stats.count,
+                stats.totalNanos / 1e6, stats.totalNanos / 1e6 / stats.count, stats.percentileMillis(0.5),
+                stats.percentileMillis(0.95), stats.maxNanos / 1e6, stats.rows < 0 ? "-" : String.valueOf(stats.rows),
+                stats.template));
+        }
+        if (snapshots.size() > SUMMARY_TEMPLATES) {
+            builder.append("... ").append(snapshots.size() - SUMMARY_TEMPLATES).append(" more templates\n");
+        }
+        builder.append(String.format("Total: %d statements in %.1f ms", totalCount, totalNanos / 1e6));
+        return builder.toString();
+    }
+
+    private StatementStats getStats(String template) {
+        StatementStats stats = statistics.get(template);
+        if (stats == null) {
+            StatementStats newStats = new StatementStats(template);
+            stats = statistics.putIfAbsent(template, newStats);
+            if (stats == null) {
+                stats = newStats;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Replace the literals of a SQL clause by '?' so that clauses only differing in values share the same template.
+     * Random names of temporary tables are not recognized, so they still lead to their own templates.
+     *
+     * @param sql The SQL clause.
+     * @return The template of the clause.
+     */
+    static String toTemplate(String sql) {
+        String template = STRING_LITERAL.matcher(sql).replaceAll("?");
+        template = NUMBER_LITERAL.matcher(template).replaceAll("?");
+        template = WHITESPACE.matcher(template).replaceAll(" ").trim();
+        template = VALUE_LIST.matcher(template).replaceAll("(?)");
+        template = REPEATED_VALUE_LISTS.matcher(template).replaceAll("(?)");
+        if (template.length() > MAX_TEMPLATE_LENGTH) {
+            template = template.substring(0, MAX_TEMPLATE_LENGTH) + "...";
+        }
+        return template;
+    }
+
+    /**
+     * The statistics of a SQL template. The latency histogram has one bucket for each power of two microseconds.
+     */
+    private static class StatementStats {
+        private static final int BUCKETS = 40;
+        private final String template;
+        private final long[] buckets = new long[BUCKETS];
+        private long count = 0;
+        private long totalNanos = 0;
+        private long maxNanos = 0;
+        /**
+         * The sum of the affected or returned rows, negative if no statement of this template reports them.
+         */
+        private long rows = -1;
+
+        StatementStats(String template) {
+            this.template = template;
+        }
+
+        synchronized void add(long elapsedNanos, long affectedRows) {
+            count++;
+            totalNanos += elapsedNanos;
+            maxNanos = Math.max(maxNanos, elapsedNanos);
+            long micros = elapsedNanos / 1000;
+            int bucket = micros <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(micros);
+            buckets[Math.min(bucket, BUCKETS - 1)]++;
+            if (affectedRows >= 0) {
+                rows = rows < 0 ? affectedRows : rows + affectedRows;
+            }
+        }
+
+        synchronized void addRows(long affectedRows) {
+            rows = rows < 0 ? affectedRows : rows + affectedRows;
+        }
+
+        synchronized StatementStats snapshot() {
+            StatementStats copy = new StatementStats(template);
+            System.arraycopy(buckets, 0, copy.buckets, 0, BUCKETS);
+            copy.count = count;
+            copy.totalNanos = totalNanos;
+            copy.maxNanos = maxNanos;
+            copy.rows = rows;
+            return copy;
+        }
+
+        /**
+         * @return The upper bound of the bucket which contains the given percentile, in milliseconds.
+         */
+        double percentileMillis(double percentile) {
+            long target = (long) Math.ceil(count * percentile);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets[i];
+                if (seen >= target && seen > 0) {
+                    return Math.min((1L << i) / 1000.0, maxNanos / 1e6);
+                }
+            }
+            return maxNanos / 1e6;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * RED: RNA Editing Detector Copyright (C) <2014> <Xing Li>
+ *
+ * RED is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * RED is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.xl.database;
+
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * DirectWriter writes rows on the caller's own thread and connection through a {@link BatchWriter} for each table. It
+ * is used instead of a writer thread when no connection can be leased for one, since a writer thread which waits for
+ * the pool would never get a connection while the caller holds its own.
+ */
+public class DirectWriter implements RowWriter {
+    private final DatabaseManager databaseManager;
+    private final String[] tableNames;
+    private final BatchWriter[] writers;
+    /**
+     * The values of the current row, which are written when the row ends, since the table is only known then. A null
+     * value is written as NULL of the SQL type in nullTypes.
+     */
+    private final Object[] values;
+    private final int[] nullTypes;
+    private int valueCount = 0;
+    private long rows = 0;
+    private boolean closed = false;
+
+    DirectWriter(DatabaseManager databaseManager, String[] tableNames, String[] columns, boolean ignoreDuplicates)
+        throws SQLException {
+        this.databaseManager = databaseManager;
+        this.tableNames = tableNames;
+        this.values = new Object[columns.length];
+        this.nullTypes = new int[columns.length];
+        this.writers = new BatchWriter[tableNames.length];
+        databaseManager.setAutoCommit(false);
+        try {
+            for (int i = 0, len = tableNames.length; i < len; i++) {
+                writers[i] = databaseManager.createBatchInserter(tableNames[i], columns, ignoreDuplicates);
+            }
+        } catch (SQLException e) {
+            databaseManager.setAutoCommit(true);
+            throw e;
+        }
+    }
+
+    @Override
+    public DirectWriter append(String value) throws SQLException {
+        return appendValue(value, Types.VARCHAR);
+    }
+
+    @Override
+    public DirectWriter append(char value) throws SQLException {
+        return appendValue(String.valueOf(value), Types.VARCHAR);
+    }
+
+    @Override
+    public DirectWriter append(int value) throws SQLException {
+        return appendValue(value, Types.INTEGER);
+    }
+
+    @Override
+    public DirectWriter append(float value) throws SQLException {
+        return appendValue(value, Types.FLOAT);
+    }
+
+    @Override
+    public DirectWriter append(double value) throws SQLException {
+        return appendValue(value, Types.DOUBLE);
+    }
+
+    @Override
+    public DirectWriter appendNull(int sqlType) throws SQLException {
+        return appendValue(null, sqlType);
+    }
+
+    @Override
+    public void endRow() throws SQLException {
+        endRow(0);
+    }
+
+    @Override
+    public void endRow(int table) throws SQLException {
+        if (valueCount != values.length) {
+            throw new SQLException("Row has " + valueCount + " values but " + values.length + " are needed for table "
+                + tableNames[table]);
+        }
+        BatchWriter writer = writers[table];
+        RowValues.append(writer, values, nullTypes);
+        writer.endRow();
+        valueCount = 0;
+        if (++rows % DatabaseManager.COMMIT_COUNTS_PER_ONCE == 0) {
+            databaseManager.commit();
+        }
+    }
+
+    /**
+     * Write the remaining rows and commit them. Rows which have not been committed are rolled back if writing fails.
+     */
+    @Override
+    public void close() throws SQLException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            for (BatchWriter writer : writers) {
+                writer.close();
+            }
+            databaseManager.commit();
+        } catch (SQLException e) {
+            databaseManager.rollback();
+            throw e;
+        } finally {
+            databaseManager.setAutoCommit(true);
+        }
+    }
+
+    private DirectWriter appendValue(Object value, int sqlType) throws SQLException {
+        if (valueCount == values.length) {
+            throw new SQLException("Too many values for table " + tableNames[0]);
+        }
+        nullTypes[valueCount] = sqlType;
+        values[valueCount++] = value;
+        return this;
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * RED: RNA Editing Detector Copyright (C) <2014> <Xing Li>
+ *
+ * RED is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * RED is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.xl.database;
+
+import java.io.File;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * EmbeddedBackend runs the H2 database engine inside the JVM, storing all data in local files, so a whole pipeline can
+ * run without a database server and without any network I/O. The engine runs in its MySQL compatibility mode, and each
+ * database of RED (i.e., DNA_RNA_MODE and DENOVO_MODE) is a schema in the database file.
+ * <p/>
+ * The H2 jar (h2-*.jar) must be put on the class path, e.g., into the lib directory of RED.
+ */
+public class EmbeddedBackend implements StorageBackend {
+    public static final String NAME = "embedded";
+    public static final String DEFAULT_PATH = "red_database";
+    private static final String DRIVER = "org.h2.Driver";
+    /**
+     * The number of rows fetched at once by a streaming cursor. The engine runs queries lazily, so only this many rows
+     * are kept in memory.
+     */
+    private static final int STREAMING_FETCH_SIZE = 1000;
+    private static final Pattern CREATE_TABLE_LIKE =
+        Pattern.compile("(?i)^\\s*create\\s+(temporary\\s+)?table\\s+(\\S+)\\s+like\\s+(\\S+)\\s*;?\\s*$");
+    private static final Pattern CREATE_TEMPORARY_TABLE = Pattern.compile("(?i)^\\s*create\\s+temporary\\s+table");
+    private static final Pattern DROP_TEMPORARY_TABLE = Pattern.compile("(?i)^\\s*drop\\s+temporary\\s+table");
+    private static final Pattern ALTER_TABLE_ADD =
+        Pattern.compile("(?i)^\\s*alter\\s+table\\s+(\\S+)\\s+add\\s+(.*?);?\\s*$");
+    private static final Pattern ADD_SEPARATOR = Pattern.compile("(?i),\\s*add\\s+");
+    private static final Pattern FLOAT_WITH_SCALE = Pattern.compile("(?i)\\bfloat\\s*\\(\\s*\\d+\\s*,\\s*\\d+\\s*\\)");
+    private static final Pattern LONGBLOB = Pattern.compile("(?i)\\blongblob\\b");
+    private final String path;
+
+    /**
+     * @param path The path of the database file, without the extension added by the engine.
+     */
+    public EmbeddedBackend(String path) {
+        this.path = new File(path == null || path.length() == 0 ? DEFAULT_PATH : path).getAbsolutePath();
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void loadDriver() throws SQLException {
+        try {
+            Class.forName(DRIVER);
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("The embedded database engine is not found, please put the H2 jar "
+                + "(com.h2database:h2, version 1.4.198 or later) into the lib directory of RED.", e);
+        }
+    }
+
+    @Override
+    public String getUrl() {
+        return "jdbc:h2:file:" + path
+            + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;CASE_INSENSITIVE_IDENTIFIERS=TRUE;LAZY_QUERY_EXECUTION=TRUE";
+    }
+
+    @Override
+    public String getUser() {
+        return "sa";
+    }
+
+    @Override
+    public String getPassword() {
+        return "";
+    }
+
+    @Override
+    public int getStreamingFetchSize() {
+        return STREAMING_FETCH_SIZE;
+    }
+
+    @Override
+    public String createDatabaseClause(String database) {
+        return "create schema if not exists " + database;
+    }
+
+    @Override
+    public void useDatabase(Connection connection, String database) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            statement.executeUpdate("set schema " + database);
+        } finally {
+            statement.close();
+        }
+    }
+
+    @Override
+    public List<String> getDatabases(DatabaseMetaData metaData) throws SQLException {
+        List<String> databases = new ArrayList<String>();
+        ResultSet rs = metaData.getSchemas();
+        while (rs.next()) {
+            String schema = rs.getString("TABLE_SCHEM");
+            if (!schema.equalsIgnoreCase("information_schema")) {
+                databases.add(schema);
+            }
+        }
+        rs.close();
+        return databases;
+    }
+
+    @Override
+    public List<String> getTables(DatabaseMetaData metaData, String database) throws SQLException {
+        List<String> tables = new ArrayList<String>();
+        // All unquoted names are stored in lower case.
+        ResultSet rs = metaData.getTables(null, database.toLowerCase(), null, new String[] { "TABLE" });
+        while (rs.next()) {
+            tables.add(rs.getString(3));
+        }
+        rs.close();
+        return tables;
+    }
+
+    /**
+     * Only table definitions differ from MySQL in the clauses used by RED, so other clauses are returned at once.
+     */
+    @Override
+    public String adaptSql(String sql) {
+        String head = sql.trim().toLowerCase();
+        if (head.startsWith("drop")) {
+            return DROP_TEMPORARY_TABLE.matcher(sql).replaceFirst("drop table");
+        } else if (!head.startsWith("create") && !head.startsWith("alter")) {
+            return sql;
+        }
+        Matcher matcher = CREATE_TABLE_LIKE.matcher(sql);
+        if (matcher.matches()) {
+            // The indexes of the reference table are not copied.
+            String temporary = matcher.group(1) == null ? "" : "local temporary ";
+            return "create " + temporary + "table " + matcher.group(2) + " as select * from " + matcher.group(3)
+                + " where 1=0";
+        }
+        matcher = ALTER_TABLE_ADD.matcher(sql);
+        if (matcher.matches()) {
+            String[] columns = ADD_SEPARATOR.split(matcher.group(2));
+            if (columns.length > 1) {
+                StringBuilder builder = new StringBuilder("alter table ");
+                builder.append(matcher.group(1)).append(" add (").append(columns[0]);
+                for (int i = 1, len = columns.length; i < len; i++) {
+                    builder.append(", ").append(columns[i]);
+                }
+                return builder.append(")").toString();
+            }
+        }
+        String adapted = CREATE_TEMPORARY_TABLE.matcher(sql).replaceFirst("create local temporary table");
+        adapted = FLOAT_WITH_SCALE.matcher(adapted).replaceAll("double");
+        return LONGBLOB.matcher(adapted).replaceAll("blob");
+    }
+
+    @Override
+    public boolean isIndexCopiedByCreateLike() {
+        return false;
+    }
+
+    @Override
+    public boolean isBulkLoadSupported() {
+        return false;
+    }
+
+    @Override
+    public boolean isPartitionSupported() {
+        return false;
+    }
+
+    @Override
+    public void setLocalInfileStream(Statement statement, InputStream inputStream) throws SQLException {
+        throw new SQLException("Bulk loading is not supported by the embedded backend.");
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * RED: RNA Editing Detector Copyright (C) <2014> <Xing Li>
+ *
+ * RED is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * RED is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.xl.database;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * MySqlBackend connects to an external MySQL server. All SQL clauses of RED are written for MySQL, so they are used
+ * as they are.
+ */
+public class MySqlBackend implements StorageBackend {
+    public static final String NAME = "mysql";
+    private static final Logger logger = LoggerFactory.getLogger(MySqlBackend.class);
+    private final String host;
+    private final String port;
+    private final String user;
+    private final String password;
+
+    public MySqlBackend(String host, String port, String user, String password) {
+        this.host = host;
+        this.port = port;
+        this.user = user;
+        this.password = password;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void loadDriver() {
+        try {
+            Class.forName("com.mysql.jdbc.Driver");
+        } catch (ClassNotFoundException e) {
+            logger.warn(
+                "The driver has been integrated into the software and should not be found. If the ClassNotFoundException happens again, "
+                    + "please try to download the latest version of RED to solve the problem.",
+                e);
+        }
+    }
+
+    @Override
+    public String getUrl() {
+        // Let the driver rewrite batched inserts into multi-row insert clauses.
+        return "jdbc:mysql://" + host + ":" + port + "?rewriteBatchedStatements=true";
+    }
+
+    @Override
+    public String getUser() {
+        return user;
+    }
+
+    @Override
+    public String getPassword() {
+        return password;
+    }
+
+    @Override
+    public int getStreamingFetchSize() {
+        // Integer.MIN_VALUE tells the MySQL driver to stream the result row by row.
+        return Integer.MIN_VALUE;
+    }
+
+    @Override
+    public String createDatabaseClause(String database) {
+        return "create database if not exists " + database;
+    }
+
+    @Override
+    public void useDatabase(Connection connection, String database) throws SQLException {
+        connection.setCatalog(database);
+    }
+
+    @Override
+    public List<String> getDatabases(DatabaseMetaData metaData) throws SQLException {
+        List<String> databases = new ArrayList<String>();
+        ResultSet rs = metaData.getCatalogs();
+        while (rs.next()) {
+            databases.add(rs.getString("TABLE_CAT"));
+        }
+        rs.close();
+        return databases;
+    }
+
+    @Override
+    public List<String> getTables(DatabaseMetaData metaData, String database) throws SQLException {
+        List<String> tables = new ArrayList<String>();
+        ResultSet rs = metaData.getTables(database, null, null, new String[] { "TABLE" });
+        while (rs.next()) {
+            tables.add(rs.getString(3));
+        }
+        rs.close();
+        return tables;
+    }
+
+    @Override
+    public String adaptSql(String sql) {
+        return sql;
+    }
+
+    @Override
+    public boolean isIndexCopiedByCreateLike() {
+        return true;
+    }
+
+    @Override
+    public boolean isBulkLoadSupported() {
+        return true;
+    }
+
+    @Override
+    public boolean isPartitionSupported() {
+        return true;
+    }
+
+    @Override
+    public void setLocalInfileStream(Statement statement, InputStream inputStream) throws SQLException {
+        if (!(statement instanceof com.mysql.jdbc.Statement)) {
+            throw new SQLException("The statement is not created by MySQL Connector/J.");
+        }
+        ((com.mysql.jdbc.Statement) statement).setLocalInfileInputStream(inputStream);
+    }
+}
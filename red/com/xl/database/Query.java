@@ -18,17 +18,20 @@
 
 package com.xl.database;
 
+import com.xl.datatypes.sites.PositionSet;
 import com.xl.datatypes.sites.Site;
 import com.xl.datatypes.sites.SiteBean;
 import com.xl.datatypes.sites.SiteList;
 import com.xl.datatypes.sites.SiteSet;
 import com.xl.exception.RedException;
 import com.xl.utils.NameRetriever;
+import com.xl.utils.NegativeType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.util.List;
 import java.util.Vector;
 
@@ -41,6 +44,58 @@ public class Query {
      * A reference of DatabaseManager.
      */
     private static DatabaseManager databaseManager = DatabaseManager.getInstance();
+    /**
+     * The columns of a site table which are held by a {@link SiteBean}, in the order of {@link #appendSiteBean}.
+     */
+    public static final String[] SITE_BEAN_COLUMNS =
+        new String[] { "chrom", "pos", "id", "ref", "alt", "qual", "filter", "info", "gt", "ad", "dp", "gq", "pl", "alu", "ref_count",
+            "alt_count", "total_depth", "alt_fraction", "editing_code" };
+
+    /**
+     * Append all values of a site to the current row of a batch writer, in the order of {@link #SITE_BEAN_COLUMNS}.
+     *
+     * @param writer The batch writer.
+     * @param site   The site to be written.
+     */
+    public static void appendSiteBean(BatchWriter writer, SiteBean site) throws SQLException {
+        writer.append(site.getChr()).append(site.getPos()).append(site.getId()).append(site.getRef())
+            .append(site.getAlt()).append(site.getQual()).append(site.getFilter()).append(site.getInfo())
+            .append(site.getGt()).append(site.getAd()).append(site.getDp()).append(site.getGq()).append(site.getPl())
+            .append(site.getIsAlu());
+        int refCount = site.getRefCount();
+        int altCount = site.getAltCount();
+        appendCount(writer, refCount);
+        appendCount(writer, altCount);
+        if (refCount < 0 || altCount < 0) {
+            writer.appendNull(Types.INTEGER).appendNull(Types.FLOAT);
+        } else if (refCount + altCount == 0) {
+            writer.append(0).appendNull(Types.FLOAT);
+        } else {
+            writer.append(refCount + altCount).append((float) altCount / (refCount + altCount));
+        }
+        appendCount(writer, NegativeType.getEditingCode(site.getRef(), site.getAlt()));
+    }
+
+    private static void appendCount(BatchWriter writer, int count) throws SQLException {
+        if (count < 0) {
+            writer.appendNull(Types.INTEGER);
+        } else {
+            writer.append(count);
+        }
+    }
+
+    /**
+     * A visitor which is called for each site streamed from a table.
+     */
+    public interface SiteBeanVisitor {
+        /**
+         * Visit a site. The site is reused for the next row, so copy it if it must be kept.
+         *
+         * @param site The current site.
+         * @return False to stop visiting the remaining sites.
+         */
+        boolean visit(SiteBean site) throws SQLException;
+    }
 
     /**
      * Query Chromosome, Position, Reference Base and Alternative Base of RNA editing sites from a given table.
@@ -50,37 +105,104 @@ public class Query {
      */
     public static Vector<Site> queryAllEditingSites(String tableName) throws SQLException {
         Vector<Site> siteVector = new Vector<Site>();
-        ResultSet rs = databaseManager.query(tableName, new String[]{"chrom", "pos", "ref", "alt"}, null, null);
-        while (rs.next()) {
-            Site p = new Site(rs.getString(1), rs.getInt(2), rs.getString(3).charAt(0), rs.getString(4).charAt(0));
-            siteVector.add(p);
+        QueryCursor cursor = databaseManager.openCursor(tableName, new String[]{"chrom", "pos", "ref", "alt"}, null, null);
+        try {
+            ResultSet rs = cursor.getResultSet();
+            while (cursor.next()) {
+                Site p = new Site(rs.getString(1), rs.getInt(2), rs.getString(3).charAt(0), rs.getString(4).charAt(0));
+                siteVector.add(p);
+            }
+        } finally {
+            cursor.close();
         }
         return siteVector;
     }
 
     /**
-     * Query all information of RNA editing sites from a given table.
+     * Query the positions and reference bases of sites from a given table into a {@link PositionSet}, so the table can
+     * be joined with other tables in memory.
+     *
+     * @param tableName     The table name, which has chrom, pos and ref columns.
+     * @param selection     The where clause with '?' for arguments, or null for all sites.
+     * @param selectionArgs The arguments of the where clause.
+     * @return The positions, each with its reference base in upper case if it is a single base.
+     */
+    public static PositionSet queryPositions(String tableName, String selection, String[] selectionArgs)
+        throws SQLException {
+        PositionSet positions = new PositionSet();
+        QueryCursor cursor = databaseManager.openCursor(tableName, new String[]{"chrom", "pos", "ref"}, selection,
+            selectionArgs);
+        try {
+            ResultSet rs = cursor.getResultSet();
+            while (cursor.next()) {
+                String ref = rs.getString(3);
+                // Like "ref='A'" in SQL, a longer reference of an indel does not match a single base, and a base matches
+                // regardless of its case.
+                positions.add(rs.getString(1), rs.getInt(2),
+                    ref != null && ref.length() == 1 ? Character.toUpperCase(ref.charAt(0)) : 0);
+            }
+        } finally {
+            cursor.close();
+        }
+        return positions;
+    }
+
+    /**
+     * Query all information of RNA editing sites from a given table. The whole table is kept in memory, use
+     * {@link #openEditingInfoCursor(String)} or {@link #visitAllEditingInfo(String, SiteBeanVisitor)} for large tables.
      *
      * @param tableName The table name
      * @return A collection which contains all information about a site.
      */
     public static Vector<SiteBean> queryAllEditingInfo(String tableName) throws SQLException {
         Vector<SiteBean> siteBeans = new Vector<SiteBean>();
-        ResultSet rs = databaseManager.query(tableName, null, null, null);
-        while (rs.next()) {
-            SiteBean p = new SiteBean(rs.getString(1), rs.getInt(2), rs.getString(3), rs.getString(4).charAt(0), rs.getString(5).charAt(0),
-                    rs.getFloat(6), rs.getString(7), rs.getString(8), rs.getString(9), rs.getString(10), rs.getString(11), rs.getString(12),
-                    rs.getString(13), rs.getString(14));
-            if (tableName.contains(DatabaseManager.FET_FILTER_RESULT_TABLE_NAME)) {
-                p.setLevel(rs.getDouble(15));
-                p.setPValue(rs.getDouble(16));
-                p.setFdr(rs.getDouble(17));
+        SiteBeanCursor cursor = openEditingInfoCursor(tableName);
+        try {
+            while (cursor.next()) {
+                siteBeans.add(cursor.copySite());
             }
-            siteBeans.add(p);
+        } finally {
+            cursor.close();
         }
         return siteBeans;
     }
 
+    /**
+     * Open a streaming cursor over all information of RNA editing sites from a given table. The cursor reads on its
+     * own connection, so the caller can keep using the database while iterating it.
+     *
+     * @param tableName The table name
+     * @return A forward-only cursor, which must be closed after use.
+     */
+    public static SiteBeanCursor openEditingInfoCursor(String tableName) throws SQLException {
+        QueryCursor cursor = databaseManager.openCursor(tableName, null, null, null);
+        try {
+            return new SiteBeanCursor(cursor);
+        } catch (SQLException e) {
+            cursor.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Stream all information of RNA editing sites from a given table to a visitor, one site at a time.
+     *
+     * @param tableName The table name
+     * @param visitor   The visitor of each site.
+     */
+    public static void visitAllEditingInfo(String tableName, SiteBeanVisitor visitor) throws SQLException {
+        SiteBeanCursor cursor = openEditingInfoCursor(tableName);
+        try {
+            while (cursor.next()) {
+                if (!visitor.visit(cursor.getSite())) {
+                    break;
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
     /**
      * Query a RNA editing site from a given position.
      *
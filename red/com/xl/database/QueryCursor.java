@@ -0,0 +1,98 @@
+/*
+ * RED: RNA Editing Detector Copyright (C) <2014> <Xing Li>
+ *
+ * RED is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * RED is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.xl.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * QueryCursor is a forward-only cursor over the result of a query. Rows are streamed from the server one at a time
+ * instead of being buffered by the driver, so a table larger than the heap can be read at constant memory.
+ * <p/>
+ * The fetch size is given by the {@link StorageBackend}. MySQL does not allow any other statement on a connection
+ * while a streaming result is open, so each cursor reads on its own connection, which is bounded by the
+ * {@link ConnectionPool}. The caller can keep querying and writing through {@link DatabaseManager} while iterating the
+ * cursor, and must call {@link #close()} when finished.
+ */
+public class QueryCursor {
+    private static final Logger logger = LoggerFactory.getLogger(QueryCursor.class);
+    private final ConnectionPool connectionPool;
+    private final Connection connection;
+    private final PreparedStatement statement;
+    private final ResultSet resultSet;
+    private final String sql;
+    private final DatabaseMetrics metrics;
+    private long rows = 0;
+
+    QueryCursor(ConnectionPool connectionPool, Connection connection, String sql, String[] args, int fetchSize,
+        DatabaseMetrics metrics) throws SQLException {
+        this.connectionPool = connectionPool;
+        this.connection = connection;
+        this.sql = sql;
+        this.metrics = metrics;
+        try {
+            statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            if (args != null) {
+                for (int i = 1, len = args.length; i <= len; i++) {
+                    statement.setString(i, args[i - 1]);
+                }
+            }
+            long start = System.nanoTime();
+            resultSet = statement.executeQuery();
+            metrics.record(sql, start, -1);
+        } catch (SQLException e) {
+            connectionPool.closeCursorConnection(connection);
+            throw e;
+        }
+    }
+
+    /**
+     * Move the cursor to the next row.
+     *
+     * @return False if there are no more rows.
+     */
+    public boolean next() throws SQLException {
+        if (resultSet.next()) {
+            rows++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return The result set positioned at the current row. Only the current row can be read from it.
+     */
+    public ResultSet getResultSet() {
+        return resultSet;
+    }
+
+    /**
+     * Close the cursor and its connection. Rows which have not been read are discarded.
+     */
+    public void close() {
+        metrics.recordRows(sql, rows);
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            logger.warn("Unable to close the statement of the cursor.", e);
+        }
+        connectionPool.closeCursorConnection(connection);
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * RED: RNA Editing Detector Copyright (C) <2014> <Xing Li>
+ *
+ * RED is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * RED is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.xl.database;
+
+import java.sql.SQLException;
+
+/**
+ * RowValues appends rows which are kept as objects until they can be written, e.g., until the table of a row is known.
+ * A value is a String, Integer, Float or Double, or null for a NULL value of the SQL type given for its column.
+ */
+public final class RowValues {
+
+    private RowValues() {
+    }
+
+    /**
+     * Append the values of a row.
+     *
+     * @param writer The writer to append to.
+     * @param values The values of the row.
+     * @param nullTypes The SQL type of each value, which is used if the value is null.
+     */
+    public static void append(ValueWriter writer, Object[] values, int[] nullTypes) throws SQLException {
+        for (int i = 0, len = values.length; i < len; i++) {
+            Object value = values[i];
+            if (value == null) {
+                writer.appendNull(nullTypes[i]);
+            } else if (value instanceof String) {
+                writer.append((String) value);
+            } else if (value instanceof Integer) {
+                writer.append(((Integer) value).intValue());
+            } else if (value instanceof Float) {
+                writer.append(((Float) value).floatValue());
+            } else if (value instanceof Double) {
+                writer.append(((Double) value).doubleValue());
+            } else {
+                throw new SQLException("Unsupported value of " + value.getClass().getName() + ": " + value);
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * RED: RNA Editing Detector Copyright (C) <2014> <Xing Li>
+ *
+ * RED is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * RED is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.xl.database;
+
+import java.sql.SQLException;
+
+/**
+ * A writer which imports rows into one or more tables with the same columns. Values of a row are appended one by one in
+ * the order of the columns, and the row ends with the index of the table it belongs to. All rows have been committed
+ * once {@link #close()} returns.
+ */
+public interface RowWriter extends ValueWriter {
+
+    public RowWriter append(String value) throws SQLException;
+
+    public RowWriter append(char value) throws SQLException;
+
+    public RowWriter append(int value) throws SQLException;
+
+    public RowWriter append(float value) throws SQLException;
+
+    public RowWriter append(double value) throws SQLException;
+
+    public RowWriter appendNull(int sqlType) throws SQLException;
+
+    /**
+     * Finish the current row of the first table.
+     */
+    public void endRow() throws SQLException;
+
+    /**
+     * Finish the current row, which is written to the given table.
+     *
+     * @param table The index of the table in the table names this writer is created with.
+     */
+    public void endRow(int table) throws SQLException;
+
+    /**
+     * Write the remaining rows and wait until all rows have been committed.
+     *
+     * @throws SQLException If any row failed to be written.
+     */
+    public void close() throws SQLException;
+}
@@ -0,0 +1,162 @@
+/*
+ * RED: RNA Editing Detector Copyright (C) <2014> <Xing Li>
+ *
+ * RED is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * RED is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.xl.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SampleParallelWriter writes the rows of several tables with the same columns, e.g., one table for each sample of a
+ * VCF file, at the same time. The tables are dealt out to {@link WriteBehindWriter}s, each of which inserts and commits
+ * the rows of its tables on its own thread and connection, so the tables are not written one after another through a
+ * single connection.
+ * <p/>
+ * Connections are leased without waiting, since they may be held by other imports which wait for this thread, so
+ * there is one writer for each free connection, but at most one for each table. If no connection is free, all tables
+ * are written by a {@link DirectWriter} on the caller's connection, so no thread ever waits for the pool.
+ */
+public class SampleParallelWriter implements RowWriter {
+    private final String[] tableNames;
+    private final RowWriter[] writers;
+    /**
+     * The writer of each table, and the index of the table in its writer.
+     */
+    private final int[] tableWriters;
+    private final int[] writerTables;
+    /**
+     * The values of the current row, which are handed to the writer of its table when the row ends. A null value is
+     * written as NULL of the SQL type in nullTypes.
+     */
+    private final Object[] values;
+    private final int[] nullTypes;
+    private int valueCount = 0;
+    private boolean closed = false;
+
+    SampleParallelWriter(DatabaseManager databaseManager, String[] tableNames, String[] columns,
+        boolean ignoreDuplicates, int batchSize) throws SQLException {
+        this.tableNames = tableNames;
+        this.values = new Object[columns.length];
+        this.nullTypes = new int[columns.length];
+        List<Connection> connections = new ArrayList<Connection>();
+        Connection connection;
+        while (connections.size() < tableNames.length && (connection = databaseManager.tryLeaseConnection()) != null) {
+            connections.add(connection);
+        }
+        int writerCount = Math.max(1, connections.size());
+        tableWriters = new int[tableNames.length];
+        writerTables = new int[tableNames.length];
+        List<List<String>> writerTableNames = new ArrayList<List<String>>();
+        for (int i = 0; i < writerCount; i++) {
+            writerTableNames.add(new ArrayList<String>());
+        }
+        for (int i = 0, len = tableNames.length; i < len; i++) {
+            tableWriters[i] = i % writerCount;
+            writerTables[i] = writerTableNames.get(tableWriters[i]).size();
+            writerTableNames.get(tableWriters[i]).add(tableNames[i]);
+        }
+        writers = new RowWriter[writerCount];
+        if (connections.isEmpty()) {
+            writers[0] = new DirectWriter(databaseManager, tableNames, columns, ignoreDuplicates);
+            return;
+        }
+        for (int i = 0; i < writerCount; i++) {
+            List<String> names = writerTableNames.get(i);
+            writers[i] = new WriteBehindWriter(names.toArray(new String[names.size()]), columns, ignoreDuplicates,
+                batchSize, connections.get(i));
+        }
+    }
+
+    @Override
+    public SampleParallelWriter append(String value) throws SQLException {
+        return appendValue(value, Types.VARCHAR);
+    }
+
+    @Override
+    public SampleParallelWriter append(char value) throws SQLException {
+        return appendValue(String.valueOf(value), Types.VARCHAR);
+    }
+
+    @Override
+    public SampleParallelWriter append(int value) throws SQLException {
+        return appendValue(value, Types.INTEGER);
+    }
+
+    @Override
+    public SampleParallelWriter append(float value) throws SQLException {
+        return appendValue(value, Types.FLOAT);
+    }
+
+    @Override
+    public SampleParallelWriter append(double value) throws SQLException {
+        return appendValue(value, Types.DOUBLE);
+    }
+
+    @Override
+    public SampleParallelWriter appendNull(int sqlType) throws SQLException {
+        return appendValue(null, sqlType);
+    }
+
+    @Override
+    public void endRow() throws SQLException {
+        endRow(0);
+    }
+
+    @Override
+    public void endRow(int table) throws SQLException {
+        if (valueCount != values.length) {
+            throw new SQLException("Row has " + valueCount + " values but " + values.length + " are needed for table "
+                + tableNames[table]);
+        }
+        RowWriter writer = writers[tableWriters[table]];
+        RowValues.append(writer, values, nullTypes);
+        writer.endRow(writerTables[table]);
+        valueCount = 0;
+    }
+
+    /**
+     * Close all writers, and throw the first failure of them after all have been closed.
+     */
+    @Override
+    public void close() throws SQLException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        SQLException failure = null;
+        for (RowWriter writer : writers) {
+            try {
+                writer.close();
+            } catch (SQLException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private SampleParallelWriter appendValue(Object value, int sqlType) throws SQLException {
+        if (valueCount == values.length) {
+            throw new SQLException("Too many values for table " + tableNames[0]);
+        }
+        nullTypes[valueCount] = sqlType;
+        values[valueCount++] = value;
+        return this;
+    }
+}
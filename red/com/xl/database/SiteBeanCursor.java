@@ -0,0 +1,137 @@
+/*
+ * RED: RNA Editing Detector Copyright (C) <2014> <Xing Li>
+ *
+ * RED is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * RED is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.xl.database;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+import com.xl.datatypes.sites.SiteBean;
+
+/**
+ * SiteBeanCursor streams all information of the sites in a sample or filter table. Each row is decoded into the same
+ * {@link SiteBean}, so the bean returned by {@link #getSite()} is only valid until the next call of {@link #next()}.
+ * Copy it by {@link #copySite()} if it must be kept.
+ */
+public class SiteBeanCursor {
+    private final QueryCursor cursor;
+    private final SiteBean site = new SiteBean(null, 0);
+    /**
+     * The indexes of the columns of Fisher's Exact Test, -1 if the table does not have them.
+     */
+    private final int levelIndex;
+    private final int pvalueIndex;
+    private final int fdrIndex;
+    /**
+     * The indexes of the read count columns, -1 if the table was imported before they were added.
+     */
+    private final int refCountIndex;
+    private final int altCountIndex;
+
+    SiteBeanCursor(QueryCursor cursor) throws SQLException {
+        this.cursor = cursor;
+        ResultSetMetaData metaData = cursor.getResultSet().getMetaData();
+        int level = -1;
+        int pvalue = -1;
+        int fdr = -1;
+        int refCount = -1;
+        int altCount = -1;
+        for (int i = 1, len = metaData.getColumnCount(); i <= len; i++) {
+            String column = metaData.getColumnLabel(i);
+            if (column.equalsIgnoreCase("level")) {
+                level = i;
+            } else if (column.equalsIgnoreCase("pvalue")) {
+                pvalue = i;
+            } else if (column.equalsIgnoreCase("fdr")) {
+                fdr = i;
+            } else if (column.equalsIgnoreCase("ref_count")) {
+                refCount = i;
+            } else if (column.equalsIgnoreCase("alt_count")) {
+                altCount = i;
+            }
+        }
+        levelIndex = level;
+        pvalueIndex = pvalue;
+        fdrIndex = fdr;
+        refCountIndex = refCount;
+        altCountIndex = altCount;
+    }
+
+    /**
+     * Move to the next site and decode it.
+     *
+     * @return False if there are no more sites.
+     */
+    public boolean next() throws SQLException {
+        if (!cursor.next()) {
+            return false;
+        }
+        // 1.CHROM,2.POS,3.ID,4.REF,5.ALT,6.QUAL,7.FILTER,8.INFO,9.GT,10.AD,11.DP,12.GQ,13.PL,14.alu
+        ResultSet rs = cursor.getResultSet();
+        site.setChr(rs.getString(1));
+        site.setPos(rs.getInt(2));
+        site.setId(rs.getString(3));
+        site.setRef(rs.getString(4).charAt(0));
+        site.setAlt(rs.getString(5).charAt(0));
+        site.setQual(rs.getFloat(6));
+        site.setFilter(rs.getString(7));
+        site.setInfo(rs.getString(8));
+        site.setGt(rs.getString(9));
+        site.setAd(rs.getString(10));
+        site.setDp(rs.getString(11));
+        site.setGq(rs.getString(12));
+        site.setPl(rs.getString(13));
+        site.setIsAlu(rs.getString(14));
+        site.setLevel(levelIndex > 0 ? rs.getDouble(levelIndex) : -1);
+        site.setPValue(pvalueIndex > 0 ? rs.getDouble(pvalueIndex) : -1);
+        site.setFdr(fdrIndex > 0 ? rs.getDouble(fdrIndex) : -1);
+        site.setRefCount(getCount(rs, refCountIndex));
+        site.setAltCount(getCount(rs, altCountIndex));
+        return true;
+    }
+
+    /**
+     * @return The current site, which will be overwritten by the next call of {@link #next()}.
+     */
+    public SiteBean getSite() {
+        return site;
+    }
+
+    /**
+     * @return A copy of the current site which can be kept.
+     */
+    public SiteBean copySite() {
+        SiteBean copy = new SiteBean(site.getChr(), site.getPos(), site.getId(), site.getRef(), site.getAlt(),
+            site.getQual(), site.getFilter(), site.getInfo(), site.getGt(), site.getAd(), site.getDp(), site.getGq(),
+            site.getPl(), site.getIsAlu());
+        copy.setLevel(site.getLevel());
+        copy.setPValue(site.getPvalue());
+        copy.setFdr(site.getFdr());
+        copy.setRefCount(site.getRefCount());
+        copy.setAltCount(site.getAltCount());
+        return copy;
+    }
+
+    private int getCount(ResultSet rs, int index) throws SQLException {
+        if (index < 0) {
+            return -1;
+        }
+        int count = rs.getInt(index);
+        return rs.wasNull() ? -1 : count;
+    }
+
+    public void close() {
+        cursor.close();
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * RED: RNA Editing Detector Copyright (C) <2014> <Xing Li>
+ *
+ * RED is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * RED is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.xl.database;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * StorageBackend describes the concrete database engine behind {@link DatabaseManager}. Parsers, filters and
+ * {@link Query} only talk to DatabaseManager, which uses the backend to open connections and to adapt the few SQL
+ * clauses whose syntax differs between engines.
+ */
+public interface StorageBackend {
+    /**
+     * @return A short name of the backend, such as 'mysql'.
+     */
+    public String getName();
+
+    /**
+     * Load the JDBC driver of the backend.
+     *
+     * @throws SQLException If the driver is not on the class path.
+     */
+    public void loadDriver() throws SQLException;
+
+    public String getUrl();
+
+    public String getUser();
+
+    public String getPassword();
+
+    /**
+     * @return The fetch size which makes the driver stream a result set instead of buffering it.
+     */
+    public int getStreamingFetchSize();
+
+    /**
+     * @param database The database name.
+     * @return The SQL clause to create a database if it does not exist.
+     */
+    public String createDatabaseClause(String database);
+
+    /**
+     * Let a connection use the given database.
+     *
+     * @param connection The connection.
+     * @param database The database name.
+     */
+    public void useDatabase(Connection connection, String database) throws SQLException;
+
+    /**
+     * List the names of all databases.
+     *
+     * @param metaData The meta data of a connection.
+     * @return The database names.
+     */
+    public List<String> getDatabases(DatabaseMetaData metaData) throws SQLException;
+
+    /**
+     * List the names of all tables in a database.
+     *
+     * @param metaData The meta data of a connection.
+     * @param database The database name.
+     * @return The table names.
+     */
+    public List<String> getTables(DatabaseMetaData metaData, String database) throws SQLException;
+
+    /**
+     * Adapt a SQL clause written for MySQL to this backend.
+     *
+     * @param sql The SQL clause.
+     * @return The SQL clause which can be executed by this backend.
+     */
+    public String adaptSql(String sql);
+
+    /**
+     * @return True if 'create table ... like ...' copies the indexes of the reference table.
+     */
+    public boolean isIndexCopiedByCreateLike();
+
+    /**
+     * @return True if tab-separated files can be loaded by 'load data local infile'.
+     */
+    public boolean isBulkLoadSupported();
+
+    /**
+     * @return True if tables can be partitioned by 'partition by list columns(...)'.
+     */
+    public boolean isPartitionSupported();
+
+    /**
+     * Let the next 'load data local infile' clause of a statement read its data from a stream instead of the file
+     * named in the clause, so rows can be loaded while they are produced.
+     *
+     * @throws SQLException If the backend does not support bulk loading.
+     */
+    public void setLocalInfileStream(Statement statement, InputStream inputStream) throws SQLException;
+}
@@ -13,10 +13,14 @@
 
 package com.xl.database;
 
+import com.xl.preferences.DatabasePreferences;
+import com.xl.utils.Indexer;
+import com.xl.utils.NameRetriever;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.SQLException;
+import java.util.List;
 
 /**
  * Created by Xing Li on 2014/11/13.
@@ -31,7 +35,9 @@ public class TableCreator {
     private static DatabaseManager databaseManager = DatabaseManager.getInstance();
 
     /**
-     * Create a standard filter table except for FETFilter.
+     * Create a standard filter table except for FETFilter. The table has a unique key on (chrom, pos), so filters write
+     * their results by 'insert ignore' and duplicated sites are dropped at once. The partitions of the reference table,
+     * if any, are copied too.
      *
      * @param tableName The table name to be created.
      */
@@ -40,12 +46,40 @@ public class TableCreator {
         try {
             sqlClause = "create table " + tableName + " like " + refTable;
             databaseManager.executeSQL(sqlClause);
+            if (!databaseManager.getBackend().isIndexCopiedByCreateLike()) {
+                sqlClause = "alter table " + tableName + " add " + Indexer.UNIQUE_CHROM_POSITION;
+                databaseManager.executeSQL(sqlClause);
+            }
         } catch (SQLException e) {
             logger.error("There is a syntax error for SQL clause: " + sqlClause, e);
         }
         return true;
     }
 
+    /**
+     * Create the partition clause of a sites table, which has one partition for each standard chromosome, so queries
+     * of a chromosome only read its partition and workers of different chromosomes write different partitions. Sites of
+     * other chromosomes can not be stored in such a table.
+     *
+     * @return The clause which follows the column definitions in 'create table', or an empty string if the tables are
+     *         not partitioned.
+     */
+    public static String createPartitionClause() {
+        if (!databaseManager.isPartitioned()) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder(" partition by list columns(chrom) (");
+        List<String> chromosomes = NameRetriever.getStandardChromosomeNames();
+        for (int i = 0, len = chromosomes.size(); i < len; i++) {
+            if (i > 0) {
+                builder.append(",");
+            }
+            builder.append("partition p_").append(chromosomes.get(i)).append(" values in ('")
+                .append(chromosomes.get(i)).append("')");
+        }
+        return builder.append(")").toString();
+    }
+
     /**
      * Create a specific table for Fisher Exact Test Filter which have added information (i.e., level, p-value and fdr)
      * to the standard filter table.
@@ -100,16 +134,29 @@ public class TableCreator {
         }
     }
 
+    /**
+     * Create the information table, which records the row count and the fingerprint of the source file (i.e., path,
+     * size, modification time and content hash) of each imported table. An information table created by older versions
+     * gets the fingerprint columns added.
+     */
     public static void createInfoTable() {
         String infoTable = DatabaseManager.INFORMATION_TABLE_NAME;
-        if (!databaseManager.existTable(infoTable)) {
-            String sql = "create table if not exists " + infoTable
-                + "(tableName varchar(30) ,counts int, PRIMARY KEY (tableName))";
-            try {
+        String sql = null;
+        try {
+            if (!databaseManager.existTable(infoTable)) {
+                sql = "create table if not exists " + infoTable + "(tableName varchar(30) ,counts int,"
+                    + "file_path varchar(1024),file_size bigint,file_modified bigint,file_hash varchar(32),"
+                    + " PRIMARY KEY (tableName))";
+                databaseManager.executeSQL(sql);
+            } else if (!databaseManager
+                .getColumnNames(DatabasePreferences.getInstance().getCurrentDatabase(), infoTable)
+                .contains("file_hash")) {
+                sql = "alter table " + infoTable + " add file_path varchar(1024),add file_size bigint,"
+                    + "add file_modified bigint,add file_hash varchar(32)";
                 databaseManager.executeSQL(sql);
-            } catch (SQLException e) {
-                logger.error("There is a syntax error for SQL clause: " + sql, e);
             }
+        } catch (SQLException e) {
+            logger.error("There is a syntax error for SQL clause: " + sql, e);
         }
     }
 }
@@ -0,0 +1,40 @@
+/*
+ * RED: RNA Editing Detector Copyright (C) <2014> <Xing Li>
+ *
+ * RED is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * RED is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.xl.database;
+
+import java.sql.SQLException;
+
+/**
+ * A writer which the values of a row are appended to one by one in the order of the columns.
+ */
+public interface ValueWriter {
+
+    public ValueWriter append(String value) throws SQLException;
+
+    public ValueWriter append(char value) throws SQLException;
+
+    public ValueWriter append(int value) throws SQLException;
+
+    public ValueWriter append(float value) throws SQLException;
+
+    public ValueWriter append(double value) throws SQLException;
+
+    /**
+     * Append a SQL NULL value of the given type.
+     *
+     * @param sqlType The type of the column, which is defined in {@link java.sql.Types}.
+     */
+    public ValueWriter appendNull(int sqlType) throws SQLException;
+}
@@ -0,0 +1,278 @@
+/*
+ * RED: RNA Editing Detector Copyright (C) <2014> <Xing Li>
+ *
+ * RED is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * RED is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.xl.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * WriteBehindWriter lets a parser go on reading its file while rows are written to the database. Rows are appended in
+ * the same way as {@link BatchWriter}, collected into chunks and handed over a bounded queue to a writer thread, which
+ * inserts them through a {@link BatchWriter} for each table on a connection leased for it and commits as it goes.
+ * <p/>
+ * The queue blocks the parser once it is full, so a slow database holds the parser back instead of filling the memory.
+ * If writing fails, the error is thrown to the parser by the next {@link #endRow(int)} or by {@link #close()}, which
+ * must always be called to write the remaining rows and wait for the writer thread.
+ */
+public class WriteBehindWriter implements RowWriter {
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindWriter.class);
+    /**
+     * The number of chunks which can wait in the queue.
+     */
+    private static final int QUEUE_CAPACITY = 16;
+    private static final Chunk END = new Chunk(0, 0);
+    private final String[] tableNames;
+    private final String[] columns;
+    private final boolean ignoreDuplicates;
+    private final int chunkSize;
+    /**
+     * The connection leased for the writer thread.
+     */
+    private final Connection connection;
+    private final BlockingQueue<Chunk> queue = new ArrayBlockingQueue<Chunk>(QUEUE_CAPACITY);
+    private final Thread writerThread;
+    private Chunk chunk;
+    private Object[] row;
+    private int[] rowNullTypes;
+    private int valueIndex = 0;
+    private boolean closed = false;
+    private volatile Exception failure = null;
+    private volatile long writtenRows = 0;
+
+    /**
+     * @param connection A connection leased by {@link DatabaseManager#tryLeaseConnection()} for the writer thread. The
+     *                   writer thread never waits for the pool, since the caller may hold the last connection.
+     */
+    WriteBehindWriter(String[] tableNames, String[] columns, boolean ignoreDuplicates, int chunkSize,
+        Connection connection) {
+        this.tableNames = tableNames;
+        this.connection = connection;
+        this.columns = columns;
+        this.ignoreDuplicates = ignoreDuplicates;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.chunk = new Chunk(this.chunkSize, columns.length);
+        this.row = chunk.values[0];
+        this.rowNullTypes = chunk.nullTypes[0];
+        writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        }, "write-behind-" + tableNames[0]);
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @Override
+    public WriteBehindWriter append(String value) throws SQLException {
+        return appendValue(value, Types.VARCHAR);
+    }
+
+    @Override
+    public WriteBehindWriter append(char value) throws SQLException {
+        return appendValue(String.valueOf(value), Types.VARCHAR);
+    }
+
+    @Override
+    public WriteBehindWriter append(int value) throws SQLException {
+        return appendValue(value, Types.INTEGER);
+    }
+
+    @Override
+    public WriteBehindWriter append(float value) throws SQLException {
+        return appendValue(value, Types.FLOAT);
+    }
+
+    @Override
+    public WriteBehindWriter append(double value) throws SQLException {
+        return appendValue(value, Types.DOUBLE);
+    }
+
+    @Override
+    public WriteBehindWriter appendNull(int sqlType) throws SQLException {
+        return appendValue(null, sqlType);
+    }
+
+    @Override
+    public void endRow() throws SQLException {
+        endRow(0);
+    }
+
+    @Override
+    public void endRow(int table) throws SQLException {
+        if (valueIndex != columns.length) {
+            throw new SQLException("Row has " + valueIndex + " values but " + columns.length + " are needed for table "
+                + tableNames[table]);
+        }
+        chunk.tables[chunk.size++] = table;
+        if (chunk.size == chunkSize) {
+            put(chunk);
+            chunk = new Chunk(chunkSize, columns.length);
+        }
+        row = chunk.values[chunk.size];
+        rowNullTypes = chunk.nullTypes[chunk.size];
+        valueIndex = 0;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (chunk.size > 0) {
+                put(chunk);
+            }
+        } finally {
+            try {
+                queue.put(END);
+                writerThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for rows to be written.", e);
+            }
+        }
+        checkFailure();
+    }
+
+    /**
+     * @return The number of rows which have been committed.
+     */
+    public long getWrittenRows() {
+        return writtenRows;
+    }
+
+    private WriteBehindWriter appendValue(Object value, int sqlType) throws SQLException {
+        if (valueIndex == columns.length) {
+            throw new SQLException("Too many values for table " + tableNames[0]);
+        }
+        rowNullTypes[valueIndex] = sqlType;
+        row[valueIndex++] = value;
+        return this;
+    }
+
+    private void put(Chunk full) throws SQLException {
+        checkFailure();
+        try {
+            queue.put(full);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for rows to be written.", e);
+        }
+    }
+
+    private void checkFailure() throws SQLException {
+        Exception e = failure;
+        if (e instanceof SQLException) {
+            throw (SQLException) e;
+        } else if (e != null) {
+            throw new SQLException("Error writing rows to " + tableNames[0], e);
+        }
+    }
+
+    /**
+     * The loop of the writer thread. After a failure it keeps taking chunks without writing them, so the parser is
+     * never blocked and gets the failure at once.
+     */
+    private void write() {
+        DatabaseManager databaseManager = DatabaseManager.getInstance();
+        databaseManager.adoptConnection(connection);
+        BatchWriter[] writers = new BatchWriter[tableNames.length];
+        long rows = 0;
+        try {
+            databaseManager.setAutoCommit(false);
+            for (int i = 0, len = tableNames.length; i < len; i++) {
+                writers[i] = databaseManager.createBatchInserter(tableNames[i], columns, ignoreDuplicates);
+            }
+        } catch (Exception e) {
+            failure = e;
+        }
+        try {
+            Chunk current;
+            while ((current = queue.take()) != END) {
+                if (failure != null) {
+                    continue;
+                }
+                try {
+                    for (int i = 0; i < current.size; i++) {
+                        BatchWriter writer = writers[current.tables[i]];
+                        RowValues.append(writer, current.values[i], current.nullTypes[i]);
+                        writer.endRow();
+                        if (++rows % DatabaseManager.COMMIT_COUNTS_PER_ONCE == 0) {
+                            databaseManager.commit();
+                            writtenRows = rows;
+                        }
+                    }
+                } catch (Exception e) {
+                    failure = e;
+                }
+            }
+            if (failure == null) {
+                for (BatchWriter writer : writers) {
+                    writer.close();
+                }
+                databaseManager.commit();
+                writtenRows = rows;
+            }
+        } catch (Exception e) {
+            failure = e;
+        } finally {
+            if (failure != null) {
+                logger.error("Error writing rows to " + tableNames[0], failure);
+                // The rows since the last commit are rolled back, as by DirectWriter, so the written rows are exact.
+                for (BatchWriter writer : writers) {
+                    closeQuietly(writer);
+                }
+                databaseManager.rollback();
+            }
+            databaseManager.setAutoCommit(true);
+            databaseManager.releaseConnection();
+        }
+    }
+
+    private static void closeQuietly(BatchWriter writer) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (SQLException e) {
+            logger.debug("Unable to close the batch writer after a failure.", e);
+        }
+    }
+
+    /**
+     * The rows handed over to the writer thread at once. The value arrays are allocated with the chunk and filled by
+     * the parser in place. A null value is written as NULL of the SQL type in nullTypes.
+     */
+    private static class Chunk {
+        private final int[] tables;
+        private final Object[][] values;
+        private final int[][] nullTypes;
+        private int size = 0;
+
+        private Chunk(int capacity, int columnCount) {
+            tables = new int[capacity];
+            values = new Object[capacity][columnCount];
+            nullTypes = new int[capacity][columnCount];
+        }
+    }
+}
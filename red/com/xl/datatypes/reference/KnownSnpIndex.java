@@ -0,0 +1,438 @@
+/*
+ * RED: RNA Editing Detector Copyright (C) <2014> <Xing Li>
+ *
+ * RED is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * RED is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.xl.datatypes.reference;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.xl.database.DatabaseManager;
+import com.xl.database.QueryCursor;
+import com.xl.utils.FileUtils;
+import com.xl.utils.NameRetriever;
+import com.xl.utils.Timer;
+
+/**
+ * KnownSnpIndex keeps the positions of a dbSNP VCF file in memory, as a sorted int array without duplicates for each
+ * chromosome, fronted by a Bloom filter which turns most positions which are not known SNPs away without a binary
+ * search.
+ * <p/>
+ * The index is built from the dbSNP file once and saved next to it (the file path with '.snpidx' appended), together
+ * with the size and modification time of the file, so later runs map the saved index instead of parsing the file again.
+ * If the directory of the file is not writable, the index is saved into the cache directory instead, which is the
+ * directory of the embedded database or the temporary directory. It is shared by all samples of a run through
+ * {@link #getInstance(String)}.
+ */
+public class KnownSnpIndex {
+    public static final String INDEX_SUFFIX = ".snpidx";
+    private static final Logger logger = LoggerFactory.getLogger(KnownSnpIndex.class);
+    private static final int MAGIC = 0x52534e50;
+    private static final int VERSION = 1;
+    private static final int INITIAL_CAPACITY = 1024;
+    /**
+     * About 2% of positions which are not known SNPs pass the Bloom filter with 8 bits for each position and 3 hashes.
+     */
+    private static final int BLOOM_BITS_PER_POSITION = 8;
+    private static final int BLOOM_HASHES = 3;
+    private static KnownSnpIndex instance = null;
+    private static String instancePath = null;
+    private static File cacheDirectory = new File(System.getProperty("java.io.tmpdir"));
+    private final Map<String, int[]> positions = new HashMap<String, int[]>();
+    private final Map<String, Integer> sizes = new HashMap<String, Integer>();
+    private long[] bloomBits = new long[1];
+    private int size = 0;
+
+    /**
+     * Get the index of a dbSNP file, which is read from the saved index or built from the file at the first call.
+     *
+     * @param dataPath The path of the dbSNP VCF file, which may be gzip or bgzip-compressed.
+     */
+    public static synchronized KnownSnpIndex getInstance(String dataPath) throws IOException {
+        if (instance == null || !dataPath.equals(instancePath)) {
+            instance = open(dataPath);
+            instancePath = dataPath;
+        }
+        return instance;
+    }
+
+    /**
+     * Set the directory where the index is saved when the directory of the dbSNP file is not writable.
+     *
+     * @param directory The directory, e.g., the directory of the embedded database.
+     */
+    public static synchronized void setCacheDirectory(File directory) {
+        cacheDirectory = directory;
+    }
+
+    /**
+     * Drop the loaded index, so it is opened again at the next call of {@link #getInstance(String)}.
+     */
+    public static synchronized void invalidate() {
+        instance = null;
+        instancePath = null;
+    }
+
+    /**
+     * Read the saved index of a dbSNP file if it is up to date, otherwise build it from the file and save it.
+     *
+     * @param dataPath The path of the dbSNP VCF file.
+     */
+    public static KnownSnpIndex open(String dataPath) throws IOException {
+        File dataFile = new File(dataPath);
+        for (File indexFile : getIndexFiles(dataPath)) {
+            if (!indexFile.isFile()) {
+                continue;
+            }
+            try {
+                KnownSnpIndex index = read(indexFile, dataFile.length(), dataFile.lastModified());
+                if (index != null) {
+                    return index;
+                }
+                logger.info(indexFile + " is out of date, build it again.");
+            } catch (IOException e) {
+                logger.warn("Unable to read the dbSNP index " + indexFile + ", build it again.", e);
+            }
+        }
+        logger.info("Start building the dbSNP index from " + dataPath + "...\t" + Timer.getCurrentTime());
+        KnownSnpIndex index = build(FileUtils.decompress(new FileInputStream(dataFile)));
+        logger.info("End building the dbSNP index of " + index.size + " positions...\t" + Timer.getCurrentTime());
+        index.save(dataPath);
+        return index;
+    }
+
+    /**
+     * Build the index from the CHROM and POS columns of a dbSNP VCF file. The stream is closed at the end.
+     *
+     * @param inputStream The decompressed content of the file.
+     */
+    public static KnownSnpIndex build(InputStream inputStream) throws IOException {
+        KnownSnpIndex index = new KnownSnpIndex();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
+        try {
+            String line;
+            // Sites are sorted by chromosome, so the formatted name is reused for the following lines.
+            String rawChrom = null;
+            String chrom = null;
+            while ((line = reader.readLine()) != null) {
+                if (line.length() == 0 || line.charAt(0) == '#') {
+                    continue;
+                }
+                int chromEnd = line.indexOf('\t');
+                if (chromEnd <= 0) {
+                    continue;
+                }
+                if (rawChrom == null || rawChrom.length() != chromEnd || !line.startsWith(rawChrom)) {
+                    rawChrom = line.substring(0, chromEnd);
+                    chrom = NameRetriever.formatChromosomeName(rawChrom);
+                }
+                int pos = parsePosition(line, chromEnd + 1);
+                if (pos >= 0) {
+                    index.add(chrom, pos);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        index.build();
+        return index;
+    }
+
+    /**
+     * Save the index next to the dbSNP file it was built from, or into the cache directory if that fails. A failure of
+     * both is only logged, since the index still works for this run, but it will be built again at the next run.
+     *
+     * @param dataPath The path of the dbSNP VCF file.
+     * @return True if the index is saved.
+     */
+    public boolean save(String dataPath) {
+        File dataFile = new File(dataPath);
+        File[] indexFiles = getIndexFiles(dataPath);
+        for (File indexFile : indexFiles) {
+            try {
+                write(indexFile, dataFile.length(), dataFile.lastModified());
+                logger.info("Saved the dbSNP index to " + indexFile);
+                return true;
+            } catch (IOException e) {
+                logger.warn("Unable to save the dbSNP index to " + indexFile + ": " + e.getMessage());
+            }
+        }
+        logger.error("The dbSNP index can not be saved to " + Arrays.toString(indexFiles)
+            + ", so it will be built from " + dataPath + " again at every run. Please set a writable '--dbpath'.");
+        return false;
+    }
+
+    /**
+     * The index files of a dbSNP file, which are looked for in order, i.e., the file next to the dbSNP file, and the
+     * file in the cache directory whose name has the hash of the dbSNP file path, so the files of different dbSNP files
+     * with the same name are kept apart.
+     */
+    private static File[] getIndexFiles(String dataPath) {
+        File dataFile = new File(dataPath).getAbsoluteFile();
+        File cacheFile;
+        synchronized (KnownSnpIndex.class) {
+            cacheFile = new File(cacheDirectory, dataFile.getName() + "." + Integer.toHexString(
+                dataFile.getPath().hashCode()) + INDEX_SUFFIX);
+        }
+        return new File[]{new File(dataFile.getPath() + INDEX_SUFFIX), cacheFile};
+    }
+
+    /**
+     * Load the positions of a dbSNP table, i.e., a table with chrom and pos columns, which was filled by an older
+     * version. The index is not saved.
+     */
+    public static KnownSnpIndex load(String tableName) throws SQLException {
+        logger.info("Start loading dbSNP positions from " + tableName + " into memory...\t" + Timer.getCurrentTime());
+        KnownSnpIndex index = new KnownSnpIndex();
+        QueryCursor cursor = DatabaseManager.getInstance().openCursor("select chrom,pos from " + tableName);
+        try {
+            ResultSet rs = cursor.getResultSet();
+            while (cursor.next()) {
+                index.add(NameRetriever.formatChromosomeName(rs.getString(1)), rs.getInt(2));
+            }
+        } finally {
+            cursor.close();
+        }
+        index.build();
+        logger.info("End loading " + index.size + " dbSNP positions into memory...\t" + Timer.getCurrentTime());
+        return index;
+    }
+
+    /**
+     * Add a position, which must be followed by {@link #build()} before the index is searched.
+     */
+    public void add(String chrom, int pos) {
+        int[] array = positions.get(chrom);
+        int count = array == null ? 0 : sizes.get(chrom);
+        if (array == null) {
+            array = new int[INITIAL_CAPACITY];
+            positions.put(chrom, array);
+        } else if (count == array.length) {
+            array = Arrays.copyOf(array, count + (count >> 1));
+            positions.put(chrom, array);
+        }
+        array[count] = pos;
+        sizes.put(chrom, count + 1);
+    }
+
+    /**
+     * Sort the positions of each chromosome, trim the arrays after removing duplicates, and fill the Bloom filter.
+     */
+    public void build() {
+        size = 0;
+        for (Map.Entry<String, int[]> entry : positions.entrySet()) {
+            int[] array = entry.getValue();
+            int count = sizes.get(entry.getKey());
+            Arrays.sort(array, 0, count);
+            int unique = 0;
+            for (int i = 0; i < count; i++) {
+                if (unique == 0 || array[i] != array[unique - 1]) {
+                    array[unique++] = array[i];
+                }
+            }
+            entry.setValue(unique == array.length ? array : Arrays.copyOf(array, unique));
+            size += unique;
+        }
+        sizes.clear();
+        buildBloomFilter();
+    }
+
+    /**
+     * @return True if the position is a known SNP.
+     */
+    public boolean contains(String chrom, int pos) {
+        int[] array = positions.get(chrom);
+        if (array == null) {
+            return false;
+        }
+        long hash = hash(chrom, pos);
+        long mask = ((long) bloomBits.length << 6) - 1;
+        int step = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            long bit = (hash + (long) i * step) & mask;
+            if ((bloomBits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return Arrays.binarySearch(array, pos) >= 0;
+    }
+
+    /**
+     * @return The number of distinct positions.
+     */
+    public int size() {
+        return size;
+    }
+
+    private void buildBloomFilter() {
+        // A power of two, so a bit is picked by a mask.
+        long bits = Long.highestOneBit(Math.max(64L, (long) size * BLOOM_BITS_PER_POSITION - 1) << 1);
+        bloomBits = new long[(int) Math.min(bits >>> 6, Integer.MAX_VALUE >> 1)];
+        long mask = ((long) bloomBits.length << 6) - 1;
+        for (Map.Entry<String, int[]> entry : positions.entrySet()) {
+            String chrom = entry.getKey();
+            for (int pos : entry.getValue()) {
+                long hash = hash(chrom, pos);
+                int step = (int) (hash >>> 32) | 1;
+                for (int i = 0; i < BLOOM_HASHES; i++) {
+                    long bit = (hash + (long) i * step) & mask;
+                    bloomBits[(int) (bit >>> 6)] |= 1L << bit;
+                }
+            }
+        }
+    }
+
+    /**
+     * Mix the chromosome and the position into 64 bits by the finalizer of MurmurHash3.
+     */
+    private static long hash(String chrom, int pos) {
+        long h = ((long) chrom.hashCode() << 32) ^ (pos & 0xffffffffL);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * @return The position which starts at the offset and ends at the next tab, or -1 if it is not a number.
+     */
+    private static int parsePosition(String line, int offset) {
+        int pos = 0;
+        int i = offset;
+        for (int len = line.length(); i < len && line.charAt(i) != '\t'; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9' || i - offset >= 9) {
+                return -1;
+            }
+            pos = pos * 10 + (c - '0');
+        }
+        return i == offset ? -1 : pos;
+    }
+
+    /**
+     * Save the positions, i.e., the magic number, the version, the size and modification time of the dbSNP file, the
+     * number of chromosomes, and the name, the number of positions and the positions of each chromosome.
+     */
+    private void write(File indexFile, long dataSize, long dataModified) throws IOException {
+        // Written to a temporary file which is renamed at the end, so a killed run leaves no broken index.
+        File tempFile = new File(indexFile.getPath() + ".tmp");
+        try {
+            writeTo(tempFile, dataSize, dataModified);
+            if (!tempFile.renameTo(indexFile) && !(indexFile.delete() && tempFile.renameTo(indexFile))) {
+                throw new IOException("Unable to rename " + tempFile + " to " + indexFile);
+            }
+        } finally {
+            if (tempFile.isFile() && !tempFile.delete()) {
+                tempFile.deleteOnExit();
+            }
+        }
+    }
+
+    private void writeTo(File indexFile, long dataSize, long dataModified) throws IOException {
+        DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile),
+            256 * 1024));
+        try {
+            outputStream.writeInt(MAGIC);
+            outputStream.writeInt(VERSION);
+            outputStream.writeLong(dataSize);
+            outputStream.writeLong(dataModified);
+            outputStream.writeInt(positions.size());
+            for (Map.Entry<String, int[]> entry : positions.entrySet()) {
+                byte[] name = entry.getKey().getBytes("UTF-8");
+                outputStream.writeInt(name.length);
+                outputStream.write(name);
+                int[] array = entry.getValue();
+                outputStream.writeInt(array.length);
+                for (int pos : array) {
+                    outputStream.writeInt(pos);
+                }
+            }
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    /**
+     * Read a saved index by mapping it into memory.
+     *
+     * @return The index, or null if it was saved from another version of the dbSNP file.
+     * @throws IOException if the index can not be read or is broken, e.g., truncated.
+     */
+    private static KnownSnpIndex read(File indexFile, long dataSize, long dataModified) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(indexFile, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 28 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+                || buffer.getLong() != dataSize || buffer.getLong() != dataModified) {
+                return null;
+            }
+            KnownSnpIndex index = new KnownSnpIndex();
+            int chromCount = buffer.getInt();
+            if (chromCount < 0) {
+                throw new IOException("Broken dbSNP index " + indexFile + ": " + chromCount + " chromosomes.");
+            }
+            for (int i = 0; i < chromCount; i++) {
+                byte[] name = new byte[checkCount(buffer, 1, indexFile)];
+                buffer.get(name);
+                int[] array = new int[checkCount(buffer, 4, indexFile)];
+                buffer.asIntBuffer().get(array);
+                buffer.position(buffer.position() + array.length * 4);
+                index.positions.put(new String(name, "UTF-8"), array);
+                index.size += array.length;
+            }
+            index.buildBloomFilter();
+            logger.info("Read the dbSNP index of " + index.size + " positions from " + indexFile);
+            return index;
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Read a count of elements, which must fit into the rest of the buffer after it.
+     *
+     * @param elementSize The size of an element in bytes.
+     * @throws IOException if the count is negative or there are not so many elements left.
+     */
+    private static int checkCount(ByteBuffer buffer, int elementSize, File indexFile) throws IOException {
+        if (buffer.remaining() < 4) {
+            throw new IOException("Broken dbSNP index " + indexFile + ": unexpected end of file.");
+        }
+        int count = buffer.getInt();
+        if (count < 0 || (long) count * elementSize > buffer.remaining()) {
+            throw new IOException("Broken dbSNP index " + indexFile + ": " + count + " elements of " + elementSize
+                + " bytes, but " + buffer.remaining() + " bytes left.");
+        }
+        return count;
+    }
+}
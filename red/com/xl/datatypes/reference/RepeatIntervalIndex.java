@@ -0,0 +1,246 @@
+/*
+ * RED: RNA Editing Detector Copyright (C) <2014> <Xing Li>
+ *
+ * RED is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * RED is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.xl.datatypes.reference;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.xl.database.DatabaseManager;
+import com.xl.database.QueryCursor;
+import com.xl.preferences.DatabasePreferences;
+import com.xl.utils.Timer;
+
+/**
+ * RepeatIntervalIndex keeps the RepeatMasker intervals in memory, so a site is classified by a binary search instead of
+ * a query. The intervals of each chromosome are sorted by their begin positions in primitive arrays, which are laid
+ * out as an implicit binary search tree, i.e., the interval at index i is a node at the level of the trailing ones of
+ * i, and each node keeps the largest end position of its subtree. A search skips every subtree which ends before the
+ * site, so it takes O(log n) steps for each region which contains the site, even if some regions are very long.
+ * <p/>
+ * The index is loaded once for each database by {@link #getInstance()} and shared by all filters, and it is dropped by
+ * {@link #invalidate()} when the repeat table is imported again.
+ */
+public class RepeatIntervalIndex {
+    /**
+     * The site is not in any repeat region.
+     */
+    public static final int NOT_REPEAT = 0;
+    /**
+     * The site is in repeat regions, none of which is SINE/Alu.
+     */
+    public static final int REPEAT = 1;
+    /**
+     * The site is in a SINE/Alu region.
+     */
+    public static final int ALU = 2;
+    public static final String ALU_TYPE = "SINE/Alu";
+    private static final Logger logger = LoggerFactory.getLogger(RepeatIntervalIndex.class);
+    private static final int INITIAL_CAPACITY = 1024;
+    private static RepeatIntervalIndex instance = null;
+    private static String instanceDatabase = null;
+    private final Map<String, Intervals> chromosomes = new HashMap<String, Intervals>();
+    private int size = 0;
+
+    /**
+     * Get the index of the repeat table in the current database, which is loaded at the first call.
+     */
+    public static synchronized RepeatIntervalIndex getInstance() throws SQLException {
+        String database = DatabasePreferences.getInstance().getCurrentDatabase();
+        if (instance == null || instanceDatabase == null || !instanceDatabase.equals(database)) {
+            instance = load(DatabaseManager.REPEAT_MASKER_TABLE_NAME);
+            instanceDatabase = database;
+        }
+        return instance;
+    }
+
+    /**
+     * Drop the loaded index, so it is loaded again at the next call of {@link #getInstance()}.
+     */
+    public static synchronized void invalidate() {
+        instance = null;
+        instanceDatabase = null;
+    }
+
+    /**
+     * Load the intervals of a repeat table, i.e., a table with chrom, begin, end and type columns.
+     */
+    public static RepeatIntervalIndex load(String tableName) throws SQLException {
+        logger.info("Start loading repeat regions from " + tableName + " into memory...\t" + Timer.getCurrentTime());
+        RepeatIntervalIndex index = new RepeatIntervalIndex();
+        QueryCursor cursor = DatabaseManager.getInstance().openCursor("select chrom,begin,end,type from " + tableName);
+        try {
+            ResultSet rs = cursor.getResultSet();
+            while (cursor.next()) {
+                index.add(rs.getString(1), rs.getInt(2), rs.getInt(3), ALU_TYPE.equals(rs.getString(4)));
+            }
+        } finally {
+            cursor.close();
+        }
+        index.build();
+        logger.info("End loading " + index.size + " repeat regions into memory...\t" + Timer.getCurrentTime());
+        return index;
+    }
+
+    /**
+     * Add an interval, which must be followed by {@link #build()} before the index is searched.
+     *
+     * @param chrom The chromosome name.
+     * @param begin The begin position, inclusive.
+     * @param end The end position, inclusive.
+     * @param alu True if it is a SINE/Alu region.
+     */
+    public void add(String chrom, int begin, int end, boolean alu) {
+        Intervals intervals = chromosomes.get(chrom);
+        if (intervals == null) {
+            intervals = new Intervals();
+            chromosomes.put(chrom, intervals);
+        }
+        intervals.add(begin, end, alu);
+        size++;
+    }
+
+    /**
+     * Sort the intervals of each chromosome and compute the largest end positions of their subtrees.
+     */
+    public void build() {
+        for (Intervals intervals : chromosomes.values()) {
+            intervals.build();
+        }
+    }
+
+    /**
+     * Classify a site by the repeat regions which contain it.
+     *
+     * @param chrom The chromosome name.
+     * @param pos The position.
+     * @return {@link #ALU} if a SINE/Alu region contains the site, {@link #REPEAT} if only other repeat regions contain
+     *         it, otherwise {@link #NOT_REPEAT}.
+     */
+    public int classify(String chrom, int pos) {
+        Intervals intervals = chromosomes.get(chrom);
+        return intervals == null ? NOT_REPEAT : intervals.classify(pos);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The intervals of a chromosome.
+     */
+    private static class Intervals {
+        private int[] begins = new int[INITIAL_CAPACITY];
+        private int[] ends = new int[INITIAL_CAPACITY];
+        private boolean[] alus = new boolean[INITIAL_CAPACITY];
+        /**
+         * The largest end position of the subtree of each node. The tree is padded to 2^(k+1)-1 nodes, and the nodes
+         * from size on have no interval, so their subtrees without intervals end at Integer.MIN_VALUE.
+         */
+        private int[] maxEnds;
+        private int size = 0;
+        /**
+         * The index of the root node, i.e., 2^k-1.
+         */
+        private int root = 0;
+        private int rootLevel = 0;
+
+        private void add(int begin, int end, boolean alu) {
+            if (size == begins.length) {
+                begins = Arrays.copyOf(begins, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+                alus = Arrays.copyOf(alus, size * 2);
+            }
+            begins[size] = begin;
+            ends[size] = end;
+            alus[size++] = alu;
+        }
+
+        private void build() {
+            // Sort the indexes by begin positions, packed with the indexes into longs so a primitive sort is used.
+            long[] keys = new long[size];
+            for (int i = 0; i < size; i++) {
+                keys[i] = ((long) begins[i] << 32) | i;
+            }
+            Arrays.sort(keys);
+            int[] sortedBegins = new int[size];
+            int[] sortedEnds = new int[size];
+            boolean[] sortedAlus = new boolean[size];
+            for (int i = 0; i < size; i++) {
+                int index = (int) keys[i];
+                sortedBegins[i] = begins[index];
+                sortedEnds[i] = ends[index];
+                sortedAlus[i] = alus[index];
+            }
+            begins = sortedBegins;
+            ends = sortedEnds;
+            alus = sortedAlus;
+
+            rootLevel = 0;
+            while ((2L << rootLevel) - 1 < size) {
+                rootLevel++;
+            }
+            root = (1 << rootLevel) - 1;
+            maxEnds = new int[(int) ((2L << rootLevel) - 1)];
+            for (int i = 0, len = maxEnds.length; i < len; i += 2) {
+                maxEnds[i] = i < size ? ends[i] : Integer.MIN_VALUE;
+            }
+            // The nodes at level k are at 2^k-1, 2^k-1+2^(k+1), ..., and their children are 2^(k-1) away from them.
+            for (int level = 1; level <= rootLevel; level++) {
+                int half = 1 << (level - 1);
+                for (int i = (1 << level) - 1, len = maxEnds.length; i < len; i += 1 << (level + 1)) {
+                    int maxEnd = Math.max(maxEnds[i - half], maxEnds[i + half]);
+                    maxEnds[i] = i < size ? Math.max(maxEnd, ends[i]) : maxEnd;
+                }
+            }
+        }
+
+        private int classify(int pos) {
+            return size == 0 ? NOT_REPEAT : classify(pos, root, rootLevel);
+        }
+
+        /**
+         * Classify a site by the intervals in the subtree of a node.
+         */
+        private int classify(int pos, int node, int level) {
+            if (maxEnds[node] < pos) {
+                return NOT_REPEAT;
+            }
+            if (level == 0) {
+                return node < size && begins[node] <= pos && ends[node] >= pos ? (alus[node] ? ALU : REPEAT)
+                    : NOT_REPEAT;
+            }
+            int half = 1 << (level - 1);
+            int result = classify(pos, node - half, level - 1);
+            // The intervals of the right subtree begin after the site if this one does, and there are none if this
+            // node is padding.
+            if (result == ALU || node >= size || begins[node] > pos) {
+                return result;
+            }
+            if (ends[node] >= pos) {
+                if (alus[node]) {
+                    return ALU;
+                }
+                result = REPEAT;
+            }
+            int right = classify(pos, node + half, level - 1);
+            return right == NOT_REPEAT ? result : right;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * RED: RNA Editing Detector Copyright (C) <2014> <Xing Li>
+ *
+ * RED is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * RED is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.xl.datatypes.reference;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.xl.database.DatabaseManager;
+import com.xl.database.QueryCursor;
+import com.xl.preferences.DatabasePreferences;
+import com.xl.utils.Timer;
+
+/**
+ * SpliceBoundaryIndex keeps the boundaries (i.e., begin and end positions) of the CDS exons in the gene annotation in
+ * memory, as a sorted int array without duplicates for each chromosome, so whether a site is near a splice junction is
+ * answered by a binary search instead of a query.
+ * <p/>
+ * The index is loaded once for each database by {@link #getInstance()}, and it is dropped by {@link #invalidate()} when
+ * the gene annotation is imported again.
+ */
+public class SpliceBoundaryIndex {
+    public static final String CDS_TYPE = "CDS";
+    private static final Logger logger = LoggerFactory.getLogger(SpliceBoundaryIndex.class);
+    private static final int INITIAL_CAPACITY = 1024;
+    private static SpliceBoundaryIndex instance = null;
+    private static String instanceDatabase = null;
+    private final Map<String, int[]> boundaries = new HashMap<String, int[]>();
+    private final Map<String, Integer> sizes = new HashMap<String, Integer>();
+    private int size = 0;
+
+    /**
+     * Get the index of the splice junction table in the current database, which is loaded at the first call.
+     */
+    public static synchronized SpliceBoundaryIndex getInstance() throws SQLException {
+        String database = DatabasePreferences.getInstance().getCurrentDatabase();
+        if (instance == null || instanceDatabase == null || !instanceDatabase.equals(database)) {
+            instance = load(DatabaseManager.SPLICE_JUNCTION_TABLE_NAME);
+            instanceDatabase = database;
+        }
+        return instance;
+    }
+
+    /**
+     * Drop the loaded index, so it is loaded again at the next call of {@link #getInstance()}.
+     */
+    public static synchronized void invalidate() {
+        instance = null;
+        instanceDatabase = null;
+    }
+
+    /**
+     * Load the boundaries of the CDS exons in a gene annotation table, i.e., a table with chrom, begin, end and type
+     * columns.
+     */
+    public static SpliceBoundaryIndex load(String tableName) throws SQLException {
+        logger.info("Start loading splice junctions from " + tableName + " into memory...\t" + Timer.getCurrentTime());
+        SpliceBoundaryIndex index = new SpliceBoundaryIndex();
+        QueryCursor cursor = DatabaseManager.getInstance().openCursor(
+            "select chrom,begin,end from " + tableName + " where type='" + CDS_TYPE + "'");
+        try {
+            ResultSet rs = cursor.getResultSet();
+            while (cursor.next()) {
+                String chrom = rs.getString(1);
+                index.add(chrom, rs.getInt(2));
+                index.add(chrom, rs.getInt(3));
+            }
+        } finally {
+            cursor.close();
+        }
+        index.build();
+        logger.info("End loading " + index.size + " splice junction boundaries into memory...\t"
+            + Timer.getCurrentTime());
+        return index;
+    }
+
+    /**
+     * Add a boundary, which must be followed by {@link #build()} before the index is searched.
+     */
+    public void add(String chrom, int pos) {
+        int[] array = boundaries.get(chrom);
+        int count = array == null ? 0 : sizes.get(chrom);
+        if (array == null) {
+            array = new int[INITIAL_CAPACITY];
+            boundaries.put(chrom, array);
+        } else if (count == array.length) {
+            array = Arrays.copyOf(array, count * 2);
+            boundaries.put(chrom, array);
+        }
+        array[count] = pos;
+        sizes.put(chrom, count + 1);
+    }
+
+    /**
+     * Sort the boundaries of each chromosome, and trim the arrays after removing duplicates.
+     */
+    public void build() {
+        size = 0;
+        for (Map.Entry<String, int[]> entry : boundaries.entrySet()) {
+            int[] array = entry.getValue();
+            int count = sizes.get(entry.getKey());
+            Arrays.sort(array, 0, count);
+            int unique = 0;
+            for (int i = 0; i < count; i++) {
+                if (unique == 0 || array[i] != array[unique - 1]) {
+                    array[unique++] = array[i];
+                }
+            }
+            entry.setValue(Arrays.copyOf(array, unique));
+            size += unique;
+        }
+        sizes.clear();
+    }
+
+    /**
+     * Tell whether a site is near a splice junction, i.e., there is a boundary b with pos - edge < b < pos + edge.
+     *
+     * @param chrom The chromosome name.
+     * @param pos The position.
+     * @param edge The distance to the boundaries, exclusive.
+     * @return True if the site is near a boundary.
+     */
+    public boolean isNearBoundary(String chrom, int pos, int edge) {
+        int[] array = boundaries.get(chrom);
+        if (array == null) {
+            return false;
+        }
+        // The first boundary after pos - edge.
+        int low = 0;
+        int high = array.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (array[mid] <= pos - edge) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low < array.length && array[low] < pos + edge;
+    }
+
+    /**
+     * @return The number of distinct boundaries.
+     */
+    public int size() {
+        return size;
+    }
+}
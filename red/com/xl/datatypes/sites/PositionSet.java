@@ -0,0 +1,119 @@
+/*
+ * RED: RNA Editing Detector Copyright (C) <2014> <Xing Li>
+ *
+ * RED is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * RED is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.xl.datatypes.sites;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * PositionSet is a set of genome positions, which keeps a sorted array of keys packed into 64 bits, i.e., the index of
+ * the chromosome, the position and optionally a base (e.g., the reference base), and looks a position up by binary
+ * search, so millions of positions take a few bytes each instead of an object each. It serves semi-joins of a site
+ * table with another table in memory.
+ * <p/>
+ * Positions are added by one thread. Once all of them have been added, {@link #contains(String, int)} can be called by
+ * several threads at the same time.
+ */
+public class PositionSet {
+    private static final int INITIAL_CAPACITY = 1024;
+    private final Map<String, Integer> chromosomes = new HashMap<String, Integer>();
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private volatile boolean sorted = true;
+    private int size = 0;
+
+    public void add(String chrom, int pos) {
+        add(chrom, pos, (char) 0);
+    }
+
+    /**
+     * @param chrom The chromosome name.
+     * @param pos The position.
+     * @param base The base at the position, only the lower 8 bits of which are kept.
+     */
+    public void add(String chrom, int pos, char base) {
+        Integer index = chromosomes.get(chrom);
+        if (index == null) {
+            index = chromosomes.size();
+            chromosomes.put(chrom, index);
+        }
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+        }
+        long key = pack(index, pos, base);
+        if (size > 0 && keys[size - 1] >= key) {
+            sorted = false;
+        }
+        keys[size++] = key;
+    }
+
+    /**
+     * @return True if the position has been added, with any base.
+     */
+    public boolean contains(String chrom, int pos) {
+        Integer index = chromosomes.get(chrom);
+        if (index == null) {
+            return false;
+        }
+        if (!sorted) {
+            sort();
+        }
+        long key = pack(index, pos, (char) 0);
+        int i = Arrays.binarySearch(keys, 0, size, key);
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return i < size && keys[i] >>> 8 == key >>> 8;
+    }
+
+    /**
+     * @return True if the position has been added with the base.
+     */
+    public boolean contains(String chrom, int pos, char base) {
+        Integer index = chromosomes.get(chrom);
+        if (index == null) {
+            return false;
+        }
+        if (!sorted) {
+            sort();
+        }
+        return Arrays.binarySearch(keys, 0, size, pack(index, pos, base)) >= 0;
+    }
+
+    /**
+     * @return The number of positions which have been added, including duplicates.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * The chromosome index takes the upper 24 bits, the position the next 32 bits and the base the lower 8 bits.
+     */
+    private static long pack(int chromIndex, int pos, char base) {
+        return ((long) chromIndex << 40) | ((pos & 0xffffffffL) << 8) | (base & 0xff);
+    }
+
+    private synchronized void sort() {
+        if (sorted) {
+            return;
+        }
+        Arrays.sort(keys, 0, size);
+        sorted = true;
+    }
+}
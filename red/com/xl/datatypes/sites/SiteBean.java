@@ -37,6 +37,11 @@ public class SiteBean {
     private String dp;
     private String gq;
     private String pl;
+    /**
+     * The read counts of reference base and alternative base parsed from AD column, -1 if unknown.
+     */
+    private int refCount = -1;
+    private int altCount = -1;
     /**
      * The RNA editing level, level = ALT / ( REF + ALT ).
      */
@@ -81,6 +86,10 @@ public class SiteBean {
         return chr;
     }
 
+    public void setChr(String chr) {
+        this.chr = chr;
+    }
+
     public String getIsAlu() {
         return isAlu;
     }
@@ -93,6 +102,10 @@ public class SiteBean {
         return pos;
     }
 
+    public void setPos(int pos) {
+        this.pos = pos;
+    }
+
     public String getId() {
         return id;
     }
@@ -181,6 +194,22 @@ public class SiteBean {
         this.pl = pl;
     }
 
+    public int getRefCount() {
+        return refCount;
+    }
+
+    public void setRefCount(int refCount) {
+        this.refCount = refCount;
+    }
+
+    public int getAltCount() {
+        return altCount;
+    }
+
+    public void setAltCount(int altCount) {
+        this.altCount = altCount;
+    }
+
     public double getPvalue() {
         return pvalue;
     }
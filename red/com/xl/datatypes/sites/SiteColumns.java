@@ -0,0 +1,230 @@
+/*
+ * RED: RNA Editing Detector Copyright (C) <2014> <Xing Li>
+ *
+ * RED is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * RED is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.xl.datatypes.sites;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SiteColumns keeps the sites of a sample in memory in columnar form, i.e., one primitive array for each column, so
+ * that filters can run over millions of sites without creating an object for each one. Chromosome names are stored
+ * once and referred to by their ids.
+ * <p/>
+ * Filters remove sites by {@link #retain(boolean[])}, which compacts all columns in place and keeps the order of sites.
+ */
+public class SiteColumns {
+    private static final int INITIAL_CAPACITY = 1024;
+    private final List<String> chromosomeNames = new ArrayList<String>();
+    private final Map<String, Integer> chromosomeIds = new HashMap<String, Integer>();
+    private int size = 0;
+    private int[] chromosomes = new int[INITIAL_CAPACITY];
+    private int[] positions = new int[INITIAL_CAPACITY];
+    private byte[] refs = new byte[INITIAL_CAPACITY];
+    private byte[] alts = new byte[INITIAL_CAPACITY];
+    private float[] quals = new float[INITIAL_CAPACITY];
+    /**
+     * The read counts of reference base and alternative base from AD column, -1 if the site has no AD value.
+     */
+    private int[] refCounts = new int[INITIAL_CAPACITY];
+    private int[] altCounts = new int[INITIAL_CAPACITY];
+    private byte[] alus = new byte[INITIAL_CAPACITY];
+    /**
+     * The columns of Fisher's Exact Test, which are null until {@link #setTestResult(int, double, double, double)} is
+     * called for the first time.
+     */
+    private double[] levels = null;
+    private double[] pvalues = null;
+    private double[] fdrs = null;
+
+    /**
+     * Append a site.
+     *
+     * @param chrom The chromosome name.
+     * @param pos The position.
+     * @param ref The reference base.
+     * @param alt The alternative base.
+     * @param qual The quality.
+     * @param refCount The read count of reference base, -1 if unknown.
+     * @param altCount The read count of alternative base, -1 if unknown.
+     * @param alu 'T' if the site is in Alu regions, otherwise 'F'.
+     * @return The index of the site.
+     */
+    public int add(String chrom, int pos, char ref, char alt, float qual, int refCount, int altCount, char alu) {
+        if (size == positions.length) {
+            grow();
+        }
+        chromosomes[size] = getChromosomeId(chrom);
+        positions[size] = pos;
+        refs[size] = (byte) ref;
+        alts[size] = (byte) alt;
+        quals[size] = qual;
+        refCounts[size] = refCount;
+        altCounts[size] = altCount;
+        alus[size] = (byte) alu;
+        return size++;
+    }
+
+    /**
+     * Keep the sites whose flags are true and remove the others.
+     *
+     * @param keep The flags of all sites, whose length is at least {@link #size()}.
+     * @return The number of remaining sites.
+     */
+    public int retain(boolean[] keep) {
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            if (!keep[i]) {
+                continue;
+            }
+            if (i != j) {
+                chromosomes[j] = chromosomes[i];
+                positions[j] = positions[i];
+                refs[j] = refs[i];
+                alts[j] = alts[i];
+                quals[j] = quals[i];
+                refCounts[j] = refCounts[i];
+                altCounts[j] = altCounts[i];
+                alus[j] = alus[i];
+                if (levels != null) {
+                    levels[j] = levels[i];
+                    pvalues[j] = pvalues[i];
+                    fdrs[j] = fdrs[i];
+                }
+            }
+            j++;
+        }
+        size = j;
+        return size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the id of a chromosome, which is assigned when the chromosome is seen for the first time.
+     *
+     * @param chrom The chromosome name.
+     * @return The id of the chromosome.
+     */
+    public int getChromosomeId(String chrom) {
+        Integer id = chromosomeIds.get(chrom);
+        if (id == null) {
+            id = chromosomeNames.size();
+            chromosomeNames.add(chrom);
+            chromosomeIds.put(chrom, id);
+        }
+        return id;
+    }
+
+    /**
+     * @return The chromosome names, indexed by their ids.
+     */
+    public List<String> getChromosomeNames() {
+        return chromosomeNames;
+    }
+
+    public String getChromosome(int index) {
+        return chromosomeNames.get(chromosomes[index]);
+    }
+
+    public int getChromosomeIdAt(int index) {
+        return chromosomes[index];
+    }
+
+    public int getPosition(int index) {
+        return positions[index];
+    }
+
+    public char getRef(int index) {
+        return (char) refs[index];
+    }
+
+    public char getAlt(int index) {
+        return (char) alts[index];
+    }
+
+    public float getQual(int index) {
+        return quals[index];
+    }
+
+    public int getRefCount(int index) {
+        return refCounts[index];
+    }
+
+    public int getAltCount(int index) {
+        return altCounts[index];
+    }
+
+    public char getAlu(int index) {
+        return (char) alus[index];
+    }
+
+    public void setAlu(int index, char alu) {
+        alus[index] = (byte) alu;
+    }
+
+    /**
+     * @return True if the results of Fisher's Exact Test have been set.
+     */
+    public boolean hasTestResults() {
+        return levels != null;
+    }
+
+    /**
+     * Set the results of Fisher's Exact Test of a site.
+     */
+    public void setTestResult(int index, double level, double pvalue, double fdr) {
+        if (levels == null) {
+            levels = new double[positions.length];
+            pvalues = new double[positions.length];
+            fdrs = new double[positions.length];
+        }
+        levels[index] = level;
+        pvalues[index] = pvalue;
+        fdrs[index] = fdr;
+    }
+
+    public double getLevel(int index) {
+        return levels == null ? -1 : levels[index];
+    }
+
+    public double getPvalue(int index) {
+        return pvalues == null ? -1 : pvalues[index];
+    }
+
+    public double getFdr(int index) {
+        return fdrs == null ? -1 : fdrs[index];
+    }
+
+    private void grow() {
+        int capacity = positions.length * 2;
+        chromosomes = Arrays.copyOf(chromosomes, capacity);
+        positions = Arrays.copyOf(positions, capacity);
+        refs = Arrays.copyOf(refs, capacity);
+        alts = Arrays.copyOf(alts, capacity);
+        quals = Arrays.copyOf(quals, capacity);
+        refCounts = Arrays.copyOf(refCounts, capacity);
+        altCounts = Arrays.copyOf(altCounts, capacity);
+        alus = Arrays.copyOf(alus, capacity);
+        if (levels != null) {
+            levels = Arrays.copyOf(levels, capacity);
+            pvalues = Arrays.copyOf(pvalues, capacity);
+            fdrs = Arrays.copyOf(fdrs, capacity);
+        }
+    }
+}
@@ -18,7 +18,9 @@
 
 package com.xl.display.report;
 
+import com.xl.database.DatabaseManager;
 import com.xl.database.Query;
+import com.xl.database.SiteBeanCursor;
 import com.xl.datatypes.DataStore;
 import com.xl.datatypes.sites.SiteBean;
 import com.xl.datatypes.sites.SiteList;
@@ -34,7 +36,7 @@ import javax.swing.table.AbstractTableModel;
 import javax.swing.tree.TreeModel;
 import java.awt.*;
 import java.sql.SQLException;
-import java.util.Vector;
+import java.util.ArrayList;
 
 /**
  * Created by Xing Li on 2014/10/5.
@@ -116,12 +118,22 @@ public class FilterReports extends Report implements TreeSelectionListener {
     @Override
     public void run() {
         SiteList selectedSiteList = (SiteList) currentSiteList;
-        Vector<SiteBean> sites;
+        ArrayList<SiteBean> sites = new ArrayList<SiteBean>();
         try {
-            sites = Query.queryAllEditingInfo(selectedSiteList.getTableName());
+            // Stream the sites instead of letting the driver buffer the whole table before decoding it.
+            SiteBeanCursor cursor = Query.openEditingInfoCursor(selectedSiteList.getTableName());
+            try {
+                while (cursor.next()) {
+                    sites.add(cursor.copySite());
+                }
+            } finally {
+                cursor.close();
+            }
         } catch (SQLException e) {
             logger.error("Unable to query the sites information, please check your database.", e);
             return;
+        } finally {
+            DatabaseManager.getInstance().releaseConnection();
         }
         SiteBeanTableModel model = new SiteBeanTableModel(sites.toArray(new SiteBean[0]));
         reportComplete(model);
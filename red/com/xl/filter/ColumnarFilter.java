@@ -0,0 +1,32 @@
+/*
+ * RED: RNA Editing Detector Copyright (C) <2014> <Xing Li>
+ *
+ * RED is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * RED is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.xl.filter;
+
+import java.util.Map;
+
+import com.xl.datatypes.sites.SiteColumns;
+
+/**
+ * A filter which can also run over sites kept in memory in columnar form, without reading or writing any table.
+ */
+public interface ColumnarFilter extends Filter {
+
+    /**
+     * Remove the sites which do not pass this filter.
+     *
+     * @param sites The sites of a sample, which are modified in place.
+     * @param params The same parameters as {@link #performFilter(String, String, Map)}.
+     */
+    void performFilter(SiteColumns sites, Map<String, String> params);
+}
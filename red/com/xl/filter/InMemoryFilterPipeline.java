@@ -0,0 +1,200 @@
+/*
+ * RED: RNA Editing Detector Copyright (C) <2014> <Xing Li>
+ *
+ * RED is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * RED is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.xl.filter;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.xl.database.BatchWriter;
+import com.xl.database.DatabaseManager;
+import com.xl.database.QueryCursor;
+import com.xl.database.TableCreator;
+import com.xl.datatypes.sites.SiteColumns;
+import com.xl.preferences.DatabasePreferences;
+import com.xl.utils.RandomStringGenerator;
+import com.xl.utils.Timer;
+
+/**
+ * InMemoryFilterPipeline runs a chain of filters for one sample while keeping the sites in memory in columnar form.
+ * A {@link ColumnarFilter} runs over the sites directly and its result table is never written. Other filters still run
+ * in SQL, so the sites in memory are written to the table which such a filter reads from, and are loaded again from the
+ * table it writes to once a columnar filter follows. Call {@link #finish()} after the last filter to write the final
+ * result table.
+ */
+public class InMemoryFilterPipeline {
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryFilterPipeline.class);
+    private final DatabaseManager databaseManager = DatabaseManager.getInstance();
+    /**
+     * The table which holds all columns of the sites, i.e., the RNA VCF table or the result table of the last filter
+     * which ran in SQL.
+     */
+    private String sourceTable;
+    /**
+     * The result table of the last filter, which does not exist in the database if {@link #written} is false.
+     */
+    private String currentTable;
+    private SiteColumns sites = null;
+    private boolean written = true;
+
+    /**
+     * @param rawTable The RNA VCF table of the sample.
+     */
+    public InMemoryFilterPipeline(String rawTable) {
+        this.sourceTable = rawTable;
+        this.currentTable = rawTable;
+    }
+
+    /**
+     * Perform a filter over the result of the previous one.
+     *
+     * @param filter The filter.
+     * @param previousTable The result table of the previous filter.
+     * @param currentTable The result table of this filter.
+     * @param params The parameters of the filter.
+     */
+    public void performFilter(Filter filter, String previousTable, String currentTable, Map<String, String> params)
+        throws SQLException {
+        if (filter instanceof ColumnarFilter) {
+            if (sites == null) {
+                sites = loadSites(sourceTable);
+            }
+            ((ColumnarFilter) filter).performFilter(sites, params);
+            logger.info("{} sites remain after {} in memory.", sites.size(), filter.getName());
+            written = false;
+        } else {
+            if (!written) {
+                writeSites(previousTable);
+            }
+            databaseManager.deleteTable(currentTable);
+            if (filter.getName().equals(DatabaseManager.FET_FILTER_RESULT_TABLE_NAME)) {
+                TableCreator.createFisherExactTestTable(previousTable, currentTable);
+            } else {
+                TableCreator.createFilterTable(previousTable, currentTable);
+            }
+            filter.performFilter(previousTable, currentTable, params);
+            sourceTable = currentTable;
+            sites = null;
+            written = true;
+        }
+        this.currentTable = currentTable;
+    }
+
+    /**
+     * Write the sites in memory to the result table of the last filter if it has not been written.
+     *
+     * @return The result table of the last filter.
+     */
+    public String finish() throws SQLException {
+        if (!written) {
+            writeSites(currentTable);
+            written = true;
+        }
+        return currentTable;
+    }
+
+    private SiteColumns loadSites(String tableName) throws SQLException {
+        logger.info("Start loading sites from " + tableName + " into memory...\t" + Timer.getCurrentTime());
+        boolean hasTestResults = getColumnNames(tableName).contains("level");
+        SiteColumns columns = new SiteColumns();
+        QueryCursor cursor = databaseManager.openCursor("select chrom,pos,ref,alt,qual,ref_count,alt_count,alu"
+            + (hasTestResults ? ",level,pvalue,fdr" : "") + " from " + tableName);
+        try {
+            ResultSet rs = cursor.getResultSet();
+            while (cursor.next()) {
+                int refCount = rs.getInt(6);
+                if (rs.wasNull()) {
+                    refCount = -1;
+                }
+                int altCount = rs.getInt(7);
+                if (rs.wasNull()) {
+                    altCount = -1;
+                }
+                String alu = rs.getString(8);
+                int index = columns.add(rs.getString(1), rs.getInt(2), rs.getString(3).charAt(0),
+                    rs.getString(4).charAt(0), rs.getFloat(5), refCount, altCount,
+                    alu == null || alu.length() == 0 ? 'F' : alu.charAt(0));
+                if (hasTestResults) {
+                    columns.setTestResult(index, rs.getDouble(9), rs.getDouble(10), rs.getDouble(11));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        logger.info("End loading " + columns.size() + " sites into memory...\t" + Timer.getCurrentTime());
+        return columns;
+    }
+
+    /**
+     * Write the sites in memory to a table. The sites only keep a few columns, so the keys of the sites and the columns
+     * changed by filters are written to a temporary table, which is joined with the source table to get the other
+     * columns.
+     */
+    private void writeSites(String tableName) throws SQLException {
+        logger.info("Start writing " + sites.size() + " sites to " + tableName + "...\t" + Timer.getCurrentTime());
+        databaseManager.deleteTable(tableName);
+        TableCreator.createFilterTable(sourceTable, tableName);
+
+        boolean hasTestResults = sites.hasTestResults();
+        String keyTable = RandomStringGenerator.createRandomString(10);
+        databaseManager.executeSQL("create temporary table " + keyTable + "(chrom varchar(30),pos int,alu varchar(1)"
+            + (hasTestResults ? ",level float,pvalue float,fdr float" : "") + ",index(chrom,pos))");
+        try {
+            databaseManager.setAutoCommit(false);
+            BatchWriter writer = databaseManager.createBatchInserter(keyTable, hasTestResults
+                ? new String[] { "chrom", "pos", "alu", "level", "pvalue", "fdr" }
+                : new String[] { "chrom", "pos", "alu" });
+            for (int i = 0, len = sites.size(); i < len; i++) {
+                writer.append(sites.getChromosome(i)).append(sites.getPosition(i)).append(sites.getAlu(i));
+                if (hasTestResults) {
+                    writer.append(sites.getLevel(i)).append(sites.getPvalue(i)).append(sites.getFdr(i));
+                }
+                writer.endRow();
+                if ((i + 1) % DatabaseManager.COMMIT_COUNTS_PER_ONCE == 0) {
+                    databaseManager.commit();
+                }
+            }
+            writer.close();
+            databaseManager.commit();
+            databaseManager.setAutoCommit(true);
+
+            StringBuilder columns = new StringBuilder();
+            StringBuilder values = new StringBuilder();
+            for (String column : getColumnNames(sourceTable)) {
+                if (columns.length() != 0) {
+                    columns.append(",");
+                    values.append(",");
+                }
+                columns.append(column);
+                boolean changed = column.equalsIgnoreCase("alu") || (hasTestResults
+                    && (column.equalsIgnoreCase("level") || column.equalsIgnoreCase("pvalue")
+                    || column.equalsIgnoreCase("fdr")));
+                values.append(changed ? "k." : "r.").append(column);
+            }
+            databaseManager.executeSQL("insert ignore into " + tableName + "(" + columns + ") select " + values
+                + " from " + sourceTable + " r inner join " + keyTable + " k on r.chrom=k.chrom and r.pos=k.pos");
+        } finally {
+            databaseManager.executeSQL("drop temporary table if exists " + keyTable);
+        }
+        logger.info("End writing sites to " + tableName + "...\t" + Timer.getCurrentTime());
+    }
+
+    private List<String> getColumnNames(String tableName) throws SQLException {
+        return databaseManager.getColumnNames(DatabasePreferences.getInstance().getCurrentDatabase(), tableName);
+    }
+}
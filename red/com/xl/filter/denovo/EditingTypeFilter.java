@@ -20,7 +20,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.xl.database.DatabaseManager;
-import com.xl.filter.Filter;
+import com.xl.datatypes.sites.SiteColumns;
+import com.xl.filter.ColumnarFilter;
 import com.xl.utils.NegativeType;
 import com.xl.utils.Timer;
 
@@ -30,7 +31,7 @@ import com.xl.utils.Timer;
  * The Class EditingTypeFilter is a rule-based filter that user enables to select the type of RNA editing as his
  * preference.
  */
-public class EditingTypeFilter implements Filter {
+public class EditingTypeFilter implements ColumnarFilter {
     private final Logger logger = LoggerFactory.getLogger(EditingTypeFilter.class);
     public static final String PARAMS_REF = "ref";
 
@@ -56,16 +57,21 @@ public class EditingTypeFilter implements Filter {
         logger.info("Start executing Editing Type Filter..." + Timer.getCurrentTime());
         try {
             String refAlt = params.get(PARAMS_REF);
+            int editingCode = NegativeType.getEditingCode(refAlt);
             if (refAlt.equalsIgnoreCase("all")) {
                 StringBuilder stringBuilder = new StringBuilder();
-                stringBuilder.append("insert into ");
+                stringBuilder.append("insert ignore into ");
                 stringBuilder.append(currentTable);
                 stringBuilder.append(" select * from ");
                 stringBuilder.append(previousTable);
                 databaseManager.insertClause(stringBuilder.toString());
+            } else if (editingCode >= 0) {
+                // The editing code is shared by both strands and indexed, so both types are selected at once.
+                databaseManager.insertClause("insert ignore into " + currentTable + " select * from " + previousTable
+                    + " WHERE editing_code=" + editingCode);
             } else {
                 StringBuilder stringBuilder = new StringBuilder();
-                stringBuilder.append("insert into ");
+                stringBuilder.append("insert ignore into ");
                 stringBuilder.append(currentTable);
                 stringBuilder.append(" select * from ");
                 stringBuilder.append(previousTable);
@@ -79,7 +85,7 @@ public class EditingTypeFilter implements Filter {
 
                 String refAlt2 = NegativeType.getNegativeStrandEditingType(refAlt);
                 stringBuilder = new StringBuilder();
-                stringBuilder.append("insert into ");
+                stringBuilder.append("insert ignore into ");
                 stringBuilder.append(currentTable);
                 stringBuilder.append(" select * from ");
                 stringBuilder.append(previousTable);
@@ -97,6 +103,40 @@ public class EditingTypeFilter implements Filter {
         logger.info("End executing Editing Type Filter..." + Timer.getCurrentTime());
     }
 
+    @Override
+    public void performFilter(SiteColumns sites, Map<String, String> params) {
+        if (params == null || params.size() == 0) {
+            return;
+        }
+        String refAlt = params.get(PARAMS_REF);
+        if (refAlt.equalsIgnoreCase("all")) {
+            return;
+        }
+        logger.info("Start executing Editing Type Filter in memory..." + Timer.getCurrentTime());
+        // Bases are compared in upper case, as the database selects them by editing_code or without case.
+        refAlt = refAlt.toUpperCase();
+        int editingCode = NegativeType.getEditingCode(refAlt);
+        boolean[] keep = new boolean[sites.size()];
+        if (editingCode >= 0) {
+            for (int i = 0, len = sites.size(); i < len; i++) {
+                keep[i] = NegativeType.getEditingCode(sites.getRef(i), sites.getAlt(i)) == editingCode;
+            }
+        } else {
+            String refAlt2 = NegativeType.getNegativeStrandEditingType(refAlt);
+            char ref = refAlt.charAt(0);
+            char alt = refAlt.charAt(1);
+            char ref2 = refAlt2.charAt(0);
+            char alt2 = refAlt2.charAt(1);
+            for (int i = 0, len = sites.size(); i < len; i++) {
+                char siteRef = Character.toUpperCase(sites.getRef(i));
+                char siteAlt = Character.toUpperCase(sites.getAlt(i));
+                keep[i] = (siteRef == ref && siteAlt == alt) || (siteRef == ref2 && siteAlt == alt2);
+            }
+        }
+        sites.retain(keep);
+        logger.info("End executing Editing Type Filter in memory..." + Timer.getCurrentTime());
+    }
+
     @Override
     public String getName() {
         return DatabaseManager.EDITING_TYPE_FILTER_RESULT_TABLE_NAME;
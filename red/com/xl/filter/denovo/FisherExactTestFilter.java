@@ -15,8 +15,8 @@ package com.xl.filter.denovo;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -24,7 +24,10 @@ import net.sf.snver.pileup.util.math.FisherExact;
 import rcaller.RCaller;
 import rcaller.RCode;
 
+import com.xl.database.BatchWriter;
 import com.xl.database.DatabaseManager;
+import com.xl.database.Query;
+import com.xl.datatypes.sites.PositionSet;
 import com.xl.datatypes.sites.SiteBean;
 import com.xl.filter.Filter;
 import com.xl.utils.EmptyChecker;
@@ -56,45 +59,29 @@ public class FisherExactTestFilter implements Filter {
         String knownRnaEditingTable = DatabaseManager.KNOWN_RNA_EDITING_TABLE_NAME;
         try {
             char[] editingTypes = editingType.toCharArray();
-            ResultSet rs = databaseManager.query(refTable, null, "ref=? and alt=?", new String[]{editingTypes[0] + "", editingTypes[1] + ""});
+            ResultSet rs = databaseManager.query(refTable, null, "ref=? and alt=? and ref_count is not null", new String[]{editingTypes[0] + "", editingTypes[1] + ""});
             while (rs.next()) {
                 // 1.CHROM varchar(15),2.POS int,3.ID varchar(30),4.REF varchar(3),5.ALT varchar(5),6.QUAL
-                // float(8,2),7.FILTER text,8.INFO text,9.GT text, 10.AD text,11.DP text,12.GQ text,13.PL text,14.alu
-                // varchar(1)
+                // float(8,2),7.FILTER text,8.INFO text,9.GT text, 10.AD text,11.DP int,12.GQ int,13.PL text,14.alu
+                // varchar(1),15.ref_count int,16.alt_count int
                 PValueInfo info =
                         new PValueInfo(rs.getString(1), rs.getInt(2), rs.getString(3), rs.getString(4).charAt(0), rs
                                 .getString(5).charAt(0), rs.getFloat(6), rs.getString(7), rs.getString(8), rs.getString(9),
                                 rs.getString(10), rs.getString(11), rs.getString(12), rs.getString(13), rs.getString(14));
-                String[] sections = info.getAd().split("/");
-                info.refCount = Integer.parseInt(sections[0]);
-                info.altCount = Integer.parseInt(sections[1]);
+                info.setRefCount(rs.getInt("ref_count"));
+                info.setAltCount(rs.getInt("alt_count"));
                 valueInfos.add(info);
             }
             if (EmptyChecker.isEmptyList(valueInfos)) {
                 return valueInfos;
             }
 
-            StringBuilder stringBuilder = new StringBuilder("select ");
-            stringBuilder.append(refTable);
-            stringBuilder.append(".* from ");
-            stringBuilder.append(refTable);
-            stringBuilder.append(" INNER JOIN ");
-            stringBuilder.append(knownRnaEditingTable);
-            stringBuilder.append(" ON ");
-            stringBuilder.append(refTable).append(".chrom=").append(knownRnaEditingTable).append(".chrom AND ");
-            stringBuilder.append(refTable).append(".pos=").append(knownRnaEditingTable).append(".pos AND ");
-            stringBuilder.append("(").append(knownRnaEditingTable).append(".ref='").append(editingTypes[0]).append("' AND ")
-                    .append(knownRnaEditingTable).append(".alt='").append(editingTypes[1]).append("')");
-            // select refTable.* from refTable INNER JOIN pvalueTable ON refTable.chrom=pvalueTable.chrom and
-            // refTable.pos=pvalueTable.coordinate
-            rs = databaseManager.query(stringBuilder.toString());
-            while (rs.next()) {
-                for (PValueInfo info : valueInfos) {
-                    if (info.getChr().equals(rs.getString(1)) && info.getPos() == rs.getInt(2)) {
-                        info.setInDarnedDB(true);
-                        break;
-                    }
-                }
+            // Known sites of the same editing type are looked up in memory instead of joining the known RNA editing
+            // table with the previous table.
+            PositionSet knownSites = Query.queryPositions(knownRnaEditingTable, "ref=? and alt=?",
+                new String[]{editingTypes[0] + "", editingTypes[1] + ""});
+            for (PValueInfo info : valueInfos) {
+                info.setInDarnedDB(knownSites.contains(info.getChr(), info.getPos()));
             }
             return valueInfos;
 
@@ -123,32 +110,37 @@ public class FisherExactTestFilter implements Filter {
         int knownRef = 0;
         for (PValueInfo info : valueInfos) {
             if (info.isInDarnedDB) {
-                knownAlt += info.altCount;
-                knownRef += info.refCount;
+                knownAlt += info.getAltCount();
+                knownRef += info.getRefCount();
             } else {
-                knownRef += info.altCount + info.refCount;
+                knownRef += info.getAltCount() + info.getRefCount();
             }
         }
         knownAlt = Math.round(knownAlt / valueInfos.size());
         knownRef = Math.round(knownRef / valueInfos.size());
         FisherExact fisherExact = new FisherExact(1000);
-        DecimalFormat dF = new DecimalFormat("#.###");
-        for (PValueInfo pValueInfo : valueInfos) {
-            int altCount = pValueInfo.altCount;
-            int refCount = pValueInfo.refCount;
-            double pValue = fisherExact.getTwoTailedP(refCount, altCount, knownRef, knownAlt);
-            double level = (double) altCount / (altCount + refCount);
-            pValueInfo.setPValue(pValue);
-            pValueInfo.setLevel(level);
-            try {
-                databaseManager.executeSQL("insert into " + fetResultTable
-                    + "(chrom,pos,id,ref,alt,qual,filter,info,gt,ad,dp,gq,pl,alu,level,pvalue,fdr) values ("
-                    + pValueInfo.toString() + "," + dF.format(level) + "," + pValue + ",0.0)");
-            } catch (SQLException e) {
-                logger.error("Error execute sql clause in " + FisherExactTestFilter.class.getName()
-                        + ":executeFETFilter()", e);
-                return new ArrayList<PValueInfo>();
+        String[] columns = Arrays.copyOf(Query.SITE_BEAN_COLUMNS, Query.SITE_BEAN_COLUMNS.length + 3);
+        columns[columns.length - 3] = "level";
+        columns[columns.length - 2] = "pvalue";
+        columns[columns.length - 1] = "fdr";
+        try {
+            BatchWriter writer = databaseManager.createBatchInserter(fetResultTable, columns, true);
+            for (PValueInfo pValueInfo : valueInfos) {
+                int altCount = pValueInfo.getAltCount();
+                int refCount = pValueInfo.getRefCount();
+                double pValue = fisherExact.getTwoTailedP(refCount, altCount, knownRef, knownAlt);
+                double level = (double) altCount / (altCount + refCount);
+                pValueInfo.setPValue(pValue);
+                pValueInfo.setLevel(level);
+                Query.appendSiteBean(writer, pValueInfo);
+                // Keep three decimal places of the editing level.
+                writer.append(Math.round(level * 1000) / 1000.0).append(pValue).append(0.0).endRow();
             }
+            writer.close();
+        } catch (SQLException e) {
+            logger.error("Error execute sql clause in " + FisherExactTestFilter.class.getName()
+                    + ":executeFETFilter()", e);
+            return new ArrayList<PValueInfo>();
         }
         logger.info("End performing Fisher's Exact Test Filter for " + refAlt + "...\t" + Timer.getCurrentTime());
         return valueInfos;
@@ -220,16 +212,19 @@ public class FisherExactTestFilter implements Filter {
             results = caller.getParser().getAsDoubleArray("result");
             caller.deleteTempFiles();
         }
-        databaseManager.setAutoCommit(false);
         try {
+            databaseManager.setAutoCommit(false);
+            BatchWriter writer =
+                databaseManager.createBatchWriter("update " + currentTable + " set fdr=? where chrom=? and pos=?");
             for (int i = 0, len = results.length; i < len; i++) {
-                databaseManager.executeSQL("update " + currentTable + " set fdr=" + results[i] + " where chrom='"
-                        + pValueList.get(i).getChr() + "' " + "and pos=" + pValueList.get(i).getPos());
+                writer.append(results[i]).append(pValueList.get(i).getChr()).append(pValueList.get(i).getPos())
+                    .endRow();
             }
+            writer.close();
             databaseManager.commit();
             databaseManager.setAutoCommit(true);
             databaseManager.executeSQL("delete from " + currentTable + " where (pvalue > " + pvalueThreshold
-                    + ") || (fdr > " + fdrThreshold + ")");
+                    + ") or (fdr > " + fdrThreshold + ")");
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -246,8 +241,6 @@ public class FisherExactTestFilter implements Filter {
      */
     private class PValueInfo extends SiteBean {
         public boolean isInDarnedDB = false;
-        public int refCount = 0;
-        public int altCount = 0;
 
         public PValueInfo(String chr, int pos, String id, char ref, char alt, float qual, String filter, String info,
                           String gt, String ad, String dp, String gq, String pl, String alu) {
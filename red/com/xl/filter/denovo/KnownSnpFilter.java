@@ -13,18 +13,29 @@
 
 package com.xl.filter.denovo;
 
+import com.xl.database.BatchWriter;
 import com.xl.database.DatabaseManager;
-import com.xl.filter.Filter;
+import com.xl.database.Query;
+import com.xl.datatypes.reference.KnownSnpIndex;
+import com.xl.datatypes.sites.SiteBean;
+import com.xl.datatypes.sites.SiteColumns;
+import com.xl.filter.ColumnarFilter;
 import com.xl.utils.Timer;
 
+import java.io.File;
+import java.io.IOException;
 import java.sql.SQLException;
 import java.util.Map;
 
 /**
  * The Class KnownSnpFilter is a rule-based filter that will filter out the site which was known SNP in DNA level for
  * eliminating germline variants.
+ * <p/>
+ * Sites are looked up in the {@link KnownSnpIndex} of the imported dbSNP file. If the index is not available, e.g., the
+ * dbSNP table was loaded by an older version and its file has been moved, the positions are loaded from the table. If
+ * neither can be loaded, the filter fails in both the database and the in-memory mode.
  */
-public class KnownSnpFilter implements Filter {
+public class KnownSnpFilter implements ColumnarFilter {
     /**
      * The database manager.
      */
@@ -40,17 +51,76 @@ public class KnownSnpFilter implements Filter {
     @Override
     public void performFilter(String previousTable, String currentTable, Map<String, String> params) {
         logger.info("Start performing Known SNP Filter...\t" + Timer.getCurrentTime());
-        String dbSnpTable = DatabaseManager.DBSNP_DATABASE_TABLE_NAME;
+        final KnownSnpIndex snpIndex = getIndex();
         try {
-            databaseManager.executeSQL("insert into " + currentTable + " select * from " + previousTable
-                + " where not exists (select chrom from " + dbSnpTable + " where (" + dbSnpTable + ".chrom="
-                + previousTable + ".chrom and " + dbSnpTable + ".pos=" + previousTable + ".pos))");
+            databaseManager.setAutoCommit(false);
+            final BatchWriter writer = databaseManager.createBatchInserter(currentTable, Query.SITE_BEAN_COLUMNS, true);
+            Query.visitAllEditingInfo(previousTable, new Query.SiteBeanVisitor() {
+                private int count = 0;
+
+                @Override
+                public boolean visit(SiteBean site) throws SQLException {
+                    if (snpIndex.contains(site.getChr(), site.getPos())) {
+                        return true;
+                    }
+                    Query.appendSiteBean(writer, site);
+                    writer.endRow();
+                    if (++count % DatabaseManager.COMMIT_COUNTS_PER_ONCE == 0)
+                        databaseManager.commit();
+                    return true;
+                }
+            });
+            writer.close();
+            databaseManager.commit();
+            databaseManager.setAutoCommit(true);
         } catch (SQLException e) {
             logger.error("Error execute sql clause in" + KnownSnpFilter.class.getName() + ":performFilter()", e);
         }
         logger.info("End performing Known SNP Filter...\t" + Timer.getCurrentTime());
     }
 
+    @Override
+    public void performFilter(SiteColumns sites, Map<String, String> params) {
+        logger.info("Start performing Known SNP Filter in memory...\t" + Timer.getCurrentTime());
+        KnownSnpIndex snpIndex = getIndex();
+        boolean[] keep = new boolean[sites.size()];
+        for (int i = 0, len = sites.size(); i < len; i++) {
+            keep[i] = !snpIndex.contains(sites.getChromosome(i), sites.getPosition(i));
+        }
+        sites.retain(keep);
+        logger.info("End performing Known SNP Filter in memory...\t" + Timer.getCurrentTime());
+    }
+
+    /**
+     * Get the index of the imported dbSNP file. The filter fails if it can not be loaded, rather than keep all sites or
+     * none of them depending on where it runs.
+     *
+     * @return The index of the imported dbSNP file.
+     * @throws IllegalStateException if neither the dbSNP file nor the positions of the dbSNP table can be loaded.
+     */
+    private KnownSnpIndex getIndex() {
+        String dbSnpTable = DatabaseManager.DBSNP_DATABASE_TABLE_NAME;
+        String dataPath = databaseManager.getImportedFilePath(dbSnpTable);
+        try {
+            if (dataPath != null && new File(dataPath).isFile()) {
+                return KnownSnpIndex.getInstance(dataPath);
+            }
+            // The positions were loaded into the table by an older version, and the file has been moved since. This
+            // version leaves the table empty, so the file must be imported again.
+            logger.warn("dbSNP file " + dataPath + " is not found, load positions from " + dbSnpTable + " instead.");
+            KnownSnpIndex index = KnownSnpIndex.load(dbSnpTable);
+            if (index.size() == 0) {
+                throw new IllegalStateException("dbSNP file " + dataPath + " is not found and " + dbSnpTable
+                    + " has no positions, please import the dbSNP file again.");
+            }
+            return index;
+        } catch (IOException e) {
+            throw new IllegalStateException("Error load dbSNP index of " + dataPath, e);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Error load dbSNP positions from " + dbSnpTable, e);
+        }
+    }
+
     @Override
     public String getName() {
         return DatabaseManager.DBSNP_FILTER_RESULT_TABLE_NAME;
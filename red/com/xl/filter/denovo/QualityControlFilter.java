@@ -13,22 +13,19 @@
 
 package com.xl.filter.denovo;
 
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
 
 import com.xl.database.DatabaseManager;
-import com.xl.datatypes.sites.SiteBean;
-import com.xl.filter.Filter;
+import com.xl.datatypes.sites.SiteColumns;
+import com.xl.filter.ColumnarFilter;
 import com.xl.utils.Timer;
 
 /**
  * The Class QualityControlFilter is a rule-based filter to filter RNA editing sites by their quality and coverage of
  * depth.
  */
-public class QualityControlFilter implements Filter {
+public class QualityControlFilter implements ColumnarFilter {
     public static final String PARAMS_STRING_QUALITY = "quality";
     public static final String PARAMS_INT_DEPTH = "depth";
     /**
@@ -52,44 +49,40 @@ public class QualityControlFilter implements Filter {
             throw new IllegalArgumentException(
                 "Args " + params.toString() + " for Quality Control Filter are incomplete, please have a check");
         }
-        String quality = params.get(PARAMS_STRING_QUALITY);
+        double quality = Double.parseDouble(params.get(PARAMS_STRING_QUALITY));
         int depth = Integer.parseInt(params.get(PARAMS_INT_DEPTH));
         logger.info("Start performing Quality Control Filter...\t" + Timer.getCurrentTime());
         try {
-            int count = 0;
-            ResultSet rs = databaseManager.query(previousTable, new String[] { "chrom", "pos", "AD" }, null, null);
-            List<SiteBean> siteBeans = new ArrayList<SiteBean>();
-            while (rs.next()) {
-                if (rs.getString(3) != null) {
-                    SiteBean siteBean = new SiteBean(rs.getString(1), rs.getInt(2));
-                    siteBean.setAd(rs.getString(3));
-                    siteBeans.add(siteBean);
-                }
-            }
-            databaseManager.setAutoCommit(false);
-            for (SiteBean siteBean : siteBeans) {
-                String[] sections = siteBean.getAd().split("/");
-                int ref_n = Integer.parseInt(sections[0]);
-                int alt_n = Integer.parseInt(sections[1]);
-                if (ref_n + alt_n >= depth) {
-                    // databaseManager.executeSQL("insert into " + currentTable + " (select * from " + previousTable
-                    // + " where filter='PASS' and pos=" + siteBean.getPos() + " and qual >=" + quality
-                    // + " and chrom='" + siteBean.getChr() + "')");
-                    databaseManager
-                        .executeSQL("insert into " + currentTable + " (select * from " + previousTable + " where pos="
-                            + siteBean.getPos() + " and qual >=" + quality + " and chrom='" + siteBean.getChr() + "')");
-                    if (++count % DatabaseManager.COMMIT_COUNTS_PER_ONCE == 0)
-                        databaseManager.commit();
-                }
-            }
-            databaseManager.commit();
-            databaseManager.setAutoCommit(true);
+            // The total depth is computed at import, so both thresholds are checked in one set-based statement instead
+            // of a lookup and an insert for each site. The index scans the depth range and filters it by quality.
+            databaseManager.executeSQL("insert ignore into " + currentTable + " select * from " + previousTable
+                + " where total_depth>=" + depth + " and qual>=" + quality);
         } catch (SQLException e) {
             logger.error("Error execute sql clause in " + QualityControlFilter.class.getName() + ":performFilter()", e);
         }
         logger.info("End performing Quality Control Filter...\t" + Timer.getCurrentTime());
     }
 
+    @Override
+    public void performFilter(SiteColumns sites, Map<String, String> params) {
+        if (params == null || params.size() == 0) {
+            return;
+        } else if (params.size() != 2) {
+            throw new IllegalArgumentException(
+                "Args " + params.toString() + " for Quality Control Filter are incomplete, please have a check");
+        }
+        double quality = Double.parseDouble(params.get(PARAMS_STRING_QUALITY));
+        int depth = Integer.parseInt(params.get(PARAMS_INT_DEPTH));
+        logger.info("Start performing Quality Control Filter in memory...\t" + Timer.getCurrentTime());
+        boolean[] keep = new boolean[sites.size()];
+        for (int i = 0, len = sites.size(); i < len; i++) {
+            int refCount = sites.getRefCount(i);
+            keep[i] = refCount >= 0 && refCount + sites.getAltCount(i) >= depth && sites.getQual(i) >= quality;
+        }
+        sites.retain(keep);
+        logger.info("End performing Quality Control Filter in memory...\t" + Timer.getCurrentTime());
+    }
+
     @Override
     public String getName() {
         return DatabaseManager.QC_FILTER_RESULT_TABLE_NAME;
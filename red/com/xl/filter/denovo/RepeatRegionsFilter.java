@@ -46,19 +46,20 @@ public class RepeatRegionsFilter implements Filter {
         String repeatTable = DatabaseManager.REPEAT_MASKER_TABLE_NAME;
         try {
             databaseManager.executeSQL(
-                "insert into " + currentTable + " select * from " + previousTable + " where not exists (select * from "
-                    + repeatTable + " where (" + repeatTable + ".chrom=" + previousTable + ".chrom and " + repeatTable
-                    + ".begin<=" + previousTable + ".pos and " + repeatTable + ".end>=" + previousTable + ".pos)) ");
+                "insert ignore into " + currentTable + " select * from " + previousTable
+                    + " where not exists (select * from " + repeatTable + " where (" + repeatTable + ".chrom="
+                    + previousTable + ".chrom and " + repeatTable + ".begin<=" + previousTable + ".pos and "
+                    + repeatTable + ".end>=" + previousTable + ".pos)) ");
 
             logger.info("Start finding sites in Alu Regions...\t" + Timer.getCurrentTime());
             String tempTable = RandomStringGenerator.createRandomString(10);
             databaseManager.executeSQL("create temporary table " + tempTable + " like " + currentTable);
-            databaseManager.executeSQL("insert into " + tempTable + " select * from " + previousTable
+            databaseManager.executeSQL("insert ignore into " + tempTable + " select * from " + previousTable
                 + " where exists (select chrom from " + repeatTable + " where " + repeatTable + ".chrom = "
                 + previousTable + ".chrom and " + repeatTable + ".begin<=" + previousTable + ".pos and " + repeatTable
                 + ".end>=" + previousTable + ".pos and " + repeatTable + ".type='SINE/Alu')");
             databaseManager.executeSQL("update " + tempTable + " set alu = 'T'");
-            databaseManager.executeSQL("insert into " + currentTable + " select * from " + tempTable);
+            databaseManager.executeSQL("insert ignore into " + currentTable + " select * from " + tempTable);
             databaseManager.deleteTable(tempTable);
             logger.info("End finding sites in Alu Regions...\t" + Timer.getCurrentTime());
 
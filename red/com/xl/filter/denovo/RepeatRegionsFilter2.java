@@ -13,26 +13,27 @@
 
 package com.xl.filter.denovo;
 
+import com.xl.database.BatchWriter;
 import com.xl.database.DatabaseManager;
 import com.xl.database.Query;
+import com.xl.datatypes.reference.RepeatIntervalIndex;
 import com.xl.datatypes.sites.SiteBean;
-import com.xl.filter.Filter;
-import com.xl.utils.RandomStringGenerator;
+import com.xl.datatypes.sites.SiteColumns;
+import com.xl.filter.ColumnarFilter;
 import com.xl.utils.Timer;
 
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
-import java.util.Vector;
 
 /**
  * The Class RepeatRegionsFilter is a rule-based filter. Variants that were within repeat regions were excluded.
  * However, sites in SINE/Alu regions were remained since A-I RNA editing is pervasive in Alu repeats and it has been
  * implicated in human diseases such as breast cancer and Ewing's sarcoma.
+ * <p/>
+ * Sites are classified by {@link RepeatIntervalIndex}, which keeps the repeat regions in memory, so no query is sent
+ * for each site.
  */
-public class RepeatRegionsFilter2 implements Filter {
+public class RepeatRegionsFilter2 implements ColumnarFilter {
     /**
      * The database manager.
      */
@@ -46,47 +47,30 @@ public class RepeatRegionsFilter2 implements Filter {
     @Override
     public void performFilter(String previousTable, String currentTable, Map<String, String> params) {
         logger.info("Start performing Repeat Regions Filter...\t" + Timer.getCurrentTime());
-        String repeatTable = DatabaseManager.REPEAT_MASKER_TABLE_NAME;
-        List<SiteBean> repeatRegionSites = new ArrayList<SiteBean>();
-        List<SiteBean> nonRepeatRegionSites = new ArrayList<SiteBean>();
-        List<SiteBean> aluRegionSites = new ArrayList<SiteBean>();
+        final RepeatIntervalIndex repeatIndex = getIndex();
         try {
-            int count = 0;
-            Vector<SiteBean> sites = Query.queryAllEditingInfo(previousTable);
-            for (SiteBean site : sites) {
-                if (inRepeatRegion(site, repeatTable)) {
-                    repeatRegionSites.add(site);
-                } else {
-                    nonRepeatRegionSites.add(site);
-                }
-            }
+            databaseManager.setAutoCommit(false);
+            final BatchWriter writer = databaseManager.createBatchInserter(currentTable, Query.SITE_BEAN_COLUMNS, true);
+            // Sites are streamed from the previous table, so the filter runs at constant memory.
+            Query.visitAllEditingInfo(previousTable, new Query.SiteBeanVisitor() {
+                private int count = 0;
 
-            String tempTable = RandomStringGenerator.createRandomString(10);
-            databaseManager.executeSQL("create temporary table " + tempTable + " like " + repeatTable);
-            databaseManager
-                .executeSQL("insert into " + tempTable + " select * from " + repeatTable + " where type='SINE/Alu'");
-            for (SiteBean site : repeatRegionSites) {
-                if (inRepeatRegion(site, tempTable)) {
-                    site.setIsAlu("T");
-                    aluRegionSites.add(site);
+                @Override
+                public boolean visit(SiteBean site) throws SQLException {
+                    int type = repeatIndex.classify(site.getChr(), site.getPos());
+                    if (type == RepeatIntervalIndex.REPEAT) {
+                        return true;
+                    } else if (type == RepeatIntervalIndex.ALU) {
+                        site.setIsAlu("T");
+                    }
+                    Query.appendSiteBean(writer, site);
+                    writer.endRow();
+                    if (++count % DatabaseManager.COMMIT_COUNTS_PER_ONCE == 0)
+                        databaseManager.commit();
+                    return true;
                 }
-            }
-
-            databaseManager.setAutoCommit(false);
-            for (SiteBean site : nonRepeatRegionSites) {
-                databaseManager.executeSQL(
-                    "insert into " + currentTable + "(chrom,pos,id,ref,alt,qual,filter,info,gt,ad,dp,gq,pl,alu) "
-                        + "values( " + site.toString() + ")");
-                if (++count % DatabaseManager.COMMIT_COUNTS_PER_ONCE == 0)
-                    databaseManager.commit();
-            }
-            for (SiteBean site : aluRegionSites) {
-                databaseManager.executeSQL(
-                    "insert into " + currentTable + "(chrom,pos,id,ref,alt,qual,filter,info,gt,ad,dp,gq,pl,alu) "
-                        + "values( " + site.toString() + ")");
-                if (++count % DatabaseManager.COMMIT_COUNTS_PER_ONCE == 0)
-                    databaseManager.commit();
-            }
+            });
+            writer.close();
             databaseManager.commit();
             databaseManager.setAutoCommit(true);
         } catch (SQLException e) {
@@ -96,15 +80,35 @@ public class RepeatRegionsFilter2 implements Filter {
     }
 
     @Override
-    public String getName() {
-        return DatabaseManager.REPEAT_FILTER_RESULT_TABLE_NAME;
+    public void performFilter(SiteColumns sites, Map<String, String> params) {
+        logger.info("Start performing Repeat Regions Filter in memory...\t" + Timer.getCurrentTime());
+        RepeatIntervalIndex repeatIndex = getIndex();
+        boolean[] keep = new boolean[sites.size()];
+        for (int i = 0, len = sites.size(); i < len; i++) {
+            int type = repeatIndex.classify(sites.getChromosome(i), sites.getPosition(i));
+            keep[i] = type != RepeatIntervalIndex.REPEAT;
+            if (type == RepeatIntervalIndex.ALU) {
+                sites.setAlu(i, 'T');
+            }
+        }
+        sites.retain(keep);
+        logger.info("End performing Repeat Regions Filter in memory...\t" + Timer.getCurrentTime());
     }
 
-    private boolean inRepeatRegion(SiteBean site, String repeatTable) throws SQLException {
-        // select begin from repeatTable limit 1 where site.chrom=repeatTable.chrom and site.pos<=repeatTable.end;
-        ResultSet rs = databaseManager.query("select begin from " + repeatTable + " where chrom='" + site.getChr()
-            + "' and end>=" + site.getPos() + " limit 1");
-        int begin = rs != null && rs.next() ? rs.getInt(1) : Integer.MAX_VALUE;
-        return site.getPos() >= begin;
+    /**
+     * @return The index of the repeat regions, which is needed in both modes, so an error loading it stops the run.
+     */
+    private RepeatIntervalIndex getIndex() {
+        try {
+            return RepeatIntervalIndex.getInstance();
+        } catch (SQLException e) {
+            throw new IllegalStateException(
+                "Error load repeat regions in " + RepeatRegionsFilter2.class.getName() + ":performFilter()", e);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return DatabaseManager.REPEAT_FILTER_RESULT_TABLE_NAME;
     }
 }
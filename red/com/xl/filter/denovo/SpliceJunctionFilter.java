@@ -54,7 +54,7 @@ public class SpliceJunctionFilter implements Filter {
             //insert into currentTable select * from previousTable where not exist (select chrom from splice_junction where ( splice_junction.type='CDS' and
             //splice_junction.chrom=previousTable.chrom and ((splice_junction.begin-edge<previousTable.pos and splice_junction.begin+edge>previousTable.pos)
             //or (splice_junction.end<previousTable.pos+edge and splice_junction.end>previousTable.pos-edge))))
-            databaseManager.executeSQL("insert into " + currentTable + " select * from " + previousTable
+            databaseManager.executeSQL("insert ignore into " + currentTable + " select * from " + previousTable
                     + " where not exists (select chrom from " + spliceJunctionTable + " where (" + spliceJunctionTable
                     + ".type='CDS' and " + spliceJunctionTable + ".chrom=" + previousTable + ".chrom" + " and (("
                     + spliceJunctionTable + ".begin<" + previousTable + ".pos+" + edge + " and " + spliceJunctionTable
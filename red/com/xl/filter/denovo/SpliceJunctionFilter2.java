@@ -13,24 +13,26 @@
 
 package com.xl.filter.denovo;
 
+import com.xl.database.BatchWriter;
 import com.xl.database.DatabaseManager;
 import com.xl.database.Query;
+import com.xl.datatypes.reference.SpliceBoundaryIndex;
 import com.xl.datatypes.sites.SiteBean;
-import com.xl.filter.Filter;
+import com.xl.datatypes.sites.SiteColumns;
+import com.xl.filter.ColumnarFilter;
 import com.xl.utils.Timer;
 
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
-import java.util.Vector;
 
 /**
  * The Class SpliceJunctionFilter is a rule-based filter. Variants that were within+/-k bp (e.g., k = 2) of the splice
  * junction, which were supposed to be unreliable, were excluded based on the gene annotation file.
+ * <p/>
+ * Sites are checked by {@link SpliceBoundaryIndex}, which keeps the boundaries of CDS exons in memory, so no query is
+ * sent for each site.
  */
-public class SpliceJunctionFilter2 implements Filter {
+public class SpliceJunctionFilter2 implements ColumnarFilter {
     public static final String PARAMS_INT_EDGE = "edge";
     /**
      * The database manager.
@@ -54,30 +56,28 @@ public class SpliceJunctionFilter2 implements Filter {
                 "Args " + params.toString() + " for Splice Junction Filter are incomplete, please have a check");
         }
         logger.info("Start performing Splice Junction Filter...\t" + Timer.getCurrentTime());
-        String spliceJunctionTable = DatabaseManager.SPLICE_JUNCTION_TABLE_NAME;
-        int edge = Integer.parseInt(params.get(PARAMS_INT_EDGE));
-        List<SiteBean> spliceJunctionSites = new ArrayList<SiteBean>();
+        final int edge = Integer.parseInt(params.get(PARAMS_INT_EDGE));
+        final SpliceBoundaryIndex boundaryIndex = getIndex();
         try {
-            // insert into currentTable select * from previousTable where not exist (select chrom from splice_junction
-            // where ( splice_junction.type='CDS' and
-            // splice_junction.chrom=previousTable.chrom and ((splice_junction.begin-edge<previousTable.pos and
-            // splice_junction.begin+edge>previousTable.pos)
-            // or (splice_junction.end<previousTable.pos+edge and splice_junction.end>previousTable.pos-edge))))
-            int count = 0;
-            Vector<SiteBean> sites = Query.queryAllEditingInfo(previousTable);
-            for (SiteBean site : sites) {
-                if (!inSpliceJunction(site, spliceJunctionTable, edge)) {
-                    spliceJunctionSites.add(site);
-                }
-            }
             databaseManager.setAutoCommit(false);
-            for (SiteBean site : spliceJunctionSites) {
-                databaseManager.executeSQL(
-                    "insert into " + currentTable + "(chrom,pos,id,ref,alt,qual,filter,info,gt,ad,dp,gq,pl,alu) "
-                        + "values( " + site.toString() + ")");
-                if (++count % DatabaseManager.COMMIT_COUNTS_PER_ONCE == 0)
-                    databaseManager.commit();
-            }
+            final BatchWriter writer = databaseManager.createBatchInserter(currentTable, Query.SITE_BEAN_COLUMNS, true);
+            // Sites are streamed from the previous table, so the filter runs at constant memory.
+            Query.visitAllEditingInfo(previousTable, new Query.SiteBeanVisitor() {
+                private int count = 0;
+
+                @Override
+                public boolean visit(SiteBean site) throws SQLException {
+                    if (boundaryIndex.isNearBoundary(site.getChr(), site.getPos(), edge)) {
+                        return true;
+                    }
+                    Query.appendSiteBean(writer, site);
+                    writer.endRow();
+                    if (++count % DatabaseManager.COMMIT_COUNTS_PER_ONCE == 0)
+                        databaseManager.commit();
+                    return true;
+                }
+            });
+            writer.close();
             databaseManager.commit();
             databaseManager.setAutoCommit(true);
         } catch (SQLException e) {
@@ -86,20 +86,35 @@ public class SpliceJunctionFilter2 implements Filter {
         logger.info("End performing Splice Junction Filter...\t" + Timer.getCurrentTime());
     }
 
-    private boolean inSpliceJunction(SiteBean site, String spliceJunctionTable, int edge) throws SQLException {
-        // select begin from spliceJunctionTable limit 1 where site.chrom=spliceJunctionTable.chrom and
-        // site.pos<=spliceJunctionTable.end;
-        ResultSet rs = databaseManager.query("select begin,end,type from " + spliceJunctionTable + " where chrom='"
-            + site.getChr() + "' and end>=" + site.getPos() + " limit 1");
-        int pos = site.getPos();
-        if (rs != null && rs.next()) {
-            int begin = rs.getInt(1);
-            int end = rs.getInt(2);
-            String type = rs.getString(3);
-            return type.equals("SINE/Alu")
-                && ((pos > begin - edge && pos < begin + edge) || (pos > end - edge && pos < end + edge));
+    @Override
+    public void performFilter(SiteColumns sites, Map<String, String> params) {
+        if (params == null || params.size() == 0) {
+            return;
+        } else if (params.size() != 1) {
+            throw new IllegalArgumentException(
+                "Args " + params.toString() + " for Splice Junction Filter are incomplete, please have a check");
+        }
+        int edge = Integer.parseInt(params.get(PARAMS_INT_EDGE));
+        logger.info("Start performing Splice Junction Filter in memory...\t" + Timer.getCurrentTime());
+        SpliceBoundaryIndex boundaryIndex = getIndex();
+        boolean[] keep = new boolean[sites.size()];
+        for (int i = 0, len = sites.size(); i < len; i++) {
+            keep[i] = !boundaryIndex.isNearBoundary(sites.getChromosome(i), sites.getPosition(i), edge);
+        }
+        sites.retain(keep);
+        logger.info("End performing Splice Junction Filter in memory...\t" + Timer.getCurrentTime());
+    }
+
+    /**
+     * @return The index of the splice junctions, which is needed in both modes, so an error loading it stops the run.
+     */
+    private SpliceBoundaryIndex getIndex() {
+        try {
+            return SpliceBoundaryIndex.getInstance();
+        } catch (SQLException e) {
+            throw new IllegalStateException(
+                "Error load splice junctions in " + SpliceJunctionFilter2.class.getName() + ":performFilter()", e);
         }
-        return false;
     }
 
     @Override
@@ -13,8 +13,13 @@
 
 package com.xl.filter.dnarna;
 
+import com.xl.database.BatchWriter;
 import com.xl.database.DatabaseManager;
-import com.xl.filter.Filter;
+import com.xl.database.Query;
+import com.xl.datatypes.sites.PositionSet;
+import com.xl.datatypes.sites.SiteBean;
+import com.xl.datatypes.sites.SiteColumns;
+import com.xl.filter.ColumnarFilter;
 import com.xl.utils.NegativeType;
 import com.xl.utils.Timer;
 
@@ -25,7 +30,7 @@ import java.util.Map;
  * The Class DnaRnaFilter is a rule-based filter. RNA-seq variants where its counterparts in genomic DNA is not
  * reference homozygote (e.g., AA) would be excluded if DNA sequencing data is available.
  */
-public class DnaRnaFilter implements Filter {
+public class DnaRnaFilter implements ColumnarFilter {
     public static final String PARAMS_STRING_DNA_VCF_TABLE = "dnavcf";
     public static final String PARAMS_STRING_EDITING_TYPE = "editingtype";
     /**
@@ -36,6 +41,9 @@ public class DnaRnaFilter implements Filter {
     /**
      * Perform DNA-RNA filter. RNA-seq variants where its counterparts in genomic DNA is not reference homozygote (e.g.,
      * AA) would be excluded if DNA sequencing data is available.
+     * <p/>
+     * The positions of the DNA VCF table and the known RNA editing table are loaded into {@link PositionSet}s, and the
+     * sites of the previous table are streamed once, each of which is kept if either set has it.
      *
      * @param previousTable The previous table
      * @param currentTable  The result table
@@ -44,52 +52,118 @@ public class DnaRnaFilter implements Filter {
     public void performFilter(String previousTable, String currentTable, Map<String, String> params) {
         if (params == null || params.size() == 0) {
             return;
-        } else if (params.size() != 2) {
+        }
+        logger.info("Start performing DNA-RNA Filter...\t" + Timer.getCurrentTime());
+        final SiteMatcher matcher = loadMatcher(params);
+        if (matcher == null) {
+            return;
+        }
+        try {
+            databaseManager.setAutoCommit(false);
+            final BatchWriter writer = databaseManager.createBatchInserter(currentTable, Query.SITE_BEAN_COLUMNS, true);
+            Query.visitAllEditingInfo(previousTable, new Query.SiteBeanVisitor() {
+                private int count = 0;
+
+                @Override
+                public boolean visit(SiteBean site) throws SQLException {
+                    if (!matcher.matches(site.getChr(), site.getPos())) {
+                        return true;
+                    }
+                    Query.appendSiteBean(writer, site);
+                    writer.endRow();
+                    if (++count % DatabaseManager.COMMIT_COUNTS_PER_ONCE == 0)
+                        databaseManager.commit();
+                    return true;
+                }
+            });
+            writer.close();
+            databaseManager.commit();
+            databaseManager.setAutoCommit(true);
+        } catch (SQLException e) {
+            logger.error("Error execute sql clause in " + DnaRnaFilter.class.getName() + ":performFilter()", e);
+        }
+        logger.info("End performing DNA-RNA Filter...\t" + Timer.getCurrentTime());
+    }
+
+    @Override
+    public void performFilter(SiteColumns sites, Map<String, String> params) {
+        if (params == null || params.size() == 0) {
+            return;
+        }
+        logger.info("Start performing DNA-RNA Filter in memory...\t" + Timer.getCurrentTime());
+        SiteMatcher matcher = loadMatcher(params);
+        if (matcher == null) {
+            return;
+        }
+        boolean[] keep = new boolean[sites.size()];
+        for (int i = 0, len = sites.size(); i < len; i++) {
+            keep[i] = matcher.matches(sites.getChromosome(i), sites.getPosition(i));
+        }
+        sites.retain(keep);
+        logger.info("End performing DNA-RNA Filter in memory...\t" + Timer.getCurrentTime());
+    }
+
+    /**
+     * Load the positions of the DNA VCF table and the known RNA editing table.
+     *
+     * @return The matcher of both tables, or null if they can not be loaded.
+     */
+    private SiteMatcher loadMatcher(Map<String, String> params) {
+        if (params.size() != 2) {
             throw new IllegalArgumentException("Args " + params.toString()
                     + " for DNA-RNA Filter are incomplete, please have a check");
         }
-        logger.info("Start performing DNA-RNA Filter...\t" + Timer.getCurrentTime());
         String dnaVcfTable = params.get(PARAMS_STRING_DNA_VCF_TABLE);
-        String editingType = params.get(PARAMS_STRING_EDITING_TYPE);
+        // Bases are compared in upper case, as MySQL compares them without case.
+        String editingType = params.get(PARAMS_STRING_EDITING_TYPE).toUpperCase();
         String knownRnaEditingTable = DatabaseManager.KNOWN_RNA_EDITING_TABLE_NAME;
-
-        /**
-         * chrom | coordinate | strand | inchr | inrna
-         */
         try {
             logger.info("Start selecting data from DNA VCF table...\t" + Timer.getCurrentTime());
-            if (editingType.equalsIgnoreCase("all")) {
-                databaseManager.executeSQL("insert into " + currentTable + " select * from " + previousTable
-                        + " where exists (select chrom from " + dnaVcfTable + " where (" + dnaVcfTable + ".chrom="
-                        + previousTable + ".chrom and " + dnaVcfTable + ".pos=" + previousTable + ".pos))");
-
-                databaseManager.executeSQL("insert into " + currentTable + " select * from " + previousTable
-                        + " where exists (select chrom from " + knownRnaEditingTable + " where (" + knownRnaEditingTable + ".chrom="
-                        + previousTable + ".chrom and " + knownRnaEditingTable + ".pos=" + previousTable + ".pos))");
-            } else {
-                String negativeType = NegativeType.getNegativeStrandEditingType(editingType);
-
-                databaseManager.executeSQL("insert into " + currentTable + " select * from " + previousTable
-                        + " where exists (select chrom from " + dnaVcfTable + " where (" + dnaVcfTable + ".chrom="
-                        + previousTable + ".chrom and " + dnaVcfTable + ".pos=" + previousTable + ".pos and (" + dnaVcfTable
-                        + ".ref='" + editingType.charAt(0) + "' or  " + dnaVcfTable + ".ref='" + negativeType.charAt(0)
-                        + "')))");
-
-                databaseManager.executeSQL("insert into " + currentTable + " select * from " + previousTable
-                        + " where exists (select chrom from " + knownRnaEditingTable + " where (" + knownRnaEditingTable + ".chrom="
-                        + previousTable + ".chrom and " + knownRnaEditingTable + ".pos=" + previousTable + ".pos and ("
-                        + knownRnaEditingTable + ".ref='" + editingType.charAt(0) + "' or  " + knownRnaEditingTable + ".ref='"
-                        + negativeType.charAt(0) + "')))");
-            }
+            PositionSet dnaSites = Query.queryPositions(dnaVcfTable, null, null);
+            // Known RNA editing sites are optional.
+            PositionSet knownSites = databaseManager.existTable(knownRnaEditingTable) ? Query.queryPositions(
+                knownRnaEditingTable, null, null) : new PositionSet();
             logger.info("End selecting data from DNA VCF table...\t" + Timer.getCurrentTime());
+            return new SiteMatcher(dnaSites, knownSites, editingType);
         } catch (SQLException e) {
-            logger.error("Error execute sql clause in " + DnaRnaFilter.class.getName() + ":performFilter()", e);
+            logger.error("Error execute sql clause in " + DnaRnaFilter.class.getName() + ":loadMatcher()", e);
+            return null;
         }
-        logger.info("End performing DNA-RNA Filter...\t" + Timer.getCurrentTime());
     }
 
     @Override
     public String getName() {
         return DatabaseManager.DNA_RNA_FILTER_RESULT_TABLE_NAME;
     }
+
+    /**
+     * Tell whether a site is in the DNA VCF table or the known RNA editing table. Unless all editing types are accepted,
+     * the reference base there must be the one of the editing type on either strand.
+     */
+    private static class SiteMatcher {
+        private final PositionSet dnaSites;
+        private final PositionSet knownSites;
+        private final boolean anyBase;
+        private final char ref;
+        private final char negativeRef;
+
+        private SiteMatcher(PositionSet dnaSites, PositionSet knownSites, String editingType) {
+            this.dnaSites = dnaSites;
+            this.knownSites = knownSites;
+            this.anyBase = editingType.equalsIgnoreCase("all");
+            this.ref = editingType.charAt(0);
+            this.negativeRef = anyBase ? ref : NegativeType.getNegativeStrandEditingType(editingType).charAt(0);
+        }
+
+        private boolean matches(String chrom, int pos) {
+            return matches(dnaSites, chrom, pos) || matches(knownSites, chrom, pos);
+        }
+
+        private boolean matches(PositionSet sites, String chrom, int pos) {
+            if (anyBase) {
+                return sites.contains(chrom, pos);
+            }
+            return sites.contains(chrom, pos, ref) || sites.contains(chrom, pos, negativeRef);
+        }
+    }
 }
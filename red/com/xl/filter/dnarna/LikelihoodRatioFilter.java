@@ -58,38 +58,33 @@ public class LikelihoodRatioFilter implements Filter {
         double threshold = Double.parseDouble(params.get(PARAMS_DOUBLE_LLR_THRESHOLD));
         logger.info("Start performing Likelihood Rate Test Filter...\t" + Timer.getCurrentTime());
         try {
-            ResultSet rs = databaseManager
-                .query("select " + previousTable + ".chrom," + previousTable + ".pos," + previousTable + ".AD," + ""
-                    + dnaVcfTable + ".qual from " + previousTable + "," + dnaVcfTable + " WHERE " + previousTable
-                    + ".chrom=" + dnaVcfTable + ".chrom AND " + previousTable + ".pos=" + dnaVcfTable + ".pos");
+            ResultSet rs = databaseManager.query("select " + previousTable + ".chrom," + previousTable + ".pos,"
+                + previousTable + ".ref_count," + previousTable + ".alt_count," + dnaVcfTable + ".qual from "
+                + previousTable + "," + dnaVcfTable + " WHERE " + previousTable + ".chrom=" + dnaVcfTable
+                + ".chrom AND " + previousTable + ".pos=" + dnaVcfTable + ".pos AND " + previousTable
+                + ".total_depth>0");
             List<SiteBean> siteBeans = new ArrayList<SiteBean>();
             while (rs.next()) {
-                String chr = rs.getString(1);
-                int pos = rs.getInt(2);
-                String ad = rs.getString(3);
-                float qual = rs.getFloat(4);
-                SiteBean pb = new SiteBean(chr, pos);
-                pb.setAd(ad);
-                pb.setQual(qual);
+                SiteBean pb = new SiteBean(rs.getString(1), rs.getInt(2));
+                pb.setRefCount(rs.getInt(3));
+                pb.setAltCount(rs.getInt(4));
+                pb.setQual(rs.getFloat(5));
                 siteBeans.add(pb);
             }
             databaseManager.setAutoCommit(false);
             int count = 0;
             for (SiteBean siteBean : siteBeans) {
-                String[] section = siteBean.getAd().split("/");
-                int ref = Integer.parseInt(section[0]);
-                int alt = Integer.parseInt(section[1]);
-                if (ref + alt > 0) {
-                    double f_ml = 1.0 * ref / (ref + alt);
-                    double y = Math.pow(f_ml, ref) * Math.pow(1 - f_ml, alt);
-                    y = Math.log(y) / Math.log(10.0);
-                    double judge = y + siteBean.getQual() / 10.0;
-                    if (judge >= threshold) {
-                        databaseManager.insertClause("insert into " + currentTable + " select * from " + previousTable
-                            + " where chrom='" + siteBean.getChr() + "' and pos=" + siteBean.getPos());
-                        if (++count % DatabaseManager.COMMIT_COUNTS_PER_ONCE == 0) {
-                            databaseManager.commit();
-                        }
+                int ref = siteBean.getRefCount();
+                int alt = siteBean.getAltCount();
+                double f_ml = 1.0 * ref / (ref + alt);
+                double y = Math.pow(f_ml, ref) * Math.pow(1 - f_ml, alt);
+                y = Math.log(y) / Math.log(10.0);
+                double judge = y + siteBean.getQual() / 10.0;
+                if (judge >= threshold) {
+                    databaseManager.insertClause("insert ignore into " + currentTable + " select * from "
+                        + previousTable + " where chrom='" + siteBean.getChr() + "' and pos=" + siteBean.getPos());
+                    if (++count % DatabaseManager.COMMIT_COUNTS_PER_ONCE == 0) {
+                        databaseManager.commit();
                     }
                 }
             }
@@ -225,6 +225,8 @@ abstract class AbstractFilterPanel implements Runnable, Cancellable {
         } catch (SQLException e) {
             logger.error("Unable to generate the site list.", e);
             progressExceptionReceived(e);
+        } finally {
+            databaseManager.releaseConnection();
         }
     }
 
@@ -85,7 +85,6 @@ public class DnaRnaFilterPanel extends AbstractFilterPanel {
             sampleName + "_" + DatabaseManager.DNA_VCF_RESULT_TABLE_NAME);
         params.put(DnaRnaFilter.PARAMS_STRING_EDITING_TYPE, "AG");
         filter.performFilter(parentList.getTableName(), linearTableName, params);
-        DatabaseManager.getInstance().distinctTable(linearTableName);
         Vector<Site> sites = Query.queryAllEditingSites(linearTableName);
         SiteList newList = new SiteList(parentList, listName(), DatabaseManager.DNA_RNA_FILTER_RESULT_TABLE_NAME,
             linearTableName, description());
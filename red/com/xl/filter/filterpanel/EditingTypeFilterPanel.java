@@ -93,7 +93,6 @@ public class EditingTypeFilterPanel extends AbstractFilterPanel {
         Map<String, String> params = new HashMap<String, String>();
         params.put(EditingTypeFilter.PARAMS_REF, refBaseString + altBaseString);
         filter.performFilter(parentList.getTableName(), linearTableName, params);
-        DatabaseManager.getInstance().distinctTable(linearTableName);
         Vector<Site> sites = Query.queryAllEditingSites(linearTableName);
         SiteList newList =
             new SiteList(parentList, listName(), DatabaseManager.EDITING_TYPE_FILTER_RESULT_TABLE_NAME,
@@ -121,7 +121,6 @@ public class FisherExactTestFilterPanel extends AbstractFilterPanel {
         params.put(FisherExactTestFilter.PARAMS_STRING_R_SCRIPT_PATH, LocationPreferences.getInstance()
             .getRScriptPath());
         filter.performFilter(parentList.getTableName(), linearTableName, params);
-        DatabaseManager.getInstance().distinctTable(linearTableName);
         Vector<Site> sites = Query.queryAllEditingSites(linearTableName);
         SiteList newList =
             new SiteList(parentList, listName(), DatabaseManager.FET_FILTER_RESULT_TABLE_NAME, linearTableName,
@@ -79,7 +79,6 @@ public class KnownSnpFilterPanel extends AbstractFilterPanel {
 
         Filter filter = new KnownSnpFilter();
         filter.performFilter(parentList.getTableName(), linearTableName, null);
-        DatabaseManager.getInstance().distinctTable(linearTableName);
         Vector<Site> sites = Query.queryAllEditingSites(linearTableName);
         SiteList newList =
             new SiteList(parentList, listName(), DatabaseManager.DBSNP_FILTER_RESULT_TABLE_NAME, linearTableName,
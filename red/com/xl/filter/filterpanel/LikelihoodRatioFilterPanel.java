@@ -97,7 +97,6 @@ public class LikelihoodRatioFilterPanel extends AbstractFilterPanel {
         params.put(LikelihoodRatioFilter.PARAMS_STRING_DNA_VCF_TABLE, sampleName + "_"
             + DatabaseManager.DNA_VCF_RESULT_TABLE_NAME);
         filter.performFilter(parentList.getTableName(), linearTableName, params);
-        DatabaseManager.getInstance().distinctTable(linearTableName);
         Vector<Site> sites = Query.queryAllEditingSites(linearTableName);
         SiteList newList =
             new SiteList(parentList, listName(), DatabaseManager.LLR_FILTER_RESULT_TABLE_NAME, linearTableName,
@@ -111,7 +111,6 @@ public class QualityControlFilterPanel extends AbstractFilterPanel {
         params.put(QualityControlFilter.PARAMS_STRING_QUALITY, qualityThreshold + "");
         params.put(QualityControlFilter.PARAMS_INT_DEPTH, depthThreshold + "");
         filter.performFilter(parentList.getTableName(), linearTableName, params);
-        DatabaseManager.getInstance().distinctTable(linearTableName);
 
         Vector<Site> sites = Query.queryAllEditingSites(linearTableName);
         SiteList newList =
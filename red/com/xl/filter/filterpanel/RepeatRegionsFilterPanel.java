@@ -77,7 +77,6 @@ public class RepeatRegionsFilterPanel extends AbstractFilterPanel {
 
         Filter filter = new RepeatRegionsFilter();
         filter.performFilter(parentList.getTableName(), linearTableName, null);
-        DatabaseManager.getInstance().distinctTable(linearTableName);
         Vector<Site> sites = Query.queryAllEditingSites(linearTableName);
         SiteList newList =
             new SiteList(parentList, listName(), DatabaseManager.REPEAT_FILTER_RESULT_TABLE_NAME, linearTableName,
@@ -94,7 +94,6 @@ public class SpliceJunctionFilterPanel extends AbstractFilterPanel {
         // The first parameter means quality and the second means depth
         params.put(SpliceJunctionFilter.PARAMS_INT_EDGE, sjThreshold + "");
         filter.performFilter(parentList.getTableName(), linearTableName, params);
-        DatabaseManager.getInstance().distinctTable(linearTableName);
         Vector<Site> sites = Query.queryAllEditingSites(linearTableName);
         SiteList newList =
             new SiteList(parentList, listName(), DatabaseManager.SPLICE_JUNCTION_FILTER_RESULT_TABLE_NAME,
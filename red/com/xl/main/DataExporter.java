@@ -25,6 +25,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.xl.database.DatabaseManager;
+import com.xl.database.QueryCursor;
 
 /**
  * Created by Administrator on 2015/10/12.
@@ -55,7 +56,8 @@ public class DataExporter {
             }
             builder.append(".txt");
 
-            ResultSet rs;
+            // Rows are streamed to the file, so tables larger than the heap can be exported.
+            QueryCursor cursor = null;
             PrintWriter pw = null;
             if (columns.length == 1 && columns[0].equalsIgnoreCase("all")) {
                 if (currentTable.contains(DatabaseManager.RNA_VCF_RESULT_TABLE_NAME)
@@ -68,7 +70,6 @@ public class DataExporter {
                         logger.error("Error open the print writer at: " + f.getAbsolutePath(), e);
                         return;
                     }
-                    rs = databaseManager.query(currentTable, null, selection, selectionArgs);
                     List<String> columnNames;
                     try {
                         columnNames = databaseManager.getColumnNames(databaseName, currentTable);
@@ -82,7 +83,9 @@ public class DataExporter {
                     }
                     pw.println(builder.toString().trim());
                     try {
-                        while (rs.next()) {
+                        cursor = databaseManager.openCursor(currentTable, null, selection, selectionArgs);
+                        ResultSet rs = cursor.getResultSet();
+                        while (cursor.next()) {
                             builder = new StringBuilder();
                             for (String column : columnNames) {
                                 builder.append(rs.getString(column)).append("\t");
@@ -91,6 +94,10 @@ public class DataExporter {
                         }
                     } catch (SQLException e) {
                         logger.warn("No results", e);
+                    } finally {
+                        if (cursor != null) {
+                            cursor.close();
+                        }
                     }
                 }
             } else if (columns.length == 1 && columns[0].equalsIgnoreCase("annotation")) {
@@ -103,15 +110,20 @@ public class DataExporter {
                         return;
                     }
                     pw.println("chr\tstart\tend\tref_allele\talt_allele\tpvalue\talu");
-                    rs = databaseManager.query(currentTable, new String[]{"chrom", "pos", "ref", "alt", "pvalue", "alu"},
-                            selection, selectionArgs);
                     try {
-                        while (rs.next()) {
+                        cursor = databaseManager.openCursor(currentTable,
+                                new String[]{"chrom", "pos", "ref", "alt", "pvalue", "alu"}, selection, selectionArgs);
+                        ResultSet rs = cursor.getResultSet();
+                        while (cursor.next()) {
                             pw.println(rs.getString(1).substring(3) + "\t" + rs.getInt(2) + "\t" + rs.getInt(2) + "\t"
                                     + rs.getString(3) + "\t" + rs.getString(4) + "\t" + rs.getString(5) + "\t" + rs.getString(6));
                         }
                     } catch (SQLException e) {
                         logger.warn("No results", e);
+                    } finally {
+                        if (cursor != null) {
+                            cursor.close();
+                        }
                     }
                 }
             } else {
@@ -123,7 +135,6 @@ public class DataExporter {
                         logger.error("Error open the print writer at: " + f.getAbsolutePath(), e);
                         return;
                     }
-                    rs = databaseManager.query(currentTable, columns, selection, selectionArgs);
                     builder = new StringBuilder();
                     for (String column : columns) {
                         builder.append(column).append("\t");
@@ -131,7 +142,9 @@ public class DataExporter {
                     pw.println(builder.toString().trim());
 
                     try {
-                        while (rs.next()) {
+                        cursor = databaseManager.openCursor(currentTable, columns, selection, selectionArgs);
+                        ResultSet rs = cursor.getResultSet();
+                        while (cursor.next()) {
                             builder = new StringBuilder();
                             for (String column : columns) {
                                 builder.append(rs.getString(column)).append("\t");
@@ -140,6 +153,10 @@ public class DataExporter {
                         }
                     } catch (SQLException e) {
                         logger.warn("No results", e);
+                    } finally {
+                        if (cursor != null) {
+                            cursor.close();
+                        }
                     }
                 }
             }
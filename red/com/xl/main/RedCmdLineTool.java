@@ -21,14 +21,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.xl.database.DatabaseManager;
+import com.xl.database.EmbeddedBackend;
+import com.xl.database.MySqlBackend;
+import com.xl.database.StorageBackend;
 import com.xl.database.TableCreator;
+import com.xl.datatypes.reference.KnownSnpIndex;
 import com.xl.exception.DataLoadException;
 import com.xl.filter.Filter;
+import com.xl.filter.InMemoryFilterPipeline;
 import com.xl.filter.denovo.*;
 import com.xl.filter.dnarna.DnaRnaFilter;
 import com.xl.filter.dnarna.LikelihoodRatioFilter;
-import com.xl.parsers.referenceparsers.AbstractParser;
 import com.xl.parsers.referenceparsers.DnaVcfParser;
+import com.xl.parsers.referenceparsers.ParallelImporter;
 import com.xl.parsers.referenceparsers.ParserFactory;
 import com.xl.parsers.referenceparsers.RnaVcfParser;
 import com.xl.utils.FileUtils;
@@ -38,6 +43,8 @@ import com.xl.utils.Timer;
  * Created by Administrator on 2015/10/11.
  */
 public class RedCmdLineTool {
+    public static final String STORAGE_DATABASE = "database";
+    public static final String STORAGE_MEMORY = "memory";
     private static Logger logger = LoggerFactory.getLogger(RedCmdLineTool.class);
     public static String HOST = "127.0.0.1";
     public static String PORT = "3306";
@@ -59,6 +66,17 @@ public class RedCmdLineTool {
     public static String ORDER = "12345678";
     public static String EXPORT = "";
     public static String DELETE = "";
+    public static String CONNECTIONS = "";
+    public static String BATCH_SIZE = "";
+    public static String SLOW_QUERY = "";
+    public static String BACKEND = MySqlBackend.NAME;
+    public static String DB_PATH = EmbeddedBackend.DEFAULT_PATH;
+    public static String STORAGE = STORAGE_DATABASE;
+    public static String REGIONS = "";
+    public static String IMPORT_JOBS = "";
+    public static String INCREMENTAL = "";
+    public static String PARTITION = "";
+    public static String SAMPLE_PARALLEL = "";
 
     public static void run(String[] args) {
         for (String arg : args) {
@@ -180,6 +198,28 @@ public class RedCmdLineTool {
                 TYPE = value;
             } else if (key.equalsIgnoreCase("export")) {
                 EXPORT = value;
+            } else if (key.equalsIgnoreCase("connections")) {
+                CONNECTIONS = value;
+            } else if (key.equalsIgnoreCase("batchsize")) {
+                BATCH_SIZE = value;
+            } else if (key.equalsIgnoreCase("slowquery")) {
+                SLOW_QUERY = value;
+            } else if (key.equalsIgnoreCase("backend")) {
+                BACKEND = value;
+            } else if (key.equalsIgnoreCase("dbpath")) {
+                DB_PATH = value;
+            } else if (key.equalsIgnoreCase("storage")) {
+                STORAGE = value;
+            } else if (key.equalsIgnoreCase("regions")) {
+                REGIONS = value;
+            } else if (key.equalsIgnoreCase("importjobs")) {
+                IMPORT_JOBS = value;
+            } else if (key.equalsIgnoreCase("incremental")) {
+                INCREMENTAL = value;
+            } else if (key.equalsIgnoreCase("partition")) {
+                PARTITION = value;
+            } else if (key.equalsIgnoreCase("sampleparallel")) {
+                SAMPLE_PARALLEL = value;
             } else {
                 logger.error("Unknown the argument '--" + key + "', please have a check.",
                     new IllegalArgumentException());
@@ -222,10 +262,64 @@ public class RedCmdLineTool {
 
         }
 
+        boolean inMemory = STORAGE.equalsIgnoreCase(STORAGE_MEMORY);
+        if (!inMemory && !STORAGE.equalsIgnoreCase(STORAGE_DATABASE)) {
+            logger.error("Unknown the argument '--storage=" + STORAGE + "', please have a check.",
+                new IllegalArgumentException());
+            return;
+        }
+
         logger.info("Start connecting the database...");
         DatabaseManager manager = DatabaseManager.getInstance();
+        if (CONNECTIONS.length() != 0) {
+            try {
+                manager.setMaxConnections(Integer.parseInt(CONNECTIONS));
+            } catch (NumberFormatException e) {
+                logger.error("Unknown the argument '--connections=" + CONNECTIONS + "', please have a check.", e);
+                return;
+            }
+        }
+        if (BATCH_SIZE.length() != 0) {
+            try {
+                manager.setBatchSize(Integer.parseInt(BATCH_SIZE));
+            } catch (NumberFormatException e) {
+                logger.error("Unknown the argument '--batchsize=" + BATCH_SIZE + "', please have a check.", e);
+                return;
+            }
+        }
+        manager.setPartitioned(PARTITION.equalsIgnoreCase("true"));
+        manager.setSampleParallel(SAMPLE_PARALLEL.equalsIgnoreCase("true"));
+        int importJobs = 0;
+        if (IMPORT_JOBS.length() != 0) {
+            try {
+                importJobs = Integer.parseInt(IMPORT_JOBS);
+            } catch (NumberFormatException e) {
+                logger.error("Unknown the argument '--importjobs=" + IMPORT_JOBS + "', please have a check.", e);
+                return;
+            }
+        }
+        if (SLOW_QUERY.length() != 0) {
+            try {
+                manager.getMetrics().setSlowQueryMillis(Long.parseLong(SLOW_QUERY));
+            } catch (NumberFormatException e) {
+                logger.error("Unknown the argument '--slowquery=" + SLOW_QUERY + "', please have a check.", e);
+                return;
+            }
+        }
+        StorageBackend backend;
+        if (BACKEND.equalsIgnoreCase(MySqlBackend.NAME)) {
+            backend = new MySqlBackend(HOST, PORT, USER, PWD);
+        } else if (BACKEND.equalsIgnoreCase(EmbeddedBackend.NAME)) {
+            backend = new EmbeddedBackend(DB_PATH);
+            // Reference indexes which can not be saved next to their files are kept with the database.
+            KnownSnpIndex.setCacheDirectory(new File(DB_PATH).getAbsoluteFile().getParentFile());
+        } else {
+            logger.error("Unknown the argument '--backend=" + BACKEND + "', please have a check.",
+                new IllegalArgumentException());
+            return;
+        }
         try {
-            if (!manager.connectDatabase(HOST, PORT, USER, PWD)) {
+            if (!manager.connectDatabase(backend)) {
                 logger.error(
                     "Sorry, fail to connect to the database. You may input one of the wrong database host, port, user name or password.",
                     new SQLException());
@@ -287,28 +381,61 @@ public class RedCmdLineTool {
             // Next, print the start time of the data import.
             String startTime = Timer.getCurrentTime();
             logger.info("Start importing data:\t" + startTime);
-            String[] rnaVCFSampleNames;
+            // All files are imported at the same time, since they are written into different tables.
+            ParallelImporter importer = new ParallelImporter(importJobs, null);
+            boolean incremental = INCREMENTAL.equalsIgnoreCase("true");
+            RnaVcfParser rnaVcfParser;
             if (RNAVCF.length() != 0) {
-                AbstractParser rnaVcfParser =
-                    ParserFactory.createParser(RNAVCF, DatabaseManager.RNA_VCF_RESULT_TABLE_NAME);
-                rnaVcfParser.loadDataFromLocal(null);
-                rnaVCFSampleNames = ((RnaVcfParser) rnaVcfParser).getSampleNames();
+                rnaVcfParser =
+                    (RnaVcfParser) ParserFactory.createParser(RNAVCF, DatabaseManager.RNA_VCF_RESULT_TABLE_NAME);
+                if (REGIONS.length() != 0) {
+                    rnaVcfParser.setRegions(REGIONS.split(","));
+                }
+                rnaVcfParser.setIncremental(incremental);
+                importer.addParser(rnaVcfParser);
             } else {
                 logger.error("RNA VCF file is empty, please have a check.");
                 throw new NullPointerException();
             }
-            String[] dnaVCFSampleNames;
+            DnaVcfParser dnaVcfParser = null;
             if (!denovo) {
                 if (DNAVCF.length() != 0) {
-                    AbstractParser dnaVcfParser =
-                        ParserFactory.createParser(DNAVCF, DatabaseManager.DNA_VCF_RESULT_TABLE_NAME);
-                    dnaVcfParser.loadDataFromLocal(null);
-                    dnaVCFSampleNames = ((DnaVcfParser) dnaVcfParser).getSampleNames();
+                    dnaVcfParser =
+                        (DnaVcfParser) ParserFactory.createParser(DNAVCF, DatabaseManager.DNA_VCF_RESULT_TABLE_NAME);
+                    if (REGIONS.length() != 0) {
+                        dnaVcfParser.setRegions(REGIONS.split(","));
+                    }
+                    dnaVcfParser.setIncremental(incremental);
+                    importer.addParser(dnaVcfParser);
                 } else {
                     logger.error("DNA VCF file is empty, please have a check.");
                     throw new NullPointerException();
                 }
+            }
+            // The reference files are not needed if all samples are going to be deleted.
+            boolean deleteAll = DELETE.length() != 0 && DELETE.equalsIgnoreCase("all");
+            if (!deleteAll) {
+                if (REPEAT.length() != 0) {
+                    importer.addParser(ParserFactory.createParser(REPEAT, DatabaseManager.REPEAT_MASKER_TABLE_NAME));
+                }
+                if (SPLICE.length() != 0) {
+                    importer.addParser(ParserFactory.createParser(SPLICE, DatabaseManager.SPLICE_JUNCTION_TABLE_NAME));
+                }
+                if (DBSNP.length() != 0) {
+                    importer.addParser(ParserFactory.createParser(DBSNP, DatabaseManager.DBSNP_DATABASE_TABLE_NAME));
+                }
+                if (DARNED.length() != 0) {
+                    importer.addParser(ParserFactory.createParser(DARNED, DatabaseManager.DARNED_DATABASE_TABLE_NAME));
+                }
+                if (RADAR.length() != 0) {
+                    importer.addParser(ParserFactory.createParser(RADAR, DatabaseManager.RADAR_DATABASE_TABLE_NAME));
+                }
+            }
+            importer.importAll();
 
+            String[] rnaVCFSampleNames = rnaVcfParser.getSampleNames();
+            if (dnaVcfParser != null) {
+                String[] dnaVCFSampleNames = dnaVcfParser.getSampleNames();
                 boolean match = false;
                 for (String rnaSample : rnaVCFSampleNames) {
                     match = false;
@@ -324,7 +451,7 @@ public class RedCmdLineTool {
                     throw new IllegalArgumentException();
                 }
             }
-            if (DELETE.length() != 0 && DELETE.equalsIgnoreCase("all")) {
+            if (deleteAll) {
                 for (String rnaVCFSampleName : rnaVCFSampleNames) {
                     logger.info("Deleting sample '" + rnaVCFSampleName + "' in database '" + DATABASE + "'.");
                     manager.deleteTableAndFilters(DATABASE, rnaVCFSampleName);
@@ -333,22 +460,6 @@ public class RedCmdLineTool {
                 return;
             }
 
-            if (REPEAT.length() != 0) {
-                ParserFactory.createParser(REPEAT, DatabaseManager.REPEAT_MASKER_TABLE_NAME).loadDataFromLocal(null);
-            }
-            if (SPLICE.length() != 0) {
-                ParserFactory.createParser(SPLICE, DatabaseManager.SPLICE_JUNCTION_TABLE_NAME).loadDataFromLocal(null);
-            }
-            if (DBSNP.length() != 0) {
-                ParserFactory.createParser(DBSNP, DatabaseManager.DBSNP_DATABASE_TABLE_NAME).loadDataFromLocal(null);
-            }
-            if (DARNED.length() != 0) {
-                ParserFactory.createParser(DARNED, DatabaseManager.DARNED_DATABASE_TABLE_NAME).loadDataFromLocal(null);
-            }
-            if (RADAR.length() != 0) {
-                ParserFactory.createParser(RADAR, DatabaseManager.RADAR_DATABASE_TABLE_NAME).loadDataFromLocal(null);
-            }
-
             String endTime = Timer.getCurrentTime();
             logger.info("End importing data :\t" + endTime);
             logger.info("Data import lasts for :\t" + Timer.calculateInterval(startTime, endTime));
@@ -399,6 +510,7 @@ public class RedCmdLineTool {
 
                 String rawFilterName = sample + "_" + DatabaseManager.RNA_VCF_RESULT_TABLE_NAME;
                 String dnavcfTableName = sample + "_" + DatabaseManager.DNA_VCF_RESULT_TABLE_NAME;
+                InMemoryFilterPipeline pipeline = inMemory ? new InMemoryFilterPipeline(rawFilterName) : null;
 
                 for (int i = 0, len = filters.size(); i < len; i++) {
                     String previousFilterName;
@@ -444,7 +556,14 @@ public class RedCmdLineTool {
                         throw new IllegalArgumentException();
                     }
                     logger.info("Current Running Filter: " + filters.get(i).getName());
-                    if (manager.existTable(currentTable)) {
+                    if (inMemory) {
+                        try {
+                            pipeline.performFilter(filters.get(i), previousTable, currentTable, params);
+                        } catch (SQLException e) {
+                            logger.error("Error performing filter '" + currentFilterName + "' in memory.", e);
+                            return;
+                        }
+                    } else if (manager.existTable(currentTable)) {
                         logger.info("Table has been existed!");
                         printDupeInfo(currentTable);
                         Scanner scanner = new Scanner(System.in);
@@ -456,7 +575,6 @@ public class RedCmdLineTool {
                             manager.deleteTable(currentTable);
                             createFilter(currentFilterName, previousTable, currentTable);
                             filters.get(i).performFilter(previousTable, currentTable, params);
-                            DatabaseManager.getInstance().distinctTable(currentTable);
                         } else if (answer.equalsIgnoreCase("no") || answer.equalsIgnoreCase("n")) {
                             logger.info("Use old data for next filter.");
                         } else {
@@ -467,10 +585,17 @@ public class RedCmdLineTool {
                         manager.deleteTable(currentTable);
                         createFilter(currentFilterName, previousTable, currentTable);
                         filters.get(i).performFilter(previousTable, currentTable, params);
-                        DatabaseManager.getInstance().distinctTable(currentTable);
                     }
 
                 }
+                if (inMemory) {
+                    try {
+                        logger.info("Final result table: " + pipeline.finish());
+                    } catch (SQLException e) {
+                        logger.error("Error writing the final result of sample '" + sample + "'.", e);
+                        return;
+                    }
+                }
                 endTime = Timer.getCurrentTime();
                 logger.info("End performing filters :\t" + endTime);
                 logger.info("Filter performance lasts for :\t" + Timer.calculateInterval(startTime, endTime));
@@ -484,6 +609,7 @@ public class RedCmdLineTool {
             logger.error("Data can't be loaded correctly, please have a check and try again.", e);
         }
 
+        logger.info(manager.getMetrics().summary());
         System.exit(0);
     }
 
@@ -13,12 +13,17 @@
 
 package com.xl.parsers.referenceparsers;
 
+import java.io.IOException;
+import java.io.InputStream;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.xl.database.DatabaseManager;
 import com.xl.exception.DataLoadException;
 import com.xl.interfaces.ProgressListener;
+import com.xl.utils.FileFingerprint;
+import com.xl.utils.FileUtils;
 import com.xl.utils.Timer;
 
 /**
@@ -29,6 +34,10 @@ public abstract class AbstractParser {
     protected final String dataPath;
     protected final String tableName;
     protected final DatabaseManager databaseManager = DatabaseManager.getInstance();
+    /**
+     * The fingerprint of the data file, which tells whether the file has been imported.
+     */
+    protected FileFingerprint fingerprint;
 
     public AbstractParser(String dataPath, String tableName) {
         this.dataPath = dataPath;
@@ -43,6 +52,7 @@ public abstract class AbstractParser {
         if (listener != null) {
             listener.progressUpdated("Start loading data from '" + dataPath + "' to '" + tableName + "' table", 0, 0);
         }
+        fingerprint = new FileFingerprint(dataPath);
         createTable();
         loadData(listener);
         if (listener != null) {
@@ -52,6 +62,14 @@ public abstract class AbstractParser {
         logger.info("End loading data from " + dataPath + "... at {}", Timer.getCurrentTime());
     }
 
+    /**
+     * Open the data file to read, which is decompressed if it is gzip or bgzip compressed. The content hash of the file
+     * is computed along the way.
+     */
+    protected InputStream openDataStream() throws IOException {
+        return FileUtils.decompress(fingerprint.openStream());
+    }
+
     protected abstract void createTable();
 
     protected abstract void loadData(ProgressListener listener);
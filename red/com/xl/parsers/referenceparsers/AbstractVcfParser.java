@@ -0,0 +1,817 @@
+/*
+ * RED: RNA Editing Detector Copyright (C) <2014> <Xing Li>
+ *
+ * RED is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * RED is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.xl.parsers.referenceparsers;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.sf.samtools.util.BlockCompressedInputStream;
+
+import com.xl.database.DatabaseManager;
+import com.xl.database.QueryCursor;
+import com.xl.database.RowValues;
+import com.xl.database.RowWriter;
+import com.xl.database.TableCreator;
+import com.xl.datatypes.sites.PositionSet;
+import com.xl.interfaces.ProgressListener;
+import com.xl.preferences.DatabasePreferences;
+import com.xl.utils.EmptyChecker;
+import com.xl.utils.Indexer;
+import com.xl.utils.NameRetriever;
+import com.xl.utils.NegativeType;
+import com.xl.utils.TabixIndex;
+
+/**
+ * The Class AbstractVcfParser parses VCF file with single or multiple samples in a file, then insert all data into
+ * database, one table for each sample. Pay attention that the class will delete old sample tables and create new ones
+ * for all samples in this VCF file. Subclasses decide which sites of the VCF file should be kept.
+ * <p/>
+ * A bgzip-compressed VCF file with its tabix index (i.e., .vcf.gz with .vcf.gz.tbi) is imported by one worker for each
+ * chromosome, or for each region given by {@link #setRegions(String[])}, which seeks to its part of the file directly.
+ * <p/>
+ * In incremental mode (see {@link #setIncremental(boolean)}), the tables of samples which have been imported before are
+ * kept, only the sites which are not in them yet are appended, and only the filter results of the changed samples are
+ * deleted.
+ */
+public abstract class AbstractVcfParser extends AbstractParser {
+    protected static final int CHROM_COLUMN = 0;
+    protected static final int POS_COLUMN = 1;
+    protected static final int ID_COLUMN = 2;
+    protected static final int REF_COLUMN = 3;
+    protected static final int ALT_COLUMN = 4;
+    protected static final int QUAL_COLUMN = 5;
+    protected static final int FILTER_COLUMN = 6;
+    protected static final int INFO_COLUMN = 7;
+    protected static final int FORMAT_COLUMN = 8;
+    /**
+     * The FORMAT fields which are stored as integers instead of text.
+     */
+    private static final String FORMAT_DP = "DP";
+    private static final String FORMAT_GQ = "GQ";
+    private static final String FORMAT_AD = "AD";
+    /**
+     * The columns after the FORMAT fields, which are derived from the other columns at import, so filters select the
+     * sites by indexes of these columns instead of computing them for each site.
+     */
+    private static final String[] DERIVED_COLUMNS = {"ref_count", "alt_count", "total_depth", "alt_fraction",
+        "editing_code"};
+    private static final int REF_COUNT_OFFSET = 0;
+    private static final int ALT_COUNT_OFFSET = 1;
+    private static final int TOTAL_DEPTH_OFFSET = 2;
+    private static final int ALT_FRACTION_OFFSET = 3;
+    private static final int EDITING_CODE_OFFSET = 4;
+
+    /**
+     * The number of lines parsed by a worker thread at once.
+     */
+    private static final int CHUNK_LINES = 2048;
+    private static final int PARSER_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors());
+    /**
+     * Put by a region worker when it has parsed its region.
+     */
+    private static final ParsedChunk END_OF_REGION = new ParsedChunk(0);
+
+    protected String[] sampleNames = null;
+    protected String[] tableNames = null;
+    private int columnLength = 0;
+    /**
+     * The FORMAT column which the sample tables are created with, which is set before the worker threads start.
+     */
+    private String tableFormat = null;
+    private String[] tableFormatColumns = null;
+    private String[] regions = null;
+    private boolean incremental = false;
+    /**
+     * The sites of each sample table which has been kept in incremental mode, or null for a new table.
+     */
+    private PositionSet[] existingSites = null;
+    /**
+     * Whether the sample tables are partitioned by chromosome, which only keep sites of standard chromosomes.
+     */
+    private boolean partitioned = false;
+    private long[] importedRows = null;
+
+    protected AbstractVcfParser(String dataPath, String tableName) {
+        super(dataPath, tableName);
+    }
+
+    @Override
+    protected void createTable() {
+    }
+
+    /**
+     * Tell whether a site (i.e., a line of the VCF file) should be imported.
+     *
+     * @param tokens The tokenizer which holds the line.
+     * @return True if the site should be imported.
+     */
+    protected abstract boolean isSiteAccepted(VcfTokenizer tokens);
+
+    /**
+     * Only import the sites in the given regions, which needs a bgzip-compressed VCF file with its tabix index. The
+     * tables are not recorded as imported from the file then, so a later import of the whole file is not skipped.
+     *
+     * @param regions The regions in tabix format, e.g., chr1 or chr2:10000-20000.
+     */
+    public void setRegions(String[] regions) {
+        this.regions = regions;
+    }
+
+    /**
+     * Import only what has changed since the last import. Sample tables of the same columns are kept and the sites
+     * which are not in them (by chromosome and position) are appended, while new samples get new tables. The filter
+     * results of the samples which have got new sites are deleted, the other samples keep theirs.
+     * <p/>
+     * Sites which are already in a table are not updated even if their values have changed in the file.
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    @Override
+    protected void loadData(ProgressListener listener) {
+        if (TabixIndex.isIndexed(dataPath)) {
+            loadIndexedData(listener);
+            return;
+        }
+        if (regions != null) {
+            logger.warn("Regions need a bgzip-compressed VCF file with its tabix index, import the whole file "
+                + dataPath);
+            regions = null;
+        }
+        BufferedReader bufferedReader = null;
+        RowWriter writer = null;
+        ExecutorService executor = null;
+        try {
+            bufferedReader = new BufferedReader(new InputStreamReader(openDataStream()));
+            String line;
+            String[] columnStrings = new String[0];
+            // Chunks are parsed in parallel but written in the order of the file.
+            LinkedList<Future<ParsedChunk>> pendingChunks = new LinkedList<Future<ParsedChunk>>();
+            List<String> lines = new ArrayList<String>(CHUNK_LINES);
+            long rowCount = 0;
+            while ((line = bufferedReader.readLine()) != null) {
+                if (line.startsWith("##"))
+                    continue;
+                if (line.startsWith("#")) {
+                    columnStrings = parseHeader(line);
+                    continue;
+                }
+                checkSamples();
+
+                if (writer == null) {
+                    if (!findTableFormat(line)) {
+                        continue;
+                    }
+                    writer = createSampleWriter(columnStrings);
+                    if (writer == null) {
+                        return;
+                    }
+                    executor = Executors.newFixedThreadPool(PARSER_THREADS);
+                }
+
+                lines.add(line);
+                if (lines.size() == CHUNK_LINES) {
+                    pendingChunks.add(executor.submit(new ChunkParser(lines)));
+                    lines = new ArrayList<String>(CHUNK_LINES);
+                    // Hold the reader back once enough chunks are waiting, so the memory stays bounded.
+                    if (pendingChunks.size() >= PARSER_THREADS * 2) {
+                        rowCount = writeChunk(writer, getResult(pendingChunks.removeFirst()), rowCount, listener);
+                    }
+                }
+            }
+            if (writer != null) {
+                if (!lines.isEmpty()) {
+                    pendingChunks.add(executor.submit(new ChunkParser(lines)));
+                }
+                while (!pendingChunks.isEmpty()) {
+                    rowCount = writeChunk(writer, getResult(pendingChunks.removeFirst()), rowCount, listener);
+                }
+                writer.close();
+                invalidateChangedSamples();
+            }
+        } catch (IOException e) {
+            logger.error("Error open file: " + dataPath, e);
+        } catch (SQLException e) {
+            logger.error("Error insert data from " + dataPath + " to " + tableName + " tables", e);
+            if (listener != null) {
+                listener.progressExceptionReceived(e);
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (SQLException e) {
+                    logger.error("Error insert data from " + dataPath + " to " + tableName + " tables", e);
+                }
+            }
+            if (bufferedReader != null) {
+                try {
+                    bufferedReader.close();
+                } catch (IOException e) {
+                    logger.error("Error close the buffered reader.", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Import a bgzip-compressed VCF file with its tabix index. Each region (or chromosome) is read and parsed by a
+     * worker on its own reader, and the parsed rows are handed over a bounded queue to be written by this thread.
+     */
+    private void loadIndexedData(ProgressListener listener) {
+        BlockCompressedInputStream headerStream = null;
+        RowWriter writer = null;
+        ExecutorService executor = null;
+        try {
+            TabixIndex tabixIndex = new TabixIndex(dataPath);
+            headerStream = new BlockCompressedInputStream(new File(dataPath));
+            String[] columnStrings = new String[0];
+            String line;
+            while ((line = headerStream.readLine()) != null) {
+                if (line.startsWith("##"))
+                    continue;
+                if (line.startsWith("#")) {
+                    columnStrings = parseHeader(line);
+                    continue;
+                }
+                checkSamples();
+                if (findTableFormat(line)) {
+                    break;
+                }
+            }
+            if (line == null) {
+                return;
+            }
+            writer = createSampleWriter(columnStrings);
+            if (writer == null) {
+                return;
+            }
+
+            List<String> importRegions = getImportRegions(tabixIndex);
+            BlockingQueue<ParsedChunk> parsedChunks = new ArrayBlockingQueue<ParsedChunk>(PARSER_THREADS * 2);
+            executor = Executors.newFixedThreadPool(Math.max(1, Math.min(PARSER_THREADS, importRegions.size())));
+            List<Future<Void>> regionFutures = new ArrayList<Future<Void>>();
+            for (String region : importRegions) {
+                regionFutures.add(executor.submit(new RegionParser(tabixIndex, region, parsedChunks)));
+            }
+            long rowCount = 0;
+            int finishedRegions = 0;
+            while (finishedRegions < importRegions.size()) {
+                ParsedChunk chunk = parsedChunks.take();
+                if (chunk == END_OF_REGION) {
+                    finishedRegions++;
+                } else {
+                    rowCount = writeChunk(writer, chunk, rowCount, listener);
+                }
+            }
+            for (Future<Void> future : regionFutures) {
+                getResult(future);
+            }
+            writer.close();
+            invalidateChangedSamples();
+        } catch (IOException e) {
+            logger.error("Error open file: " + dataPath, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted while importing " + dataPath, e);
+        } catch (SQLException e) {
+            logger.error("Error insert data from " + dataPath + " to " + tableName + " tables", e);
+            if (listener != null) {
+                listener.progressExceptionReceived(e);
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (SQLException e) {
+                    logger.error("Error insert data from " + dataPath + " to " + tableName + " tables", e);
+                }
+            }
+            if (headerStream != null) {
+                try {
+                    headerStream.close();
+                } catch (IOException e) {
+                    logger.error("Error close the header stream.", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The regions to import, which are all chromosomes in the order of the index if no regions are given.
+     */
+    private List<String> getImportRegions(TabixIndex tabixIndex) {
+        List<String> importRegions = new ArrayList<String>();
+        if (regions == null) {
+            importRegions.addAll(tabixIndex.getSequenceNames());
+            return importRegions;
+        }
+        for (String region : regions) {
+            region = region.trim();
+            int colon = region.lastIndexOf(':');
+            String chrom = colon < 0 || tabixIndex.containsSequence(region) ? region : region.substring(0, colon);
+            if (tabixIndex.containsSequence(chrom)) {
+                importRegions.add(region);
+            } else {
+                logger.warn("Chromosome '" + chrom + "' of region '" + region + "' is not found in " + dataPath
+                    + ", skip it.");
+            }
+        }
+        return importRegions;
+    }
+
+    /**
+     * Parse the header line which names the columns, and the samples after FORMAT column.
+     *
+     * @return The columns of the header line.
+     */
+    private String[] parseHeader(String line) {
+        String[] columnStrings = line.substring(1).split("\\t");
+        columnLength = columnStrings.length;
+        sampleNames = Arrays.copyOfRange(columnStrings, FORMAT_COLUMN + 1, columnLength);
+        return columnStrings;
+    }
+
+    private void checkSamples() {
+        if (sampleNames == null) {
+            logger.error("There are no samples in this vcf file.");
+            throw new NullPointerException("There are no samples in this vcf file.");
+        }
+    }
+
+    /**
+     * Create the sample tables and the writer of their rows, once the FORMAT column has been found.
+     *
+     * @param columnStrings The columns of the header line.
+     * @return The writer, or null if all tables have been imported from this file.
+     */
+    private RowWriter createSampleWriter(String[] columnStrings) throws SQLException {
+        tableNames = new String[sampleNames.length];
+        for (int j = 0, len = sampleNames.length; j < len; j++) {
+            tableNames[j] = sampleNames[j] + "_" + tableName;
+        }
+        if (regions == null && isDataValid(tableNames)) {
+            logger.info("All tables are valid, return");
+            return null;
+        }
+        String[] tableColumns = getTableColumns(columnStrings, tableFormatColumns);
+        String tableDefinition = getTableDefinition(columnStrings, tableFormatColumns);
+        String partitionClause = TableCreator.createPartitionClause();
+        partitioned = partitionClause.length() != 0;
+        existingSites = new PositionSet[tableNames.length];
+        importedRows = new long[tableNames.length];
+        for (int i = 0; i < tableNames.length; i++) {
+            if (incremental && hasColumns(tableNames[i], tableColumns)) {
+                existingSites[i] = readSites(tableNames[i], columnStrings);
+                logger.info("Append new sites to " + tableNames[i] + ", which has " + existingSites[i].size()
+                    + " sites.");
+            } else {
+                databaseManager.deleteTable(tableNames[i]);
+                databaseManager.executeSQL("create table " + tableNames[i] + "(" + tableDefinition + ")"
+                    + partitionClause);
+            }
+        }
+        // Sites of each sample are spilled into a file and loaded at once if the backend supports it.
+        return databaseManager.createBulkInserter(tableNames, tableColumns, true);
+    }
+
+    /**
+     * Find the FORMAT column which the sample tables are created with, i.e., the FORMAT column of the first accepted
+     * line which has a valid sample.
+     *
+     * @param line A line of sites.
+     * @return True if the FORMAT column has been found in this line.
+     */
+    private boolean findTableFormat(String line) {
+        VcfTokenizer tokens = new VcfTokenizer();
+        int fieldCount = Math.min(tokens.tokenize(line), columnLength);
+        if (!isSiteAccepted(tokens)) {
+            return false;
+        }
+        String[] formatColumns = tokens.getField(FORMAT_COLUMN).split(":");
+        for (int i = FORMAT_COLUMN + 1; i < fieldCount; i++) {
+            if (!tokens.fieldContains(i, '.') && tokens.splitField(i, ':') == formatColumns.length) {
+                tableFormat = tokens.getField(FORMAT_COLUMN);
+                tableFormatColumns = formatColumns;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parse lines of sites into rows of the sample tables. It is called by worker threads, so it only reads the fields
+     * which are set before the workers start. Lines are tokenized in place, so only the values which are stored are
+     * turned into strings.
+     */
+    private ParsedChunk parseLines(List<String> lines) {
+        ParsedChunk chunk = new ParsedChunk(lines.size());
+        int derivedColumn = FORMAT_COLUMN + tableFormatColumns.length;
+        int columnCount = derivedColumn + DERIVED_COLUMNS.length;
+        VcfTokenizer tokens = new VcfTokenizer();
+        int[] readCounts = new int[2];
+        // Sites are sorted by chromosome, so the formatted name is reused for the following lines.
+        String rawChrom = null;
+        String formattedChrom = null;
+        Integer editingCodeValue = null;
+        for (String line : lines) {
+            int fieldCount = Math.min(tokens.tokenize(line), columnLength);
+            if (!isSiteAccepted(tokens)) {
+                continue;
+            }
+            boolean sameFormat = tokens.fieldEquals(FORMAT_COLUMN, tableFormat);
+            String[] formatColumns = sameFormat ? tableFormatColumns : tokens.getField(FORMAT_COLUMN).split(":");
+            Object[] shared = null;
+            for (int i = FORMAT_COLUMN + 1; i < fieldCount; i++) {
+                if (tokens.fieldContains(i, '.') || tokens.splitField(i, ':') != formatColumns.length) {
+                    continue;
+                }
+
+                if (shared == null) {
+                    // Shared by all samples of the line.
+                    if (rawChrom == null || !tokens.fieldEquals(CHROM_COLUMN, rawChrom)) {
+                        rawChrom = tokens.getField(CHROM_COLUMN);
+                        formattedChrom = NameRetriever.formatChromosomeName(rawChrom);
+                    }
+                    if (partitioned && !NameRetriever.isStandardChromosomeName(formattedChrom)) {
+                        // No partition can hold the site.
+                        break;
+                    }
+                    shared = new Object[FORMAT_COLUMN];
+                    shared[CHROM_COLUMN] = formattedChrom;
+                    shared[POS_COLUMN] = tokens.parseIntField(POS_COLUMN);
+                    shared[ID_COLUMN] = tokens.getField(ID_COLUMN);
+                    shared[REF_COLUMN] = tokens.getField(REF_COLUMN);
+                    shared[ALT_COLUMN] = tokens.getField(ALT_COLUMN);
+                    shared[QUAL_COLUMN] = tokens.fieldEquals(QUAL_COLUMN, ".") ? null
+                        : Float.valueOf(tokens.getField(QUAL_COLUMN));
+                    shared[FILTER_COLUMN] = tokens.getField(FILTER_COLUMN);
+                    shared[INFO_COLUMN] = tokens.getField(INFO_COLUMN);
+                    if (tokens.getFieldLength(REF_COLUMN) == 1 && tokens.getFieldLength(ALT_COLUMN) == 1) {
+                        int editingCode = NegativeType.getEditingCode(((String) shared[REF_COLUMN]).charAt(0),
+                            ((String) shared[ALT_COLUMN]).charAt(0));
+                        editingCodeValue = editingCode < 0 ? null : editingCode;
+                    } else {
+                        editingCodeValue = null;
+                    }
+                }
+                int table = i - FORMAT_COLUMN - 1;
+                if (existingSites[table] != null
+                    && existingSites[table].contains(formattedChrom, (Integer) shared[POS_COLUMN])) {
+                    continue;
+                }
+                Object[] row = new Object[columnCount];
+                System.arraycopy(shared, 0, row, 0, FORMAT_COLUMN);
+                row[derivedColumn + EDITING_CODE_OFFSET] = editingCodeValue;
+                for (int j = 0, len = tableFormatColumns.length; j < len; j++) {
+                    String column = tableFormatColumns[j];
+                    // The FORMAT column may differ from the one the tables are created with, so match values by name.
+                    int index = sameFormat ? j : indexOf(formatColumns, column);
+                    if (index < 0) {
+                        continue;
+                    }
+                    if (column.equals(FORMAT_DP) || column.equals(FORMAT_GQ)) {
+                        row[FORMAT_COLUMN + j] = tokens.parseSubfieldInteger(index);
+                    } else {
+                        row[FORMAT_COLUMN + j] = tokens.getSubfield(index);
+                        if (column.equals(FORMAT_AD) && tokens.parseSubfieldPair(index, readCounts)) {
+                            int totalDepth = readCounts[0] + readCounts[1];
+                            row[derivedColumn + REF_COUNT_OFFSET] = readCounts[0];
+                            row[derivedColumn + ALT_COUNT_OFFSET] = readCounts[1];
+                            row[derivedColumn + TOTAL_DEPTH_OFFSET] = totalDepth;
+                            row[derivedColumn + ALT_FRACTION_OFFSET] =
+                                totalDepth > 0 ? Float.valueOf((float) readCounts[1] / totalDepth) : null;
+                        }
+                    }
+                }
+                chunk.add(table, row);
+            }
+        }
+        return chunk;
+    }
+
+    /**
+     * Wait for a worker to finish.
+     *
+     * @return The result of the worker.
+     */
+    private <T> T getResult(Future<T> future) throws SQLException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while parsing " + dataPath, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new SQLException("Error parsing " + dataPath, e.getCause());
+        }
+    }
+
+    /**
+     * Write the rows of a parsed chunk.
+     *
+     * @return The number of rows which have been written, including this chunk.
+     */
+    private long writeChunk(RowWriter writer, ParsedChunk chunk, long rowCount, ProgressListener listener)
+        throws SQLException {
+        int[] nullTypes = null;
+        for (int i = 0; i < chunk.size; i++) {
+            Object[] row = chunk.rows[i];
+            if (nullTypes == null) {
+                nullTypes = new int[row.length];
+                for (int j = 0, len = row.length; j < len; j++) {
+                    nullTypes[j] = getSqlType(j);
+                }
+            }
+            RowValues.append(writer, row, nullTypes);
+            writer.endRow(chunk.tables[i]);
+            importedRows[chunk.tables[i]]++;
+            if (++rowCount % DatabaseManager.COMMIT_COUNTS_PER_ONCE == 0 && listener != null) {
+                listener.progressUpdated("Importing " + rowCount + " lines from " + dataPath, 0, 0);
+            }
+        }
+        return rowCount;
+    }
+
+    /**
+     * @return The SQL type of a column in the rows of the sample tables, which is used to write NULL values.
+     */
+    private int getSqlType(int column) {
+        int derivedColumn = FORMAT_COLUMN + tableFormatColumns.length;
+        if (column == QUAL_COLUMN || column == derivedColumn + ALT_FRACTION_OFFSET) {
+            return Types.FLOAT;
+        } else if (column == POS_COLUMN || column >= derivedColumn) {
+            return Types.INTEGER;
+        } else if (column >= FORMAT_COLUMN) {
+            String formatColumn = tableFormatColumns[column - FORMAT_COLUMN];
+            return formatColumn.equals(FORMAT_DP) || formatColumn.equals(FORMAT_GQ) ? Types.INTEGER : Types.VARCHAR;
+        }
+        return Types.VARCHAR;
+    }
+
+    /**
+     * @param columnStrings The columns of the header line.
+     * @param formatColumns The columns in FORMAT column.
+     * @return The column definitions of the sample tables.
+     */
+    private String getTableDefinition(String[] columnStrings, String[] formatColumns) {
+        StringBuilder tableBuilders = new StringBuilder();
+        tableBuilders.append(columnStrings[CHROM_COLUMN]).append(" varchar(30),").append(columnStrings[POS_COLUMN])
+            .append(" int,").append(columnStrings[ID_COLUMN]).append(" varchar(30),").append(columnStrings[REF_COLUMN])
+            .append(" varchar(5),").append(columnStrings[ALT_COLUMN]).append(" varchar(5),")
+            .append(columnStrings[QUAL_COLUMN]).append(" float(10,2),").append(columnStrings[FILTER_COLUMN])
+            .append(" text,").append(columnStrings[INFO_COLUMN]).append(" text,");
+        for (String formatColumn : formatColumns) {
+            boolean integer = formatColumn.equals(FORMAT_DP) || formatColumn.equals(FORMAT_GQ);
+            tableBuilders.append(formatColumn).append(integer ? " int," : " text,");
+        }
+        // We need to add ALU info at the first table so the following filters can get the alu info.
+        tableBuilders.append("alu varchar(1) default 'F'");
+        // The read counts parsed from AD and the values derived from them and the bases, so filters do not need to
+        // compute them for each site. Quality control and editing type filters select sites by their indexes.
+        tableBuilders.append(",ref_count int,alt_count int,total_depth int,alt_fraction float,editing_code tinyint");
+        tableBuilders.append(",").append(Indexer.DEPTH_QUALITY).append(",").append(Indexer.EDITING_CODE);
+        tableBuilders.append(",");
+        tableBuilders.append(Indexer.UNIQUE_CHROM_POSITION);
+        return tableBuilders.toString();
+    }
+
+    /**
+     * @param columnStrings The columns of the header line.
+     * @param formatColumns The columns in FORMAT column.
+     * @return The columns of the sample tables which are filled during import.
+     */
+    private String[] getTableColumns(String[] columnStrings, String[] formatColumns) {
+        String[] tableColumns = new String[FORMAT_COLUMN + formatColumns.length + DERIVED_COLUMNS.length];
+        System.arraycopy(columnStrings, 0, tableColumns, 0, FORMAT_COLUMN);
+        System.arraycopy(formatColumns, 0, tableColumns, FORMAT_COLUMN, formatColumns.length);
+        System.arraycopy(DERIVED_COLUMNS, 0, tableColumns, FORMAT_COLUMN + formatColumns.length,
+            DERIVED_COLUMNS.length);
+        return tableColumns;
+    }
+
+    /**
+     * @return True if the table exists and has all the columns, so new sites can be appended to it.
+     */
+    private boolean hasColumns(String tableName, String[] columns) {
+        if (!databaseManager.existTable(tableName)) {
+            return false;
+        }
+        try {
+            List<String> columnNames = databaseManager.getColumnNames(DatabasePreferences.getInstance()
+                .getCurrentDatabase(), tableName);
+            for (String column : columns) {
+                boolean found = false;
+                for (String columnName : columnNames) {
+                    found |= columnName.equalsIgnoreCase(column);
+                }
+                if (!found) {
+                    logger.info("Column " + column + " is not found in " + tableName + ", import it again.");
+                    return false;
+                }
+            }
+            return true;
+        } catch (SQLException e) {
+            logger.error("Error get columns of " + tableName, e);
+            return false;
+        }
+    }
+
+    /**
+     * Read the chromosomes and positions of the sites in a sample table.
+     */
+    private PositionSet readSites(String tableName, String[] columnStrings) throws SQLException {
+        PositionSet sites = new PositionSet();
+        QueryCursor cursor = databaseManager.openCursor(tableName, new String[]{columnStrings[CHROM_COLUMN],
+            columnStrings[POS_COLUMN]}, null, null);
+        try {
+            ResultSet rs = cursor.getResultSet();
+            while (cursor.next()) {
+                sites.add(rs.getString(1), rs.getInt(2));
+            }
+        } finally {
+            cursor.close();
+        }
+        return sites;
+    }
+
+    /**
+     * Report the imported sites of each sample. In incremental mode, delete the filter results of the samples which
+     * have got new sites, since they were filtered from the old ones.
+     */
+    private void invalidateChangedSamples() {
+        String database = DatabasePreferences.getInstance().getCurrentDatabase();
+        for (int i = 0; i < tableNames.length; i++) {
+            if (existingSites[i] == null) {
+                logger.info("Imported " + importedRows[i] + " sites into new table " + tableNames[i]);
+            } else {
+                logger.info("Appended " + importedRows[i] + " new sites to " + tableNames[i]);
+            }
+            if (incremental && (existingSites[i] == null || importedRows[i] > 0)) {
+                databaseManager.deleteTableAndFilters(database, sampleNames[i]);
+            }
+        }
+        existingSites = null;
+    }
+
+    private int indexOf(String[] columns, String column) {
+        for (int i = 0, len = columns.length; i < len; i++) {
+            if (columns[i].equals(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    protected void recordInformation() {
+        if (regions != null) {
+            logger.info("Only regions of " + dataPath + " have been imported, which are not recorded.");
+            return;
+        }
+        if (!EmptyChecker.isEmptyArray(tableNames)) {
+            for (String tableName : tableNames) {
+                databaseManager.insertOrUpdateInfo(tableName, fingerprint);
+            }
+        }
+    }
+
+    private boolean isDataValid(String[] tableNames) {
+        boolean valid = true;
+        for (String tableName : tableNames) {
+            valid &= databaseManager.isTableExistAndValid(tableName, fingerprint) && hasDerivedColumns(tableName);
+        }
+        return valid;
+    }
+
+    /**
+     * Tables imported by older versions do not have the read counts or the columns derived from them, so they are
+     * imported again.
+     */
+    private boolean hasDerivedColumns(String tableName) {
+        try {
+            return databaseManager.getColumnNames(DatabasePreferences.getInstance().getCurrentDatabase(), tableName)
+                .containsAll(Arrays.asList(DERIVED_COLUMNS));
+        } catch (SQLException e) {
+            logger.error("Error get columns of " + tableName, e);
+            return false;
+        }
+    }
+
+    public String[] getSampleNames() {
+        return sampleNames;
+    }
+
+    private class ChunkParser implements Callable<ParsedChunk> {
+        private final List<String> lines;
+
+        private ChunkParser(List<String> lines) {
+            this.lines = lines;
+        }
+
+        @Override
+        public ParsedChunk call() {
+            return parseLines(lines);
+        }
+    }
+
+    /**
+     * Read the lines of a region through its own reader and parse them chunk by chunk.
+     */
+    private class RegionParser implements Callable<Void> {
+        private final TabixIndex tabixIndex;
+        private final String region;
+        private final BlockingQueue<ParsedChunk> parsedChunks;
+
+        private RegionParser(TabixIndex tabixIndex, String region, BlockingQueue<ParsedChunk> parsedChunks) {
+            this.tabixIndex = tabixIndex;
+            this.region = region;
+            this.parsedChunks = parsedChunks;
+        }
+
+        @Override
+        public Void call() throws IOException, InterruptedException {
+            TabixIndex.RegionReader regionReader = null;
+            try {
+                regionReader = tabixIndex.query(region);
+                List<String> lines = new ArrayList<String>(CHUNK_LINES);
+                String line;
+                while (regionReader != null && (line = regionReader.readLine()) != null) {
+                    lines.add(line);
+                    if (lines.size() == CHUNK_LINES) {
+                        parsedChunks.put(parseLines(lines));
+                        lines.clear();
+                    }
+                }
+                if (!lines.isEmpty()) {
+                    parsedChunks.put(parseLines(lines));
+                }
+                return null;
+            } finally {
+                if (regionReader != null) {
+                    regionReader.close();
+                }
+                parsedChunks.put(END_OF_REGION);
+            }
+        }
+    }
+
+    /**
+     * The rows parsed from a chunk of lines, each row goes to the sample table of the same index.
+     */
+    private static class ParsedChunk {
+        private int[] tables;
+        private Object[][] rows;
+        private int size = 0;
+
+        private ParsedChunk(int capacity) {
+            tables = new int[capacity];
+            rows = new Object[capacity][];
+        }
+
+        private void add(int table, Object[] row) {
+            if (size == rows.length) {
+                tables = Arrays.copyOf(tables, size * 2);
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            tables[size] = table;
+            rows[size++] = row;
+        }
+    }
+}
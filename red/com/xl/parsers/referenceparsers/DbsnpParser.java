@@ -15,20 +15,25 @@ package com.xl.parsers.referenceparsers;
 
 import com.xl.database.DatabaseManager;
 import com.xl.database.TableCreator;
+import com.xl.datatypes.reference.KnownSnpIndex;
 import com.xl.interfaces.ProgressListener;
 import com.xl.utils.Indexer;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.sql.SQLException;
 
 /**
  * we will filter out base which already be recognized
+ * <p/>
+ * The positions of the dbSNP file are kept in a {@link KnownSnpIndex} saved next to the file rather than loaded into
+ * the database, and the dbSNP table is left empty.
  */
 public class DbsnpParser extends AbstractParser {
     private DatabaseManager databaseManager = DatabaseManager.getInstance();
+    /**
+     * The number of positions in the index which has just been built, or 0 if the file has been imported before.
+     */
+    private int positionCount = 0;
 
     public DbsnpParser(String dataPath, String tableName) {
         super(dataPath, tableName);
@@ -46,36 +51,30 @@ public class DbsnpParser extends AbstractParser {
     @Override
     protected void loadData(ProgressListener listener) {
         try {
-            if (!databaseManager.isTableExistAndValid(tableName)) {
+            if (!databaseManager.isTableExistAndValid(tableName, fingerprint)) {
                 createTable();
-                int count = 0;
-                FileInputStream inputStream = new FileInputStream(dataPath);
-                BufferedReader rin = new BufferedReader(new InputStreamReader(inputStream));
-                String line;
-                while ((line = rin.readLine()) != null) {
-                    if (line.startsWith("#")) {
-                        count++;
-                    } else {
-                        break;
-                    }
-                }
-                rin.close();
                 if (listener != null) {
-                    listener.progressUpdated("Start loading dbSNP data from " + dataPath + " to " + tableName
-                            + " table", 0, 0);
+                    listener.progressUpdated("Start building dbSNP index from " + dataPath, 0, 0);
                 }
-                databaseManager.executeSQL("load data local infile '" + dataPath + "' into table " + tableName + ""
-                    + " fields terminated by '\t' lines terminated by '\n' IGNORE " + count + " LINES");
+                // The positions are kept in the index file instead of the table, which is only emptied so rows of an
+                // older dbSNP file are not left behind.
+                databaseManager.executeSQL("truncate table " + tableName);
+                KnownSnpIndex.invalidate();
+                KnownSnpIndex index = KnownSnpIndex.build(openDataStream());
+                index.save(dataPath);
+                positionCount = index.size();
             }
         } catch (IOException e) {
             logger.error("Error load file from " + dataPath + " to file stream", e);
         } catch (SQLException e) {
-            logger.error("Error execute sql clause in " + DbsnpParser.class.getName() + ":loadDbSNPTable()", e);
+            logger.error("Error execute sql clause in " + DbsnpParser.class.getName() + ":loadData()", e);
         }
     }
 
     @Override
     protected void recordInformation() {
-        databaseManager.insertOrUpdateInfo(tableName);
+        if (positionCount > 0) {
+            databaseManager.insertOrUpdateInfo(tableName, positionCount, fingerprint);
+        }
     }
 }
@@ -15,9 +15,11 @@ package com.xl.parsers.referenceparsers;
 
 import com.xl.database.DatabaseManager;
 import com.xl.database.TableCreator;
+import com.xl.datatypes.reference.SpliceBoundaryIndex;
 import com.xl.interfaces.ProgressListener;
 import com.xl.utils.Indexer;
 
+import java.io.IOException;
 import java.sql.SQLException;
 
 /**
@@ -25,6 +27,8 @@ import java.sql.SQLException;
  */
 
 public class GtfParser extends AbstractParser {
+    private static final String[] GTF_COLUMNS =
+        new String[] { "chrom", "ref", "type", "begin", "end", "score", "strand", "frame", "info" };
     private DatabaseManager databaseManager = DatabaseManager.getInstance();
 
     public GtfParser(String dataPath, String tableName) {
@@ -37,8 +41,7 @@ public class GtfParser extends AbstractParser {
             // "(chrom varchar(15),ref varchar(30),type varchar(9),begin int,end int,unuse1 float(8,6),unuse2
             // varchar(5),unuse3 varchar(5),
             // info varchar(100),index(chrom,type))");
-            TableCreator.createReferenceTable(tableName,
-                new String[] { "chrom", "ref", "type", "begin", "end", "score", "strand", "frame", "info" },
+            TableCreator.createReferenceTable(tableName, GTF_COLUMNS,
                 new String[] { "varchar(30)", "varchar(30)", "varchar(10)", "int", "int", "float(8,6)", "varchar(1)",
                     "varchar(1)", "varchar(100)" },
                 Indexer.CHROM_TYPE);
@@ -47,15 +50,20 @@ public class GtfParser extends AbstractParser {
 
     @Override
     protected void loadData(ProgressListener listener) {
-        if (!databaseManager.isTableExistAndValid(tableName)) {
+        if (!databaseManager.isTableExistAndValid(tableName, fingerprint)) {
             createTable();
             try {
-                databaseManager.executeSQL("load data local infile '" + dataPath + "' into table " + tableName
-                    + " fields terminated" + " by '\t' lines terminated by '\n'");
+                // Rows of an older file, or of a version which recorded no fingerprint, are replaced.
+                databaseManager.executeSQL("truncate table " + tableName);
+                // The file is read through the decompressing stream, which also computes its content hash.
+                databaseManager.loadTabSeparated(tableName, GTF_COLUMNS, openDataStream());
+                SpliceBoundaryIndex.invalidate();
                 if (listener != null) {
                     listener.progressUpdated(
                         "Start loading Gene Annotation data from " + dataPath + " to " + tableName + " table", 0, 0);
                 }
+            } catch (IOException e) {
+                logger.error("Error load file from " + dataPath + " to file stream", e);
             } catch (SQLException e) {
                 logger.error("Error execute sql clause in " + GtfParser.class.getName() + ":loadSpliceJunctionTable().",
                     e);
@@ -65,6 +73,6 @@ public class GtfParser extends AbstractParser {
 
     @Override
     protected void recordInformation() {
-        databaseManager.insertOrUpdateInfo(tableName);
+        databaseManager.insertOrUpdateInfo(tableName, fingerprint);
     }
 }
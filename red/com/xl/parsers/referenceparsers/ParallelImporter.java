@@ -0,0 +1,244 @@
+/*
+ * RED: RNA Editing Detector Copyright (C) <2014> <Xing Li>
+ *
+ * RED is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * RED is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.xl.parsers.referenceparsers;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.xl.database.DatabaseManager;
+import com.xl.exception.DataLoadException;
+import com.xl.interfaces.ProgressListener;
+import com.xl.utils.Timer;
+
+/**
+ * ParallelImporter imports the files of several parsers at the same time. Each parser writes its own tables, so they
+ * are independent of each other. Each worker thread takes a connection which is free when the import starts and
+ * imports files one after another on it, so there are never more workers than connections which can be leased. If no
+ * connection is free, e.g., the caller and other threads hold all of them, the files are imported on the caller's
+ * thread.
+ * <p/>
+ * The progress of all parsers is reported to a single listener, and {@link #importAll()} returns when all of them
+ * have finished.
+ */
+public class ParallelImporter {
+    private static final Logger logger = LoggerFactory.getLogger(ParallelImporter.class);
+    private final DatabaseManager databaseManager = DatabaseManager.getInstance();
+    private final List<AbstractParser> parsers = new ArrayList<AbstractParser>();
+    private final ProgressListener listener;
+    private final int maxJobs;
+    private int completedJobs = 0;
+
+    /**
+     * @param maxJobs The maximum number of files imported at the same time, or 0 for the default.
+     * @param listener The listener of the combined progress, which may be null.
+     */
+    public ParallelImporter(int maxJobs, ProgressListener listener) {
+        this.maxJobs = maxJobs > 0 ? maxJobs : getDefaultJobs();
+        this.listener = listener;
+    }
+
+    /**
+     * An import needs a connection for parsing and another for writing, so half of the connections are used by
+     * default.
+     *
+     * @return The default number of files imported at the same time.
+     */
+    public static int getDefaultJobs() {
+        return Math.max(1, DatabaseManager.getInstance().getMaxConnections() / 2);
+    }
+
+    public void addParser(AbstractParser parser) {
+        parsers.add(parser);
+    }
+
+    /**
+     * Import all files and wait for them. If some imports fail, the others still run to the end, and then the first
+     * failure is thrown.
+     */
+    public void importAll() throws DataLoadException {
+        if (parsers.isEmpty()) {
+            return;
+        }
+        // A worker which waited for the pool could wait forever for connections held by living threads, so only the
+        // connections which are free now are used.
+        List<Connection> connections = new ArrayList<Connection>();
+        try {
+            Connection connection;
+            while (connections.size() < Math.min(maxJobs, parsers.size())
+                && (connection = databaseManager.tryLeaseConnection()) != null) {
+                connections.add(connection);
+            }
+        } catch (SQLException e) {
+            for (Connection connection : connections) {
+                databaseManager.releaseConnection(connection);
+            }
+            throw new DataLoadException("Error lease database connections for importing data: " + e.getMessage());
+        }
+        Queue<AbstractParser> pendingParsers = new ConcurrentLinkedQueue<AbstractParser>(parsers);
+        Throwable failure = null;
+        if (connections.isEmpty()) {
+            logger.info("No free connection for import jobs, import " + parsers.size() + " files one by one...\t"
+                + Timer.getCurrentTime());
+            try {
+                new ImportJob(pendingParsers, null).call();
+            } catch (Throwable e) {
+                failure = e;
+            }
+        } else {
+            int jobs = connections.size();
+            logger.info("Start importing " + parsers.size() + " files with " + jobs + " jobs...\t"
+                + Timer.getCurrentTime());
+            ExecutorService executor = Executors.newFixedThreadPool(jobs);
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            try {
+                for (Connection connection : connections) {
+                    futures.add(executor.submit(new ImportJob(pendingParsers, connection)));
+                }
+                for (Future<Void> future : futures) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException e) {
+                        if (failure == null) {
+                            failure = e.getCause();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new DataLoadException("Interrupted while importing data.");
+                    }
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+        if (failure instanceof DataLoadException) {
+            throw (DataLoadException) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        logger.info("End importing " + parsers.size() + " files...\t" + Timer.getCurrentTime());
+        if (listener != null) {
+            listener.progressComplete("data_imported", null);
+        }
+    }
+
+    private synchronized void jobCompleted(AbstractParser parser) {
+        completedJobs++;
+        logger.info("Imported " + completedJobs + " of " + parsers.size() + " files: " + parser.dataPath);
+        if (listener != null) {
+            listener.progressUpdated("Imported " + completedJobs + " of " + parsers.size() + " files", completedJobs,
+                parsers.size());
+        }
+    }
+
+    /**
+     * Import the pending files one after another on a connection leased for the job. If some imports fail, the next
+     * files are still imported, and then the first failure is thrown.
+     */
+    private class ImportJob implements Callable<Void> {
+        private final Queue<AbstractParser> pendingParsers;
+        private final Connection connection;
+
+        /**
+         * @param connection The connection leased for the job, or null to run on the caller's thread and connection.
+         */
+        private ImportJob(Queue<AbstractParser> pendingParsers, Connection connection) {
+            this.pendingParsers = pendingParsers;
+            this.connection = connection;
+        }
+
+        @Override
+        public Void call() throws DataLoadException {
+            if (connection != null) {
+                databaseManager.adoptConnection(connection);
+            }
+            Throwable failure = null;
+            try {
+                AbstractParser parser;
+                while ((parser = pendingParsers.poll()) != null) {
+                    try {
+                        parser.loadDataFromLocal(listener == null ? null : new JobProgress());
+                        jobCompleted(parser);
+                    } catch (DataLoadException e) {
+                        failure = failure == null ? e : failure;
+                    } catch (RuntimeException e) {
+                        failure = failure == null ? e : failure;
+                    }
+                }
+            } finally {
+                if (connection != null) {
+                    databaseManager.releaseConnection();
+                }
+            }
+            if (failure instanceof DataLoadException) {
+                throw (DataLoadException) failure;
+            } else if (failure != null) {
+                throw (RuntimeException) failure;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Forward the progress of a parser to the combined listener, which is called by one thread at a time. The end of
+     * a single parser is not forwarded, since the combined progress ends when all parsers end.
+     */
+    private class JobProgress implements ProgressListener {
+        @Override
+        public void progressExceptionReceived(Exception e) {
+            synchronized (ParallelImporter.this) {
+                listener.progressExceptionReceived(e);
+            }
+        }
+
+        @Override
+        public void progressWarningReceived(Exception e) {
+            synchronized (ParallelImporter.this) {
+                listener.progressWarningReceived(e);
+            }
+        }
+
+        @Override
+        public void progressUpdated(String message, int current, int max) {
+            synchronized (ParallelImporter.this) {
+                listener.progressUpdated("[" + completedJobs + "/" + parsers.size() + " done] " + message,
+                    completedJobs, parsers.size());
+            }
+        }
+
+        @Override
+        public void progressCancelled() {
+            synchronized (ParallelImporter.this) {
+                listener.progressCancelled();
+            }
+        }
+
+        @Override
+        public void progressComplete(String command, Object result) {
+        }
+    }
+}
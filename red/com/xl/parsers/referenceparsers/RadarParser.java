@@ -13,14 +13,15 @@
 
 package com.xl.parsers.referenceparsers;
 
+import com.xl.database.BatchWriter;
 import com.xl.database.DatabaseManager;
 import com.xl.database.TableCreator;
 import com.xl.interfaces.ProgressListener;
 import com.xl.utils.Indexer;
 
 import java.io.BufferedReader;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.sql.SQLException;
 
@@ -49,34 +50,33 @@ public class RadarParser extends AbstractParser {
     @Override
     protected void loadData(ProgressListener listener) {
         String radar = DatabaseManager.RADAR_DATABASE_TABLE_NAME;
-        if (!databaseManager.isKnownRnaEditingTableValid(tableName, radar)) {
+        if (!databaseManager.isKnownRnaEditingTableValid(tableName, radar, fingerprint)) {
             createTable();
             try {
                 databaseManager.executeSQL("delete from " + tableName + " where origin='" + radar + "'");
                 int count = 0;
                 databaseManager.setAutoCommit(false);
-                FileInputStream inputStream = new FileInputStream(dataPath);
+                InputStream inputStream = openDataStream();
                 BufferedReader rin = new BufferedReader(new InputStreamReader(inputStream));
                 String line;
                 // Skip the first row.
                 rin.readLine();
+                BatchWriter writer = databaseManager.createBatchInserter(tableName,
+                    new String[] { "chrom", "pos", "strand", "ref", "alt", "origin" });
                 while ((line = rin.readLine()) != null) {
                     String[] sections = line.trim().split("\\t");
-                    StringBuilder stringBuilder = new StringBuilder("insert into ");
-                    stringBuilder.append(tableName);
-                    stringBuilder.append("(chrom,pos,strand,ref,alt,origin) values(");
-                    stringBuilder.append("'").append(sections[0]).append("','").append(sections[1]).append("','")
-                        .append(sections[3]).append("','A','G','").append(radar);
-                    stringBuilder.append("')");
-
-                    databaseManager.executeSQL(stringBuilder.toString());
-                    if (++count % DatabaseManager.COMMIT_COUNTS_PER_ONCE == 0)
+                    writer.append(sections[0]).append(Integer.parseInt(sections[1])).append(sections[3]).append("A")
+                        .append("G").append(radar).endRow();
+                    if (++count % DatabaseManager.COMMIT_COUNTS_PER_ONCE == 0) {
                         databaseManager.commit();
-                    if (listener != null) {
-                        listener.progressUpdated(
-                            "Importing " + count + " lines from " + dataPath + " to " + tableName + " table", 0, 0);
+                        if (listener != null) {
+                            listener.progressUpdated(
+                                "Importing " + count + " lines from " + dataPath + " to " + tableName + " table", 0, 0);
+                        }
                     }
                 }
+                writer.close();
+                rin.close();
                 databaseManager.commit();
                 databaseManager.setAutoCommit(true);
             } catch (IOException e) {
@@ -89,6 +89,6 @@ public class RadarParser extends AbstractParser {
 
     @Override
     protected void recordInformation() {
-        databaseManager.insertOrUpdateKnownREInfo(DatabaseManager.RADAR_DATABASE_TABLE_NAME);
+        databaseManager.insertOrUpdateKnownREInfo(DatabaseManager.RADAR_DATABASE_TABLE_NAME, fingerprint);
     }
 }
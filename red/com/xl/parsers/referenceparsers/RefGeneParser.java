@@ -18,6 +18,7 @@ import com.xl.database.TableCreator;
 import com.xl.interfaces.ProgressListener;
 import com.xl.utils.Indexer;
 
+import java.io.IOException;
 import java.sql.SQLException;
 
 /**
@@ -25,6 +26,9 @@ import java.sql.SQLException;
  */
 
 public class RefGeneParser extends AbstractParser {
+    private static final String[] REF_GENE_COLUMNS = new String[] { "bin", "name", "chrom", "strand", "txStart",
+        "txEnd", "cdsStart", "cdsEnd", "exonCount", "exonStarts", "exonEnds", "score", "name2", "cdsStartStat",
+        "cdsEndStat", "exonFrames" };
     private DatabaseManager databaseManager = DatabaseManager.getInstance();
 
     public RefGeneParser(String dataPath, String tableName) {
@@ -37,25 +41,27 @@ public class RefGeneParser extends AbstractParser {
             // "(chrom varchar(15),ref varchar(30),type varchar(9),begin int,end int,unuse1 float(8,6),unuse2
             // varchar(5),unuse3 varchar(5),
             // info varchar(100),index(chrom,type))");
-            TableCreator.createReferenceTable(tableName, new String[] { "bin", "name", "chrom", "strand", "txStart",
-                "txEnd", "cdsStart", "cdsEnd", "exonCount", "exonStarts", "exonEnds", "score", "name2", "cdsStartStat",
-                "cdsEndStat", "exonFrames" }, new String[] { "int", "varchar(255)", "varchar(255)", "varchar(1)",
-                "int", "int", "int", "int", "int", "longblob", "longblob", "int", "varchar(255)", "varchar(8)",
-                "varchar(8)", "longblob" }, Indexer.CHROM_START_END);
+            TableCreator.createReferenceTable(tableName, REF_GENE_COLUMNS, new String[] { "int", "varchar(255)",
+                "varchar(255)", "varchar(1)", "int", "int", "int", "int", "int", "longblob", "longblob", "int",
+                "varchar(255)", "varchar(8)", "varchar(8)", "longblob" }, Indexer.CHROM_START_END);
         }
     }
 
     @Override
     protected void loadData(ProgressListener listener) {
-        if (!databaseManager.isTableExistAndValid(tableName)) {
+        if (!databaseManager.isTableExistAndValid(tableName, fingerprint)) {
             createTable();
             try {
-                databaseManager.executeSQL("load data local infile '" + dataPath + "' into table " + tableName
-                    + " fields terminated" + " by '\t' lines terminated by '\n'");
+                // Rows of an older file, or of a version which recorded no fingerprint, are replaced.
+                databaseManager.executeSQL("truncate table " + tableName);
+                // The file is read through the decompressing stream, which also computes its content hash.
+                databaseManager.loadTabSeparated(tableName, REF_GENE_COLUMNS, openDataStream());
                 if (listener != null) {
                     listener.progressUpdated("Start loading Ref Seq Gene data from " + dataPath + " to " + tableName
                         + " table", 0, 0);
                 }
+            } catch (IOException e) {
+                logger.error("Error load file from " + dataPath + " to file stream", e);
             } catch (SQLException e) {
                 logger.error(
                     "Error execute sql clause in " + RefGeneParser.class.getName() + ":loadRefSeqGeneTable().", e);
@@ -65,6 +71,6 @@ public class RefGeneParser extends AbstractParser {
 
     @Override
     protected void recordInformation() {
-        databaseManager.insertOrUpdateInfo(tableName);
+        databaseManager.insertOrUpdateInfo(tableName, fingerprint);
     }
 }
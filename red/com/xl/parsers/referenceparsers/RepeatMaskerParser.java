@@ -14,13 +14,15 @@
 package com.xl.parsers.referenceparsers;
 
 import com.xl.database.DatabaseManager;
+import com.xl.database.RowWriter;
 import com.xl.database.TableCreator;
+import com.xl.datatypes.reference.RepeatIntervalIndex;
 import com.xl.interfaces.ProgressListener;
 import com.xl.utils.Indexer;
 
 import java.io.BufferedReader;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.sql.SQLException;
 
@@ -47,31 +49,38 @@ public class RepeatMaskerParser extends AbstractParser {
     protected void loadData(ProgressListener listener) {
         BufferedReader rin = null;
         try {
-            if (!databaseManager.isTableExistAndValid(tableName)) {
+            if (!databaseManager.isTableExistAndValid(tableName, fingerprint)) {
                 createTable();
-                databaseManager.setAutoCommit(false);
-                int count = 0;
-                FileInputStream inputStream = new FileInputStream(dataPath);
+                // Rows of an older file, or of a version which recorded no fingerprint, are replaced.
+                databaseManager.executeSQL("truncate table " + tableName);
+                InputStream inputStream = openDataStream();
                 rin = new BufferedReader(new InputStreamReader(inputStream));
                 String line;
                 rin.readLine();
                 rin.readLine();
                 rin.readLine();
-                while ((line = rin.readLine()) != null) {
-                    String section[] = line.trim().split("\\s+");
-                    databaseManager.executeSQL("insert into " + tableName + "(chrom,begin,end,type) values('"
-                        + section[4] + "','" + section[5] + "','" + section[6] + "','" + section[10] + "')");
-                    if (++count % DatabaseManager.COMMIT_COUNTS_PER_ONCE == 0)
-                        databaseManager.commit();
+                // Lines are parsed while the former ones are written and committed by the writer thread.
+                RowWriter writer = databaseManager.createWriteBehindInserter(new String[] { tableName },
+                    new String[] { "chrom", "begin", "end", "type" }, false);
+                try {
+                    while ((line = rin.readLine()) != null) {
+                        String section[] = line.trim().split("\\s+");
+                        writer.append(section[4]).append(Integer.parseInt(section[5]))
+                            .append(Integer.parseInt(section[6])).append(section[10]).endRow();
+                    }
+                } finally {
+                    writer.close();
+                    RepeatIntervalIndex.invalidate();
                 }
-                databaseManager.commit();
-                databaseManager.setAutoCommit(true);
             }
 
         } catch (IOException e) {
             logger.error("Error load file from " + dataPath + " to file stream", e);
         } catch (SQLException e) {
             logger.error("Error execute sql clause in " + RepeatMaskerParser.class.getName() + ":loadRepeatTable()", e);
+            if (listener != null) {
+                listener.progressExceptionReceived(e);
+            }
         } finally {
             if (rin != null) {
                 try {
@@ -85,6 +94,6 @@ public class RepeatMaskerParser extends AbstractParser {
 
     @Override
     protected void recordInformation() {
-        databaseManager.insertOrUpdateInfo(tableName);
+        databaseManager.insertOrUpdateInfo(tableName, fingerprint);
     }
 }
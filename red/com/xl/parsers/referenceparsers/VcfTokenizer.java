@@ -0,0 +1,212 @@
+/*
+ * RED: RNA Editing Detector Copyright (C) <2014> <Xing Li>
+ *
+ * RED is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * RED is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.xl.parsers.referenceparsers;
+
+import java.util.Arrays;
+
+/**
+ * VcfTokenizer splits a line of a VCF file into tab-separated fields, and a field into colon-separated sub fields, by
+ * recording their offsets in the line instead of creating a string for each one. Fields are compared and integers are
+ * parsed in place, so only the values which are kept need a string. The offset arrays are reused for the following
+ * lines, so a tokenizer should be reused too, but it must not be shared by threads.
+ */
+final class VcfTokenizer {
+    private static final int INITIAL_FIELDS = 16;
+    private String line;
+    private int[] fieldStarts = new int[INITIAL_FIELDS];
+    private int[] fieldEnds = new int[INITIAL_FIELDS];
+    private int fieldCount = 0;
+    private int[] subfieldStarts = new int[INITIAL_FIELDS];
+    private int[] subfieldEnds = new int[INITIAL_FIELDS];
+    private int subfieldCount = 0;
+
+    /**
+     * Split a line into tab-separated fields.
+     *
+     * @param line A line of the VCF file.
+     * @return The number of fields.
+     */
+    int tokenize(String line) {
+        this.line = line;
+        fieldCount = 0;
+        subfieldCount = 0;
+        int start = 0;
+        for (int i = 0, len = line.length(); i <= len; i++) {
+            if (i == len || line.charAt(i) == '\t') {
+                if (fieldCount == fieldStarts.length) {
+                    fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+                    fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+                }
+                fieldStarts[fieldCount] = start;
+                fieldEnds[fieldCount++] = i;
+                start = i + 1;
+            }
+        }
+        return fieldCount;
+    }
+
+    int getFieldCount() {
+        return fieldCount;
+    }
+
+    String getField(int field) {
+        return line.substring(fieldStarts[field], fieldEnds[field]);
+    }
+
+    int getFieldLength(int field) {
+        return fieldEnds[field] - fieldStarts[field];
+    }
+
+    boolean fieldEquals(int field, String value) {
+        int length = getFieldLength(field);
+        return length == value.length() && line.regionMatches(fieldStarts[field], value, 0, length);
+    }
+
+    boolean fieldEqualsIgnoreCase(int field, String value) {
+        int length = getFieldLength(field);
+        return length == value.length() && line.regionMatches(true, fieldStarts[field], value, 0, length);
+    }
+
+    boolean fieldContains(int field, char c) {
+        for (int i = fieldStarts[field], end = fieldEnds[field]; i < end; i++) {
+            if (line.charAt(i) == c) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Split a field into sub fields, which replace the sub fields of the last split field.
+     *
+     * @param field The index of the field.
+     * @param separator The separator of sub fields, e.g., ':' in FORMAT and sample columns.
+     * @return The number of sub fields.
+     */
+    int splitField(int field, char separator) {
+        subfieldCount = 0;
+        int start = fieldStarts[field];
+        for (int i = start, end = fieldEnds[field]; i <= end; i++) {
+            if (i == end || line.charAt(i) == separator) {
+                if (subfieldCount == subfieldStarts.length) {
+                    subfieldStarts = Arrays.copyOf(subfieldStarts, subfieldCount * 2);
+                    subfieldEnds = Arrays.copyOf(subfieldEnds, subfieldCount * 2);
+                }
+                subfieldStarts[subfieldCount] = start;
+                subfieldEnds[subfieldCount++] = i;
+                start = i + 1;
+            }
+        }
+        return subfieldCount;
+    }
+
+    /**
+     * @return The sub field with ',' replaced by '/', e.g., AD value '12,3' is returned as '12/3'.
+     */
+    String getSubfield(int subfield) {
+        return line.substring(subfieldStarts[subfield], subfieldEnds[subfield]).replace(',', '/');
+    }
+
+    /**
+     * Parse a sub field as an integer. Some callers write integers as decimals (e.g., GQ), which are rounded.
+     *
+     * @return The integer, or null if the sub field is not a number.
+     */
+    Integer parseSubfieldInteger(int subfield) {
+        int start = subfieldStarts[subfield];
+        int end = subfieldEnds[subfield];
+        if (isInteger(start, end)) {
+            return parseInt(start, end);
+        }
+        try {
+            return (int) Math.round(Double.parseDouble(line.substring(start, end)));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parse the first two comma-separated integers of a sub field, i.e., the read counts of reference base and
+     * alternative base from AD value.
+     *
+     * @param counts The array to store the two integers.
+     * @return False if the sub field does not start with two integers.
+     */
+    boolean parseSubfieldPair(int subfield, int[] counts) {
+        int start = subfieldStarts[subfield];
+        int end = subfieldEnds[subfield];
+        int comma = indexOf(',', start, end);
+        if (comma < 0) {
+            return false;
+        }
+        int secondEnd = indexOf(',', comma + 1, end);
+        if (secondEnd < 0) {
+            secondEnd = end;
+        }
+        if (!isInteger(start, comma) || !isInteger(comma + 1, secondEnd)) {
+            return false;
+        }
+        counts[0] = parseInt(start, comma);
+        counts[1] = parseInt(comma + 1, secondEnd);
+        return true;
+    }
+
+    /**
+     * Parse a field as an integer, e.g., POS column.
+     */
+    int parseIntField(int field) {
+        int start = fieldStarts[field];
+        int end = fieldEnds[field];
+        if (!isInteger(start, end)) {
+            throw new NumberFormatException("For input string: \"" + getField(field) + "\"");
+        }
+        return parseInt(start, end);
+    }
+
+    private int indexOf(char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (line.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return True if the range is a decimal integer which fits in an int.
+     */
+    private boolean isInteger(int start, int end) {
+        int i = start < end && line.charAt(start) == '-' ? start + 1 : start;
+        // At most 9 digits, so it never overflows.
+        if (i == end || end - i > 9) {
+            return false;
+        }
+        for (; i < end; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int parseInt(int start, int end) {
+        boolean negative = line.charAt(start) == '-';
+        int value = 0;
+        for (int i = negative ? start + 1 : start; i < end; i++) {
+            value = value * 10 + (line.charAt(i) - '0');
+        }
+        return negative ? -value : value;
+    }
+}
@@ -23,6 +23,7 @@ import com.xl.display.dialog.ProgressDialog;
 import com.xl.exception.DataLoadException;
 import com.xl.main.RedApplication;
 import com.xl.parsers.referenceparsers.AbstractParser;
+import com.xl.parsers.referenceparsers.ParallelImporter;
 import com.xl.parsers.referenceparsers.ParserFactory;
 import com.xl.preferences.DatabasePreferences;
 import com.xl.preferences.LocationPreferences;
@@ -59,12 +60,15 @@ public class ThreadDenovoInput implements Runnable {
             AbstractParser radarParser = ParserFactory.createParser(locationPreferences.getRadarFile(),
                 DatabaseManager.RADAR_DATABASE_TABLE_NAME);
 
-            rnaVcfParser.loadDataFromLocal(new ProgressDialog("Import RNA VCF file into database..."));
-            repeatParser.loadDataFromLocal(new ProgressDialog("Import Repeat Masker file into database..."));
-            spliceParser.loadDataFromLocal(new ProgressDialog("Import Ref Seq Gene file into database..."));
-            dbSNPParser.loadDataFromLocal(new ProgressDialog("Import dbSNP file into database..."));
-            darnedParser.loadDataFromLocal(new ProgressDialog("Import DARNED file into database..."));
-            radarParser.loadDataFromLocal(new ProgressDialog("Import RADAR file into database..."));
+            ParallelImporter importer =
+                new ParallelImporter(0, new ProgressDialog("Import denovo mode data into database..."));
+            importer.addParser(rnaVcfParser);
+            importer.addParser(repeatParser);
+            importer.addParser(spliceParser);
+            importer.addParser(dbSNPParser);
+            importer.addParser(darnedParser);
+            importer.addParser(radarParser);
+            importer.importAll();
 
         } catch (DataLoadException e) {
             OptionDialogUtils.showErrorDialog(RedApplication.getInstance(),
@@ -73,6 +77,8 @@ public class ThreadDenovoInput implements Runnable {
             logger.error("", e);
             new DataImportDialog(RedApplication.getInstance());
             return;
+        } finally {
+            manager.releaseConnection();
         }
         new DatabaseSelector(RedApplication.getInstance());
     }
@@ -25,6 +25,7 @@ import com.xl.exception.RedException;
 import com.xl.main.RedApplication;
 import com.xl.parsers.referenceparsers.AbstractParser;
 import com.xl.parsers.referenceparsers.DnaVcfParser;
+import com.xl.parsers.referenceparsers.ParallelImporter;
 import com.xl.parsers.referenceparsers.ParserFactory;
 import com.xl.parsers.referenceparsers.RnaVcfParser;
 import com.xl.preferences.DatabasePreferences;
@@ -65,20 +66,23 @@ public class ThreadDnaRnaInput implements Runnable {
             AbstractParser radarParser = ParserFactory.createParser(locationPreferences.getRadarFile(),
                 DatabaseManager.RADAR_DATABASE_TABLE_NAME);
 
-            rnaVcfParser.loadDataFromLocal(new ProgressDialog("Import RNA VCF file into database..."));
+            ParallelImporter importer =
+                new ParallelImporter(0, new ProgressDialog("Import DNA-RNA mode data into database..."));
+            importer.addParser(rnaVcfParser);
+            importer.addParser(dnaVcfParser);
+            importer.addParser(repeatParser);
+            importer.addParser(spliceParser);
+            importer.addParser(dbSNPParser);
+            importer.addParser(darnedParser);
+            importer.addParser(radarParser);
+            importer.importAll();
             String[] rnaVcfSamples = ((RnaVcfParser) rnaVcfParser).getSampleNames();
-            dnaVcfParser.loadDataFromLocal(new ProgressDialog("Import DNA VCF file into database..."));
             String[] dnaVcfSamples = ((DnaVcfParser) dnaVcfParser).getSampleNames();
 
             if (!sampleMatches(rnaVcfSamples, dnaVcfSamples)) {
                 throw new RedException(
                     "Samples in DNA VCF file does not match the RNA VCF, please check the sample name.");
             }
-            repeatParser.loadDataFromLocal(new ProgressDialog("Import Repeat Masker file into database..."));
-            spliceParser.loadDataFromLocal(new ProgressDialog("Import Ref Seq Gene file into database..."));
-            dbSNPParser.loadDataFromLocal(new ProgressDialog("Import dbSNP file into database..."));
-            darnedParser.loadDataFromLocal(new ProgressDialog("Import DARNED file into database..."));
-            radarParser.loadDataFromLocal(new ProgressDialog("Import RADAR file into database..."));
         } catch (RedException e) {
             logger.error("", e);
         } catch (DataLoadException e) {
@@ -88,6 +92,8 @@ public class ThreadDnaRnaInput implements Runnable {
             logger.error("", e);
             new DataImportDialog(RedApplication.getInstance());
             return;
+        } finally {
+            manager.releaseConnection();
         }
         new DatabaseSelector(RedApplication.getInstance());
     }
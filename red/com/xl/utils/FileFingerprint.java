@@ -0,0 +1,157 @@
+/*
+ * RED: RNA Editing Detector Copyright (C) <2014> <Xing Li>
+ *
+ * RED is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * RED is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.xl.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * FileFingerprint identifies the content of a data file by its path, size, modification time and MD5 hash, so an import
+ * can be skipped if the file has not changed since it was imported.
+ * <p/>
+ * Path, size and modification time are read at once. The hash is computed while the file is read by a stream from
+ * {@link #openStream()}, or by reading the whole file the first time {@link #getHash()} is called if no stream has
+ * read it to the end.
+ */
+public class FileFingerprint {
+    private static final String ALGORITHM = "MD5";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private final File file;
+    private final long size;
+    private final long modified;
+    private String hash = null;
+
+    public FileFingerprint(String path) {
+        this.file = new File(path).getAbsoluteFile();
+        this.size = file.length();
+        this.modified = file.lastModified();
+    }
+
+    public String getPath() {
+        return file.getPath();
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getModified() {
+        return modified;
+    }
+
+    /**
+     * @return True if the file has the given path, size and modification time, which means it has not been changed.
+     */
+    public boolean matches(String path, long size, long modified) {
+        return getPath().equals(path) && this.size == size && this.modified == modified;
+    }
+
+    /**
+     * Open the file to read. The hash is computed along the way if the stream reads the file to the end.
+     *
+     * @return The input stream of the file.
+     */
+    public InputStream openStream() throws IOException {
+        InputStream inputStream = new FileInputStream(file);
+        if (hash != null) {
+            return inputStream;
+        }
+        final MessageDigest digest = createDigest();
+        return new FilterInputStream(inputStream) {
+            private long readBytes = 0;
+
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    digest.update((byte) b);
+                    readBytes++;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int count = super.read(buffer, offset, length);
+                if (count > 0) {
+                    digest.update(buffer, offset, count);
+                    readBytes += count;
+                }
+                return count;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                // Skipped bytes must be hashed too, so read them instead.
+                byte[] buffer = new byte[(int) Math.min(n, BUFFER_SIZE)];
+                int count = read(buffer, 0, buffer.length);
+                return count < 0 ? 0 : count;
+            }
+
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+
+            @Override
+            public void close() throws IOException {
+                super.close();
+                if (hash == null && readBytes == size) {
+                    hash = toHex(digest.digest());
+                }
+            }
+        };
+    }
+
+    /**
+     * @return The MD5 hash of the file in hex, which is computed by reading the whole file if no stream has done it.
+     */
+    public String getHash() throws IOException {
+        if (hash == null) {
+            InputStream inputStream = openStream();
+            try {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                while (inputStream.read(buffer) >= 0) {
+                    // Hashed by the stream.
+                }
+            } finally {
+                inputStream.close();
+            }
+        }
+        return hash;
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support MD5.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] digits = "0123456789abcdef".toCharArray();
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(digits[(b >> 4) & 0xf]).append(digits[b & 0xf]);
+        }
+        return builder.toString();
+    }
+}
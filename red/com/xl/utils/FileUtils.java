@@ -15,10 +15,13 @@ package com.xl.utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -26,6 +29,11 @@ import java.util.List;
  * The Class FileUtils provides some I/O operations.
  */
 public class FileUtils {
+    private static final int DECOMPRESS_BUFFER_SIZE = 64 * 1024;
+    /**
+     * The bytes needed to tell a bgzip block from other gzip data.
+     */
+    private static final int GZIP_HEADER_LENGTH = 16;
 
     private static List<File> fileLists = new ArrayList<File>();
     private final Logger logger = LoggerFactory.getLogger(FileUtils.class);
@@ -213,4 +221,29 @@ public class FileUtils {
         }
 
     }
+
+    /**
+     * Decompress a stream if it is gzip or bgzip compressed, which is told by its first bytes instead of the file name.
+     * A bgzip stream is decompressed by several threads.
+     *
+     * @param inputStream The stream of a file, which may be compressed.
+     * @return The stream of the decompressed data, or the data itself if it is not compressed.
+     */
+    public static InputStream decompress(InputStream inputStream) throws IOException {
+        BufferedInputStream bufferedStream = new BufferedInputStream(inputStream, DECOMPRESS_BUFFER_SIZE);
+        byte[] header = new byte[GZIP_HEADER_LENGTH];
+        bufferedStream.mark(header.length);
+        int length = 0;
+        int count;
+        while (length < header.length && (count = bufferedStream.read(header, length, header.length - length)) > 0) {
+            length += count;
+        }
+        bufferedStream.reset();
+        if (ParallelBgzfInputStream.isBgzfHeader(header, length)) {
+            return new ParallelBgzfInputStream(bufferedStream);
+        } else if (length >= 2 && (header[0] & 0xff) == 0x1f && (header[1] & 0xff) == 0x8b) {
+            return new GZIPInputStream(bufferedStream, DECOMPRESS_BUFFER_SIZE);
+        }
+        return bufferedStream;
+    }
 }
@@ -25,6 +25,15 @@ package com.xl.utils;
  */
 public class Indexer {
     public static final String CHROM_POSITION = "index(chrom,pos)";
+    /**
+     * Sites tables keep at most one row for each position, so duplicated rows are dropped when they are written.
+     */
+    public static final String UNIQUE_CHROM_POSITION = "unique(chrom,pos)";
+    /**
+     * Sites tables are selected by these columns in quality control filter and editing type filter.
+     */
+    public static final String DEPTH_QUALITY = "index(total_depth,qual)";
+    public static final String EDITING_CODE = "index(editing_code)";
     public static final String CHROM_BEGIN_END = "index(chrom,begin,end)";
     public static final String CHROM_TYPE = "index(chrom,type)";
     public static final String CHROM_START_END = "index(chrom,txStart,txEnd)";
@@ -22,7 +22,9 @@ import com.xl.database.DatabaseManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -32,7 +34,7 @@ import java.util.Set;
  */
 public class NameRetriever {
     private static final Logger logger = LoggerFactory.getLogger(NameRetriever.class);
-    private static final Set<String> chrNameSets = new HashSet<String>();
+    private static final Set<String> chrNameSets = new LinkedHashSet<String>();
 
     static {
         for (int i = 1; i <= 22; i++) {
@@ -134,6 +136,13 @@ public class NameRetriever {
         return chrNameSets.contains(chr);
     }
     
+    /**
+     * @return The standard chromosome names, i.e., chr1 to chr22, chrX, chrY and chrM, in this order.
+     */
+    public static List<String> getStandardChromosomeNames() {
+        return new ArrayList<String>(chrNameSets);
+    }
+
     public static String formatChromosomeName(String chr) {
         if (chr.length() == 1 || chr.length() == 2) {
             return "chr" + chr;
@@ -25,6 +25,52 @@ public class NegativeType {
         return getNegativeStrandBase(types[0]) + getNegativeStrandBase(types[1]);
     }
 
+    /**
+     * Get the code of an editing type, which is shared with its negative strand type, e.g., A to G and T to C have the
+     * same code, so the sites of both strands are selected by a single value. It is stored as editing_code of the sites
+     * tables.
+     *
+     * @param ref The reference base.
+     * @param alt The alternative base.
+     * @return The code from 0 to 7, or -1 if either base is not one of A, C, G and T.
+     */
+    public static int getEditingCode(char ref, char alt) {
+        int refCode = getBaseCode(ref);
+        int altCode = getBaseCode(alt);
+        if (refCode < 0 || altCode < 0) {
+            return -1;
+        }
+        // The complement of a base is 3 minus its code, so the code of the negative strand type is 15 minus the code.
+        int code = refCode * 4 + altCode;
+        return Math.min(code, 15 - code);
+    }
+
+    /**
+     * @param editingType The editing type, e.g., 'AG'.
+     * @return The code of the editing type, or -1 if it is not a type of two bases.
+     */
+    public static int getEditingCode(String editingType) {
+        if (editingType == null || editingType.length() != 2) {
+            return -1;
+        }
+        return getEditingCode(editingType.charAt(0), editingType.charAt(1));
+    }
+
+    private static int getBaseCode(char base) {
+        switch (Character.toUpperCase(base)) {
+            case 'A':
+                return 0;
+            case 'C':
+                return 1;
+            case 'G':
+                return 2;
+            case 'T':
+                return 3;
+            default:
+                return -1;
+        }
+    }
+
     private static String getNegativeStrandBase(char type) {
         switch (type) {
             case 'A':
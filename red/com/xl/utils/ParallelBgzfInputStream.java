@@ -0,0 +1,239 @@
+/*
+ * RED: RNA Editing Detector Copyright (C) <2014> <Xing Li>
+ *
+ * RED is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * RED is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.xl.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * ParallelBgzfInputStream decompresses a bgzip-compressed (BGZF) stream by several threads. BGZF is a series of gzip
+ * members of at most 64KB each, which records its compressed size in the header, so the blocks are read one after
+ * another and inflated in parallel, and their data is returned in the order of the stream.
+ */
+public class ParallelBgzfInputStream extends InputStream {
+    private static final int FIXED_HEADER_LENGTH = 12;
+    private static final int FOOTER_LENGTH = 8;
+    private static final int FLAG_EXTRA = 4;
+    private static final int THREADS = Math.max(1, Runtime.getRuntime().availableProcessors());
+    /**
+     * The number of blocks which are read ahead.
+     */
+    private static final int PENDING_BLOCKS = THREADS * 4;
+    private static final byte[] EMPTY = new byte[0];
+    private final InputStream in;
+    private final ExecutorService executor;
+    private final LinkedList<Future<byte[]>> pendingBlocks = new LinkedList<Future<byte[]>>();
+    private byte[] current = EMPTY;
+    private int position = 0;
+    private boolean endOfInput = false;
+
+    public ParallelBgzfInputStream(InputStream in) {
+        this.in = in;
+        this.executor = Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "bgzf-inflater");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Tell whether a gzip header is the header of a BGZF block, i.e., it has an extra field with the 'BC' sub field.
+     *
+     * @param header The first bytes of a stream, at least 16 bytes are needed.
+     * @param length The number of bytes in the header.
+     * @return True if it is a BGZF block.
+     */
+    public static boolean isBgzfHeader(byte[] header, int length) {
+        return length >= 16 && (header[0] & 0xff) == 0x1f && (header[1] & 0xff) == 0x8b && header[2] == 8
+            && (header[3] & FLAG_EXTRA) != 0 && header[12] == 'B' && header[13] == 'C' && header[14] == 2
+            && header[15] == 0;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return current[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int count = Math.min(length, current.length - position);
+        System.arraycopy(current, position, buffer, offset, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return current.length - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        executor.shutdownNow();
+        pendingBlocks.clear();
+        in.close();
+    }
+
+    /**
+     * Make sure there is data left in the current block.
+     *
+     * @return False if the stream has ended.
+     */
+    private boolean fill() throws IOException {
+        while (position == current.length) {
+            while (!endOfInput && pendingBlocks.size() < PENDING_BLOCKS) {
+                byte[] block = readBlock();
+                if (block == null) {
+                    endOfInput = true;
+                } else {
+                    pendingBlocks.add(executor.submit(new BlockInflater(block)));
+                }
+            }
+            if (pendingBlocks.isEmpty()) {
+                return false;
+            }
+            try {
+                current = pendingBlocks.removeFirst().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while decompressing.");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Error decompressing the bgzip block.", e.getCause());
+            }
+            position = 0;
+        }
+        return true;
+    }
+
+    /**
+     * Read a block after its header, i.e., the compressed data, CRC32 and the uncompressed size.
+     *
+     * @return The block, or null at the end of the stream.
+     */
+    private byte[] readBlock() throws IOException {
+        byte[] header = new byte[FIXED_HEADER_LENGTH];
+        int count = readFully(header, 0, header.length);
+        if (count == 0) {
+            return null;
+        }
+        if (count < header.length || (header[0] & 0xff) != 0x1f || (header[1] & 0xff) != 0x8b
+            || (header[3] & FLAG_EXTRA) == 0) {
+            throw new IOException("Not a bgzip block.");
+        }
+        byte[] extra = new byte[readShort(header, 10)];
+        if (readFully(extra, 0, extra.length) < extra.length) {
+            throw new IOException("Unexpected end of the bgzip block.");
+        }
+        int blockSize = -1;
+        for (int i = 0; i + 4 <= extra.length; i += 4 + readShort(extra, i + 2)) {
+            if (extra[i] == 'B' && extra[i + 1] == 'C' && readShort(extra, i + 2) == 2) {
+                blockSize = readShort(extra, i + 4) + 1;
+            }
+        }
+        int remaining = blockSize - FIXED_HEADER_LENGTH - extra.length;
+        if (blockSize < 0 || remaining < FOOTER_LENGTH) {
+            throw new IOException("Not a bgzip block.");
+        }
+        byte[] block = new byte[remaining];
+        if (readFully(block, 0, remaining) < remaining) {
+            throw new IOException("Unexpected end of the bgzip block.");
+        }
+        return block;
+    }
+
+    private int readFully(byte[] buffer, int offset, int length) throws IOException {
+        int total = 0;
+        while (total < length) {
+            int count = in.read(buffer, offset + total, length - total);
+            if (count < 0) {
+                break;
+            }
+            total += count;
+        }
+        return total;
+    }
+
+    private static int readShort(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff) | (bytes[offset + 1] & 0xff) << 8;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return readShort(bytes, offset) | readShort(bytes, offset + 2) << 16;
+    }
+
+    private static class BlockInflater implements Callable<byte[]> {
+        private final byte[] block;
+
+        private BlockInflater(byte[] block) {
+            this.block = block;
+        }
+
+        @Override
+        public byte[] call() throws IOException {
+            int dataLength = block.length - FOOTER_LENGTH;
+            byte[] data = new byte[readInt(block, dataLength + 4)];
+            Inflater inflater = new Inflater(true);
+            try {
+                inflater.setInput(block, 0, dataLength);
+                int count = 0;
+                while (count < data.length && !inflater.finished()) {
+                    int inflated = inflater.inflate(data, count, data.length - count);
+                    if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    count += inflated;
+                }
+                if (count != data.length) {
+                    throw new IOException("Bad size of the bgzip block.");
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Bad data in the bgzip block.", e);
+            } finally {
+                inflater.end();
+            }
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            if ((int) crc.getValue() != readInt(block, dataLength)) {
+                throw new IOException("CRC mismatch in the bgzip block.");
+            }
+            return data;
+        }
+    }
+}
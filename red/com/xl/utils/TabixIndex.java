@@ -0,0 +1,322 @@
+/*
+ * RED: RNA Editing Detector Copyright (C) <2014> <Xing Li>
+ *
+ * RED is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * RED is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.xl.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.samtools.util.BlockCompressedInputStream;
+
+/**
+ * TabixIndex reads the tabix index (.tbi) of a bgzip-compressed file, and reads the lines of a region by seeking to
+ * the blocks which contain them, so regions of a file can be read by different threads at the same time.
+ * <p/>
+ * It only depends on {@link BlockCompressedInputStream}, since the tabix reader of tribble does not work with the
+ * version of samtools in the lib directory.
+ */
+public class TabixIndex {
+    public static final String INDEX_SUFFIX = ".tbi";
+    private static final byte[] MAGIC = {'T', 'B', 'I', 1};
+    /**
+     * The largest position supported by the binning scheme, exclusive.
+     */
+    private static final int MAX_POSITION = 1 << 29;
+    private static final int LINEAR_SHIFT = 14;
+    private final String dataPath;
+    private final int sequenceColumn;
+    private final int beginColumn;
+    private final char meta;
+    private final List<String> sequenceNames = new ArrayList<String>();
+    private final Map<String, Integer> sequenceIds = new HashMap<String, Integer>();
+    /**
+     * The chunks (pairs of begin and end offsets) of each bin for each sequence.
+     */
+    private final List<Map<Integer, long[]>> bins = new ArrayList<Map<Integer, long[]>>();
+    private final List<long[]> linearIndexes = new ArrayList<long[]>();
+
+    /**
+     * Read the index of a bgzip-compressed file, which is the file path with '.tbi' appended.
+     *
+     * @param dataPath The path of the bgzip-compressed file.
+     */
+    public TabixIndex(String dataPath) throws IOException {
+        this.dataPath = dataPath;
+        InputStream inputStream = new BlockCompressedInputStream(new File(dataPath + INDEX_SUFFIX));
+        try {
+            for (byte b : MAGIC) {
+                if (inputStream.read() != b) {
+                    throw new IOException(dataPath + INDEX_SUFFIX + " is not a tabix index.");
+                }
+            }
+            int sequenceCount = readInt(inputStream);
+            // Format, which is not needed since the columns are given.
+            readInt(inputStream);
+            sequenceColumn = readInt(inputStream) - 1;
+            beginColumn = readInt(inputStream) - 1;
+            // End column, only the begin position is used to tell whether a line is in a region.
+            readInt(inputStream);
+            meta = (char) readInt(inputStream);
+            // The number of header lines to skip.
+            readInt(inputStream);
+            byte[] names = new byte[readInt(inputStream)];
+            readFully(inputStream, names);
+            int start = 0;
+            for (int i = 0; i < names.length; i++) {
+                if (names[i] == 0) {
+                    String name = new String(names, start, i - start, "US-ASCII");
+                    sequenceIds.put(name, sequenceNames.size());
+                    sequenceNames.add(name);
+                    start = i + 1;
+                }
+            }
+            if (sequenceNames.size() != sequenceCount) {
+                throw new IOException("Bad sequence names in " + dataPath + INDEX_SUFFIX);
+            }
+            for (int i = 0; i < sequenceCount; i++) {
+                int binCount = readInt(inputStream);
+                Map<Integer, long[]> sequenceBins = new HashMap<Integer, long[]>(binCount * 2);
+                for (int j = 0; j < binCount; j++) {
+                    int bin = readInt(inputStream);
+                    long[] chunks = new long[readInt(inputStream) * 2];
+                    for (int k = 0; k < chunks.length; k++) {
+                        chunks[k] = readLong(inputStream);
+                    }
+                    sequenceBins.put(bin, chunks);
+                }
+                long[] linearIndex = new long[readInt(inputStream)];
+                for (int j = 0; j < linearIndex.length; j++) {
+                    linearIndex[j] = readLong(inputStream);
+                }
+                bins.add(sequenceBins);
+                linearIndexes.add(linearIndex);
+            }
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * @return True if the file is bgzip-compressed and has a tabix index.
+     */
+    public static boolean isIndexed(String dataPath) {
+        return dataPath.toLowerCase().endsWith(".gz") && new File(dataPath + INDEX_SUFFIX).isFile();
+    }
+
+    /**
+     * @return The names of sequences (i.e., chromosomes) in the order of the file.
+     */
+    public List<String> getSequenceNames() {
+        return Collections.unmodifiableList(sequenceNames);
+    }
+
+    public boolean containsSequence(String sequence) {
+        return sequenceIds.containsKey(sequence);
+    }
+
+    /**
+     * Open a reader of the lines in a region, which has its own stream of the file.
+     *
+     * @param region The region in tabix format, i.e., chr, chr:begin or chr:begin-end, where positions are 1-based and
+     *               inclusive.
+     * @return The reader, or null if the sequence of the region is not in the index.
+     */
+    public RegionReader query(String region) throws IOException {
+        String sequence = region;
+        int begin = 0;
+        int end = MAX_POSITION;
+        int colon = region.lastIndexOf(':');
+        if (!sequenceIds.containsKey(region) && colon > 0) {
+            sequence = region.substring(0, colon);
+            String range = region.substring(colon + 1).replace(",", "");
+            int dash = range.indexOf('-');
+            try {
+                begin = Math.max(0, Integer.parseInt(dash < 0 ? range : range.substring(0, dash)) - 1);
+                if (dash >= 0 && dash < range.length() - 1) {
+                    end = Math.min(MAX_POSITION, Integer.parseInt(range.substring(dash + 1)));
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Bad region: " + region, e);
+            }
+        }
+        Integer id = sequenceIds.get(sequence);
+        if (id == null) {
+            return null;
+        }
+        return new RegionReader(sequence, begin, end, findChunks(id, begin, end));
+    }
+
+    /**
+     * Find the chunks of the file which may contain lines in [begin, end), merged and sorted by their offsets.
+     */
+    private List<long[]> findChunks(int id, int begin, int end) {
+        long[] linearIndex = linearIndexes.get(id);
+        long minOffset = 0;
+        if (linearIndex.length > 0) {
+            minOffset = linearIndex[Math.min(begin >> LINEAR_SHIFT, linearIndex.length - 1)];
+        }
+        List<long[]> chunks = new ArrayList<long[]>();
+        Map<Integer, long[]> sequenceBins = bins.get(id);
+        for (int bin : regionToBins(begin, end)) {
+            long[] binChunks = sequenceBins.get(bin);
+            if (binChunks == null) {
+                continue;
+            }
+            for (int i = 0; i < binChunks.length; i += 2) {
+                if (binChunks[i + 1] > minOffset) {
+                    chunks.add(new long[]{Math.max(binChunks[i], minOffset), binChunks[i + 1]});
+                }
+            }
+        }
+        Collections.sort(chunks, new Comparator<long[]>() {
+            @Override
+            public int compare(long[] o1, long[] o2) {
+                return o1[0] < o2[0] ? -1 : (o1[0] == o2[0] ? 0 : 1);
+            }
+        });
+        List<long[]> merged = new ArrayList<long[]>();
+        for (long[] chunk : chunks) {
+            long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && chunk[0] <= last[1]) {
+                last[1] = Math.max(last[1], chunk[1]);
+            } else {
+                merged.add(chunk);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * @return The bins which overlap [begin, end) in the binning scheme of tabix.
+     */
+    private static List<Integer> regionToBins(int begin, int end) {
+        List<Integer> list = new ArrayList<Integer>();
+        end--;
+        list.add(0);
+        int[] offsets = {1, 9, 73, 585, 4681};
+        int[] shifts = {26, 23, 20, 17, 14};
+        for (int level = 0; level < offsets.length; level++) {
+            for (int k = offsets[level] + (begin >> shifts[level]); k <= offsets[level] + (end >> shifts[level]); k++) {
+                list.add(k);
+            }
+        }
+        return list;
+    }
+
+    private static int readInt(InputStream inputStream) throws IOException {
+        byte[] bytes = new byte[4];
+        readFully(inputStream, bytes);
+        return (bytes[0] & 0xff) | (bytes[1] & 0xff) << 8 | (bytes[2] & 0xff) << 16 | (bytes[3] & 0xff) << 24;
+    }
+
+    private static long readLong(InputStream inputStream) throws IOException {
+        return (readInt(inputStream) & 0xffffffffL) | ((long) readInt(inputStream)) << 32;
+    }
+
+    private static void readFully(InputStream inputStream, byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            int count = inputStream.read(bytes, offset, bytes.length - offset);
+            if (count < 0) {
+                throw new IOException("Unexpected end of the tabix index.");
+            }
+            offset += count;
+        }
+    }
+
+    /**
+     * RegionReader reads the lines in a region one by one. It is not thread-safe, but readers of the same index can be
+     * used by different threads.
+     */
+    public class RegionReader {
+        private final String sequence;
+        private final int begin;
+        private final int end;
+        private final List<long[]> chunks;
+        private final BlockCompressedInputStream inputStream;
+        private int chunkIndex = -1;
+
+        private RegionReader(String sequence, int begin, int end, List<long[]> chunks) throws IOException {
+            this.sequence = sequence;
+            this.begin = begin;
+            this.end = end;
+            this.chunks = chunks;
+            this.inputStream = new BlockCompressedInputStream(new File(dataPath));
+        }
+
+        /**
+         * @return The next line in the region, or null if there are no more lines.
+         */
+        public String readLine() throws IOException {
+            while (true) {
+                if (chunkIndex < 0 || inputStream.getFilePointer() >= chunks.get(chunkIndex)[1]) {
+                    if (++chunkIndex >= chunks.size()) {
+                        return null;
+                    }
+                    inputStream.seek(chunks.get(chunkIndex)[0]);
+                }
+                String line = inputStream.readLine();
+                if (line == null) {
+                    chunkIndex = chunks.size();
+                    return null;
+                }
+                if (line.length() == 0 || line.charAt(0) == meta) {
+                    continue;
+                }
+                int position = getPosition(line);
+                if (position > end) {
+                    // Lines are sorted by position, so there are no more lines in the region.
+                    chunkIndex = chunks.size();
+                    return null;
+                }
+                if (position > begin) {
+                    return line;
+                }
+            }
+        }
+
+        public void close() throws IOException {
+            inputStream.close();
+        }
+
+        /**
+         * @return The 1-based position of the line, or -1 if it is in another sequence.
+         */
+        private int getPosition(String line) {
+            int column = 0;
+            int start = 0;
+            int position = -1;
+            for (int i = 0, len = line.length(); i <= len && column <= Math.max(sequenceColumn, beginColumn); i++) {
+                if (i == len || line.charAt(i) == '\t') {
+                    if (column == sequenceColumn
+                        && (i - start != sequence.length() || !line.regionMatches(start, sequence, 0, i - start))) {
+                        return -1;
+                    }
+                    if (column == beginColumn) {
+                        position = Integer.parseInt(line.substring(start, i));
+                    }
+                    column++;
+                    start = i + 1;
+                }
+            }
+            return position;
+        }
+    }
+}